@@ -0,0 +1,434 @@
+package org.json.me.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Method;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Vector;
+import org.json.me.JSONArray;
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+import org.json.me.JSONTokener;
+
+/**
+ * Micro-benchmark and regression harness for the org.json.me parser.
+ *
+ * Runs on a desktop JVM against the same sources that ship in the MIDlet.
+ * For every payload it first checks that the parsers agree with each other
+ * and that toString() round-trips, then measures, for each operation:
+ * <ul>
+ * <li>operations per second,</li>
+ * <li>bytes allocated per operation (on JVMs that can count them),</li>
+ * <li>peak heap while the operation ran.</li>
+ * </ul>
+ * <pre>
+ * ant bench
+ * java -cp build/bench org.json.me.bench.JSONBenchmark [options]
+ *
+ *   -time ms        measuring time per benchmark (default 1000)
+ *   -warmup ms      warm-up time per benchmark (default 500)
+ *   -filter text    only run benchmarks whose name contains text
+ *   -save file      write the ops/sec results to file
+ *   -baseline file  compare with results saved by -save
+ *   -tolerance pct  allowed slowdown against the baseline (default 15)
+ * </pre>
+ * The exit status is 1 if a correctness check fails or a benchmark is slower
+ * than the baseline by more than the tolerance.
+ */
+public final class JSONBenchmark {
+
+    /**
+     * One measured operation on one payload.
+     */
+    private abstract static class Benchmark {
+
+        final String name;
+        final String text;
+        final byte[] utf8;
+
+        Benchmark(String name, String text) throws IOException {
+            this.name = name;
+            this.text = text;
+            this.utf8 = text.getBytes("UTF-8");
+        }
+
+        /**
+         * Run the operation once. The result is returned so the JIT can not
+         * drop the work.
+         */
+        abstract Object run() throws Exception;
+    }
+
+    private static long time = 1000;
+    private static long warmup = 500;
+    private static String filter;
+
+    private static Method allocatedBytes;
+    private static Object threadBean;
+
+    private JSONBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String save = null;
+        String baseline = null;
+        double tolerance = 15;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                usage("missing value for " + arg);
+            }
+            String value = args[++i];
+            if (arg.equals("-time")) {
+                time = Long.parseLong(value);
+            } else if (arg.equals("-warmup")) {
+                warmup = Long.parseLong(value);
+            } else if (arg.equals("-filter")) {
+                filter = value;
+            } else if (arg.equals("-save")) {
+                save = value;
+            } else if (arg.equals("-baseline")) {
+                baseline = value;
+            } else if (arg.equals("-tolerance")) {
+                tolerance = Double.valueOf(value).doubleValue();
+            } else {
+                usage("unknown option " + arg);
+            }
+        }
+        initAllocationCounter();
+
+        String[][] payloads = {
+            {"list10", Payloads.list(10)},
+            {"list100", Payloads.list(100)},
+            {"list500", Payloads.list(500)},
+            {"richtext", Payloads.richtext(16 * 1024)},
+            {"nested", Payloads.nested(24)}
+        };
+
+        boolean failed = false;
+        for (int i = 0; i < payloads.length; i++) {
+            String problem = verify(payloads[i][1]);
+            if (problem != null) {
+                System.out.println("FAIL " + payloads[i][0] + ": " + problem);
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+
+        Vector benchmarks = new Vector();
+        for (int i = 0; i < payloads.length; i++) {
+            addBenchmarks(benchmarks, payloads[i][0], payloads[i][1]);
+        }
+
+        Properties results = new Properties();
+        Vector names = new Vector();
+        System.out.println(pad("benchmark", 26) + pad("bytes", 9)
+                           + pad("ops/sec", 12) + pad("alloc/op", 12)
+                           + "peak heap");
+        for (int i = 0; i < benchmarks.size(); i++) {
+            Benchmark b = (Benchmark) benchmarks.elementAt(i);
+            if (filter != null && b.name.indexOf(filter) < 0) {
+                continue;
+            }
+            measure(b, results);
+            names.addElement(b.name);
+        }
+
+        if (save != null) {
+            OutputStream out = new FileOutputStream(save);
+            try {
+                results.store(out, "org.json.me ops/sec");
+            } finally {
+                out.close();
+            }
+        }
+        if (baseline != null
+            && !compare(results, names, baseline, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    private static void addBenchmarks(Vector benchmarks, String payload,
+                                      final String text) throws Exception {
+        final JSONObject parsed = new JSONObject(text);
+        final Vector strings = new Vector();
+        collectStrings(parsed, strings);
+
+        benchmarks.addElement(new Benchmark(payload + ".parse", text) {
+
+            Object run() throws Exception {
+                return new JSONObject(new JSONTokener(text));
+            }
+        });
+        benchmarks.addElement(new Benchmark(payload + ".parseStream", text) {
+
+            private final byte[] buffer = new byte[512];
+
+            Object run() throws Exception {
+                InputStream in = new ByteArrayInputStream(utf8);
+                return new JSONObject(new JSONTokener(in, buffer));
+            }
+        });
+        benchmarks.addElement(new Benchmark(payload + ".nextValue", text) {
+
+            Object run() throws Exception {
+                return new JSONTokener(text).nextValue();
+            }
+        });
+        benchmarks.addElement(new Benchmark(payload + ".toString", text) {
+
+            Object run() {
+                return parsed.toString();
+            }
+        });
+        benchmarks.addElement(new Benchmark(payload + ".quote", text) {
+
+            Object run() {
+                int length = 0;
+                for (int i = 0; i < strings.size(); i++) {
+                    length += JSONObject.quote(
+                            (String) strings.elementAt(i)).length();
+                }
+                return new Integer(length);
+            }
+        });
+    }
+
+    /**
+     * Check the parsers against each other on text. Returns a description
+     * of the first difference, or null.
+     */
+    private static String verify(String text) throws Exception {
+        JSONObject parsed = new JSONObject(new JSONTokener(text));
+        JSONObject streamed = new JSONObject(new JSONTokener(
+                new ByteArrayInputStream(text.getBytes("UTF-8"))));
+        if (!same(parsed, streamed)) {
+            return "stream parse differs from string parse";
+        }
+        Object value = new JSONTokener(text).nextValue();
+        if (!same(parsed, value)) {
+            return "nextValue() differs from JSONObject(JSONTokener)";
+        }
+        String written = parsed.toString();
+        if (!same(parsed, new JSONObject(written))) {
+            return "toString() does not round-trip";
+        }
+        Vector strings = new Vector();
+        collectStrings(parsed, strings);
+        for (int i = 0; i < strings.size(); i++) {
+            String s = (String) strings.elementAt(i);
+            Object back = new JSONTokener(JSONObject.quote(s)).nextValue();
+            if (!s.equals(back)) {
+                return "quote() does not round-trip " + JSONObject.quote(s);
+            }
+        }
+        return null;
+    }
+
+    private static boolean same(Object a, Object b) throws JSONException {
+        if (a instanceof JSONObject) {
+            if (!(b instanceof JSONObject)) {
+                return false;
+            }
+            JSONObject x = (JSONObject) a;
+            JSONObject y = (JSONObject) b;
+            if (x.length() != y.length()) {
+                return false;
+            }
+            for (Enumeration keys = x.keys(); keys.hasMoreElements();) {
+                String key = (String) keys.nextElement();
+                if (!y.has(key) || !same(x.get(key), y.get(key))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof JSONArray) {
+            if (!(b instanceof JSONArray)) {
+                return false;
+            }
+            JSONArray x = (JSONArray) a;
+            JSONArray y = (JSONArray) b;
+            if (x.length() != y.length()) {
+                return false;
+            }
+            for (int i = 0; i < x.length(); i++) {
+                if (!same(x.get(i), y.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a.equals(b);
+    }
+
+    private static void collectStrings(Object value, Vector strings)
+            throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject o = (JSONObject) value;
+            for (Enumeration keys = o.keys(); keys.hasMoreElements();) {
+                String key = (String) keys.nextElement();
+                strings.addElement(key);
+                collectStrings(o.get(key), strings);
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray a = (JSONArray) value;
+            for (int i = 0; i < a.length(); i++) {
+                collectStrings(a.get(i), strings);
+            }
+        } else if (value instanceof String) {
+            strings.addElement(value);
+        }
+    }
+
+    private static void measure(Benchmark b, Properties results)
+            throws Exception {
+        loop(b, warmup);
+
+        System.gc();
+        resetPeakHeap();
+        long allocated = allocated();
+        long start = System.currentTimeMillis();
+        long ops = loop(b, time);
+        long elapsed = System.currentTimeMillis() - start;
+        allocated = allocated() - allocated;
+        long peak = peakHeap();
+
+        double opsPerSec = ops * 1000.0 / Math.max(elapsed, 1);
+        results.setProperty(b.name, String.valueOf(Math.round(opsPerSec)));
+        System.out.println(pad(b.name, 26) + pad(String.valueOf(b.utf8.length), 9)
+                           + pad(String.valueOf(Math.round(opsPerSec)), 12)
+                           + pad(allocated < 0 ? "n/a"
+                                 : String.valueOf(allocated / ops), 12)
+                           + (peak < 0 ? "n/a" : (peak / 1024) + " KB"));
+    }
+
+    /**
+     * Run b for at least the given number of milliseconds and return how
+     * many times it ran.
+     */
+    private static long loop(Benchmark b, long millis) throws Exception {
+        long ops = 0;
+        long end = System.currentTimeMillis() + millis;
+        Object sink = null;
+        do {
+            for (int i = 0; i < 16; i++) {
+                sink = b.run();
+            }
+            ops += 16;
+        } while (System.currentTimeMillis() < end);
+        if (sink == null) {
+            throw new IllegalStateException(b.name + " returned null");
+        }
+        return ops;
+    }
+
+    private static boolean compare(Properties results, Vector names,
+                                   String file, double tolerance)
+            throws IOException {
+        Properties baseline = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            baseline.load(in);
+        } finally {
+            in.close();
+        }
+        boolean ok = true;
+        for (int i = 0; i < names.size(); i++) {
+            String name = (String) names.elementAt(i);
+            String before = baseline.getProperty(name);
+            if (before == null) {
+                continue;
+            }
+            double was = Double.valueOf(before).doubleValue();
+            double now = Double.valueOf(results.getProperty(name)).doubleValue();
+            double change = (now - was) * 100 / was;
+            String verdict = "ok";
+            if (change < -tolerance) {
+                verdict = "REGRESSION";
+                ok = false;
+            }
+            System.out.println(pad(name, 26) + pad(Math.round(change) + "%", 8)
+                               + verdict);
+        }
+        return ok;
+    }
+
+    /**
+     * HotSpot and OpenJ9 count the bytes each thread allocates through
+     * com.sun.management.ThreadMXBean; elsewhere allocation is not reported.
+     */
+    private static void initAllocationCounter() {
+        try {
+            threadBean = ManagementFactory.getThreadMXBean();
+            Class c = Class.forName("com.sun.management.ThreadMXBean");
+            if (c.isInstance(threadBean)) {
+                allocatedBytes = c.getMethod("getThreadAllocatedBytes",
+                                             new Class[]{long.class});
+            }
+        } catch (Exception e) {
+            allocatedBytes = null;
+        }
+    }
+
+    private static long allocated() {
+        if (allocatedBytes == null) {
+            return -1;
+        }
+        try {
+            Object[] id = {new Long(Thread.currentThread().getId())};
+            return ((Long) allocatedBytes.invoke(threadBean, id)).longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (Iterator i = ManagementFactory.getMemoryPoolMXBeans().iterator();
+             i.hasNext();) {
+            ((MemoryPoolMXBean) i.next()).resetPeakUsage();
+        }
+    }
+
+    /**
+     * Sum of the heap pools' peaks since resetPeakHeap().
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (Iterator i = ManagementFactory.getMemoryPoolMXBeans().iterator();
+             i.hasNext();) {
+            MemoryPoolMXBean pool = (MemoryPoolMXBean) i.next();
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static String pad(String s, int width) {
+        StringBuffer sb = new StringBuffer(s);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.append(' ').toString();
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("usage: JSONBenchmark [-time ms] [-warmup ms]"
+                           + " [-filter text] [-save file] [-baseline file]"
+                           + " [-tolerance pct]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,125 @@
+package org.json.me.bench;
+
+import org.json.me.JSONArray;
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+/**
+ * Builds screen payloads shaped like the ones the LiveFootball server sends.
+ * The text is generated from a fixed seed, so every run parses exactly the
+ * same bytes.
+ */
+final class Payloads {
+
+    private static final String ROOT = "http://203.128.246.60";
+
+    private static final String[] TEAMS = {
+        "Manchester United", "Chelsea", "Arsenal", "Liverpool",
+        "Hà Nội T&T", "Becamex Bình Dương", "Sông Lam Nghệ An",
+        "Hoàng Anh Gia Lai", "Real Madrid", "Barcelona", "Bayern München",
+        "Internazionale", "\"Juventus\"", "Olympique Lyonnais"
+    };
+
+    private Payloads() {
+    }
+
+    /**
+     * A list screen with the given number of rows.
+     */
+    static String list(int rows) throws JSONException {
+        JSONObject screen = new JSONObject();
+        screen.put("type", "list");
+        screen.put("form_title", "Kết quả - Vòng " + rows);
+        screen.put("auto_refresh", "30000");
+        screen.put("cache", "yes");
+        screen.put("cache_ttl", 60);
+        screen.put("left_button", button("select", "Chọn", null));
+        screen.put("right_button", button("exit", "Thoát", null));
+        JSONArray items = new JSONArray();
+        int seed = rows;
+        for (int i = 0; i < rows; i++) {
+            seed = next(seed);
+            String home = TEAMS[(seed >>> 8) % TEAMS.length];
+            seed = next(seed);
+            String away = TEAMS[(seed >>> 8) % TEAMS.length];
+            JSONObject item = new JSONObject();
+            item.put("name", home + " " + (seed & 7) + " - "
+                     + ((seed >>> 4) & 7) + " " + away);
+            item.put("href", "match/" + (100000 + i) + ".html");
+            items.put(item);
+        }
+        screen.put("items", items);
+        return screen.toString();
+    }
+
+    /**
+     * A richtext screen whose info is an HTML blob of about the given size.
+     */
+    static String richtext(int size) throws JSONException {
+        StringBuffer html = new StringBuffer(size + 256);
+        int seed = size;
+        int minute = 1;
+        while (html.length() < size) {
+            seed = next(seed);
+            html.append("<p><b>").append(minute).append("'</b> ");
+            html.append(TEAMS[(seed >>> 8) % TEAMS.length]);
+            html.append(" – <i>\"sút phạt\" trúng cột dọc</i>\t<br/>\n");
+            html.append("<a href=\"/match/").append(seed & 0xffff);
+            html.append(".html\">Chi tiết</a></p>\r\n");
+            minute = minute % 90 + 1;
+        }
+        JSONObject screen = new JSONObject();
+        screen.put("type", "richtext");
+        screen.put("form_title", "Diễn biến trận đấu");
+        screen.put("auto_refresh", "0");
+        screen.put("cache", "no");
+        screen.put("info", html.toString());
+        screen.put("left_button", button("reload", "Cập nhật", null));
+        screen.put("right_button", button("hyperlink", "Trang chủ", "/"));
+        return screen.toString();
+    }
+
+    /**
+     * An html screen whose soft keys are nested the given number of levels
+     * deep, alternating objects and arrays.
+     */
+    static String nested(int depth) throws JSONException {
+        JSONObject screen = new JSONObject();
+        screen.put("type", "html");
+        screen.put("form_title", "Cấu hình");
+        screen.put("auto_refresh", "0");
+        screen.put("cache", "yes");
+        screen.put("content_url", ROOT + "/news/index.html");
+        JSONObject left = button("hyperlink", "Tin tức", "news/1.html");
+        JSONObject inner = left;
+        for (int i = 0; i < depth; i++) {
+            JSONObject child = button(i % 2 == 0 ? "select" : "reload",
+                                      "Mục " + i, "menu/" + i + ".html");
+            JSONArray siblings = new JSONArray();
+            siblings.put(child);
+            siblings.put(i);
+            siblings.put(i % 3 == 0);
+            siblings.put(JSONObject.NULL);
+            inner.put("menu", siblings);
+            inner = child;
+        }
+        screen.put("left_button", left);
+        screen.put("right_button", button("exit", "Thoát", null));
+        return screen.toString();
+    }
+
+    private static JSONObject button(String type, String name, String url)
+            throws JSONException {
+        JSONObject button = new JSONObject();
+        button.put("type", type);
+        button.put("name", name);
+        if (url != null) {
+            button.put("url", url);
+        }
+        return button;
+    }
+
+    private static int next(int seed) {
+        return (seed * 1103515245 + 12345) & 0x7fffffff;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * Open addressed hash from ARGB colors to dense indexes in the order the colors
+ * were added, also counting how many times each color was added. Used to build
+ * palettes without a linear search per pixel.
+ */
+final class ColorTable {
+    private int[] slots;
+    private int[] slotColors;
+    private int shift;
+    private int[] colors;
+    private int[] counts;
+    private int size;
+
+    /**
+     * @param expected the number of distinct colors expected, the table grows
+     * beyond that if necessary
+     */
+    ColorTable(int expected) {
+        int capacity = 16;
+        shift = 28;
+        while(capacity < expected * 2) {
+            capacity <<= 1;
+            shift--;
+        }
+        slots = new int[capacity];
+        slotColors = new int[capacity];
+        colors = new int[Math.max(expected, 4)];
+        counts = new int[colors.length];
+    }
+
+    /**
+     * Returns the index of the color or -1 if it wasn't added
+     */
+    int indexOf(int color) {
+        int mask = slots.length - 1;
+        int slot = (color * 0x9E3779B9) >>> shift;
+        while(true) {
+            int s = slots[slot];
+            if(s == 0) {
+                return -1;
+            }
+            if(slotColors[slot] == color) {
+                return s - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds an occurrence of the color and returns its index
+     */
+    int add(int color) {
+        int mask = slots.length - 1;
+        int slot = (color * 0x9E3779B9) >>> shift;
+        while(true) {
+            int s = slots[slot];
+            if(s == 0) {
+                break;
+            }
+            if(slotColors[slot] == color) {
+                counts[s - 1]++;
+                return s - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if(size == colors.length) {
+            int[] arr = new int[size * 2];
+            System.arraycopy(colors, 0, arr, 0, size);
+            colors = arr;
+            arr = new int[size * 2];
+            System.arraycopy(counts, 0, arr, 0, size);
+            counts = arr;
+        }
+        int index = size;
+        colors[index] = color;
+        counts[index] = 1;
+        size++;
+        // the index is stored plus one so 0 marks an empty slot
+        slots[slot] = index + 1;
+        slotColors[slot] = color;
+        if(size * 2 > slots.length) {
+            rehash();
+        }
+        return index;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        slotColors = new int[slots.length];
+        shift--;
+        int mask = slots.length - 1;
+        for(int iter = 0 ; iter < size ; iter++) {
+            int slot = (colors[iter] * 0x9E3779B9) >>> shift;
+            while(slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = iter + 1;
+            slotColors[slot] = colors[iter];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the colors by index, the array may be longer than size()
+     */
+    int[] getColors() {
+        return colors;
+    }
+
+    /**
+     * Returns the number of occurrences of each color by index, the array may
+     * be longer than size()
+     */
+    int[] getCounts() {
+        return counts;
+    }
+}
@@ -808,6 +808,11 @@ public class Component implements Animation, StyleListener {
         int oWidth = g.getClipWidth();
         int oHeight = g.getClipHeight();
         if (bounds.intersects(oX, oY, oWidth, oHeight)) {
+            FrameProfiler profiler = Display.getInstance().profiler;
+            long paintStart = 0;
+            if (profiler != null) {
+                paintStart = System.currentTimeMillis();
+            }
             g.clipRect(getX(), getY(), getWidth(), getHeight());
             paintBackground(g);
 
@@ -833,6 +838,9 @@ public class Component implements Animation, StyleListener {
             }
 
             g.setClip(oX, oY, oWidth, oHeight);
+            if (profiler != null) {
+                profiler.componentPainted(this, System.currentTimeMillis() - paintStart);
+            }
         }
     }
 
@@ -123,6 +123,11 @@ public final class Display {
      * so a high/low FPS will have no effect then.
      */
     private int framerateLock = 30;
+
+    /**
+     * Profiler of the EDT loop, null unless profiling was requested
+     */
+    FrameProfiler profiler;
     
     /**
      * Light mode allows the UI to adapt and show less visual effects/lighter versions
@@ -227,7 +232,13 @@ public final class Display {
     /**
      * Events to broadcast on the EDT
      */
-    private Vector inputEvents = new Vector();
+    private final InputEventQueue inputEvents = new InputEventQueue(128);
+
+    /**
+     * Recycled coordinate arrays for pointer events of one and two points
+     */
+    private final int[][] xPointerEvents = {new int[1], new int[2]};
+    private final int[][] yPointerEvents = {new int[1], new int[2]};
 
     private boolean longPointerCharged;
     private boolean pointerPressedAndNotReleased;
@@ -392,6 +403,25 @@ public final class Display {
         framerateLock = 1000 / rate;
     }
 
+    /**
+     * Installs a profiler recording the cost of every frame of the EDT, profiling
+     * has almost no overhead while no profiler is installed.
+     *
+     * @param profiler the profiler or null to stop profiling
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns the installed profiler
+     *
+     * @return the profiler or null if profiling is off
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * Vibrates the device for the given length of time
      * 
@@ -654,26 +684,54 @@ public final class Display {
             } else {
                 // paint transition or intro animations and don't do anything else if such
                 // animations are in progress...
+                FrameProfiler p = profiler;
+                if(p != null) {
+                    p.beginFrame();
+                }
                 paintTransitionAnimation();
+                if(p != null) {
+                    p.endPhase(FrameProfiler.PHASE_TRANSITION);
+                    p.endFrame(framerateLock);
+                }
                 return;
             }
         } catch(Exception ignor) {
             ignor.printStackTrace();
         }
         long currentTime = System.currentTimeMillis();
+        FrameProfiler p = profiler;
+        if(p != null) {
+            p.beginFrame();
+        }
 
-        while(inputEvents.size() > 0) {
-            int[] i = (int[])inputEvents.elementAt(0);
-            inputEvents.removeElementAt(0);
-            handleEvent(i);
+        // events arriving while these are handled wait for the next frame
+        int pending = inputEvents.size();
+        while(pending > 0 && !inputEvents.isEmpty()) {
+            pending--;
+            // a drag followed by another drag is stale, only the latest
+            // position is delivered
+            if(inputEvents.isSupersededBy(POINTER_DRAGGED)) {
+                inputEvents.remove();
+            } else {
+                handleEvent();
+            }
+        }
+        if(p != null) {
+            p.endPhase(FrameProfiler.PHASE_INPUT);
         }
 
         lwuitGraphics.setGraphics(impl.getNativeGraphics());
         impl.paintDirty();
+        if(p != null) {
+            p.endPhase(FrameProfiler.PHASE_PAINT);
+        }
 
         // draw the animations
         Form current = impl.getCurrentForm();
         current.repaintAnimations();
+        if(p != null) {
+            p.endPhase(FrameProfiler.PHASE_ANIMATIONS);
+        }
         
         // check key repeat events
         long t = System.currentTimeMillis();
@@ -689,8 +747,15 @@ public final class Display {
             longPointerCharged = false;
             current.longPointerPress(pointerX, pointerY);
         }
+        if(p != null) {
+            p.endPhase(FrameProfiler.PHASE_INPUT);
+        }
         processSerialCalls();
         time = System.currentTimeMillis() - currentTime;
+        if(p != null) {
+            p.endPhase(FrameProfiler.PHASE_SERIAL_CALLS);
+            p.endFrame(framerateLock);
+        }
     }
     
     boolean hasNoSerialCallsPending() {
@@ -1056,38 +1121,25 @@ public final class Display {
         getImplementation().restoreMinimizedApplication();
     }
 
-    private void addInputEvent(int[] ev) {
-        synchronized(lock) {
-            inputEvents.addElement(ev);
-            lock.notify();
+    private void addInputEvent(int type, int a, int b) {
+        // releases and notifications are never dropped, a lost release would
+        // leave a key or component pressed
+        if(inputEvents.add(type, a, b, type == KEY_PRESSED || type == KEY_LONG_PRESSED)) {
+            wakeEDT();
         }
     }
 
-    /**
-     * Creates a pointer event with the following properties
-     */
-    private int[] createPointerEvent(int[] x, int[] y, int eventType) {
-        if(x.length == 1) {
-            return new int[] {eventType, x[0], y[0]};
+    private void addPointerEvent(int type, int[] x, int[] y) {
+        // only the latest position of a series of drags matters
+        if(inputEvents.addPointer(type, x, y, type == POINTER_DRAGGED,
+                type == POINTER_PRESSED || type == POINTER_DRAGGED || type == POINTER_HOVER)) {
+            wakeEDT();
         }
-        int[] arr = new int[1 + x.length * 2];
-        arr[0] = eventType;
-        int arrayOffset = 1;
-        for(int iter = 0 ; iter < x.length ; iter++) {
-            arr[arrayOffset] = x[iter];
-            arrayOffset++;
-            arr[arrayOffset] = y[iter];
-            arrayOffset++;
-        }
-        return arr;
     }
 
-
-    private int[] createKeyEvent(int keyCode, boolean pressed) {
-        if(pressed) {
-            return new int[] {KEY_PRESSED, keyCode};
-        } else {
-            return new int[] {KEY_RELEASED, keyCode};
+    private void wakeEDT() {
+        synchronized(lock) {
+            lock.notify();
         }
     }
     
@@ -1103,7 +1155,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createKeyEvent(keyCode, true));
+        addInputEvent(KEY_PRESSED, keyCode, 0);
 
         lastInteractionWasKeypad = lastInteractionWasKeypad || (keyCode != Form.leftSK && keyCode != Form.clearSK && keyCode != Form.backSK);
         
@@ -1145,7 +1197,7 @@ public final class Display {
         } else {
             lastKeyPressed = 0;
         }
-        addInputEvent(createKeyEvent(keyCode, false));
+        addInputEvent(KEY_RELEASED, keyCode, 0);
     }
 
     void keyRepeatedInternal(final int keyCode){
@@ -1162,7 +1214,7 @@ public final class Display {
             return;
         }
         longPointerCharged = false;
-        addInputEvent(createPointerEvent(x, y, POINTER_DRAGGED));
+        addPointerEvent(POINTER_DRAGGED, x, y);
     }
 
     /**
@@ -1175,7 +1227,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createPointerEvent(x, y, POINTER_HOVER));
+        addPointerEvent(POINTER_HOVER, x, y);
     }
 
 
@@ -1189,7 +1241,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createPointerEvent(x, y, POINTER_HOVER_RELEASED));
+        addPointerEvent(POINTER_HOVER_RELEASED, x, y);
     }
 
     /**
@@ -1209,7 +1261,7 @@ public final class Display {
         longKeyPressTime = System.currentTimeMillis();
         pointerX = x[0];
         pointerY = y[0];
-        addInputEvent(createPointerEvent(x, y, POINTER_PRESSED));
+        addPointerEvent(POINTER_PRESSED, x, y);
     }
     
     /**
@@ -1224,7 +1276,7 @@ public final class Display {
         if(impl.getCurrentForm() == null){
             return;
         }
-        addInputEvent(createPointerEvent(x, y, POINTER_RELEASED));
+        addPointerEvent(POINTER_RELEASED, x, y);
     }
 
     /**
@@ -1243,11 +1295,7 @@ public final class Display {
             return;
         }
             
-        addInputEvent(createSizeChangedEvent(w, h));
-    }
-
-    private int[] createSizeChangedEvent(int w, int h) {
-        return new int[] {SIZE_CHANGED, w, h};
+        addInputEvent(SIZE_CHANGED, w, h);
     }
 
 
@@ -1260,7 +1308,7 @@ public final class Display {
         longPressCharged = false;
         longPointerCharged = false;
         pointerPressedAndNotReleased = false;
-        addInputEvent(new int[]{HIDE_NOTIFY});
+        addInputEvent(HIDE_NOTIFY, 0, 0);
     }
 
     /**
@@ -1268,7 +1316,7 @@ public final class Display {
      * to notify LWUIT of showNotify events
      */
     public void showNotify(){
-        addInputEvent(new int[]{SHOW_NOTIFY});        
+        addInputEvent(SHOW_NOTIFY, 0, 0);
     }
     
     
@@ -1279,17 +1327,17 @@ public final class Display {
     boolean shouldEDTSleepNoFormAnimation() {
         boolean b;
         synchronized(lock){
-            b = inputEvents.size() == 0 &&
+            b = inputEvents.isEmpty() &&
                     hasNoSerialCallsPending() &&
                     (!keyRepeatCharged || !longPressCharged);
         }
         return b;
     }
 
-    private void updateDragSpeedStatus(int[] ev) {
+    private void updateDragSpeedStatus(int x, int y) {
             //save dragging input to calculate the dragging speed later
-            dragPathX[dragPathOffset] = pointerEvent(1, ev)[0];
-            dragPathY[dragPathOffset] = pointerEvent(2, ev)[0];
+            dragPathX[dragPathOffset] = x;
+            dragPathY[dragPathOffset] = y;
             dragPathTime[dragPathOffset] = System.currentTimeMillis();
             if (dragPathLength < PATHLENGTH) {
                 dragPathLength++;
@@ -1301,38 +1349,58 @@ public final class Display {
     }
 
     /**
-     * Invoked on the EDT to propagate the event
+     * Invoked on the EDT to remove the event at the head of the queue and propagate it
      */
-    private void handleEvent(int[] ev) {
+    private void handleEvent() {
         Form f = getCurrentUpcomingForm(true);
+
+        // copy the event out before removing it, the handler might run a nested
+        // EDT loop (e.g. a modal dialog) that drains the queue
+        int type = inputEvents.type();
+        int arg0 = inputEvents.arg(0);
+        int arg1 = inputEvents.arg(1);
+        int[] x = null;
+        int[] y = null;
+        int count = inputEvents.pointCount();
+        if(count > 0) {
+            if(count <= InputEventQueue.MAX_POINTS) {
+                x = xPointerEvents[count - 1];
+                y = yPointerEvents[count - 1];
+            } else {
+                x = new int[count];
+                y = new int[count];
+            }
+            inputEvents.copyPoints(x, y);
+        }
+        inputEvents.remove();
         
-        switch(ev[0]) {
+        switch(type) {
         case KEY_PRESSED:
-            f.keyPressed(ev[1]);
+            f.keyPressed(arg0);
             break;
         case KEY_RELEASED:
-            f.keyReleased(ev[1]);
+            f.keyReleased(arg0);
             break;
         case POINTER_PRESSED:
             dragPathLength = 0;
-            f.pointerPressed(pointerEvent(1, ev), pointerEvent(2, ev));
+            f.pointerPressed(x, y);
             break;
         case POINTER_RELEASED:
-            f.pointerReleased(pointerEvent(1, ev), pointerEvent(2, ev));
+            f.pointerReleased(x, y);
             break;
         case POINTER_DRAGGED:
-            updateDragSpeedStatus(ev);
-            f.pointerDragged(pointerEvent(1, ev), pointerEvent(2, ev));
+            updateDragSpeedStatus(x[0], y[0]);
+            f.pointerDragged(x, y);
             break;
         case POINTER_HOVER:
-            updateDragSpeedStatus(ev);
-            f.pointerHover(pointerEvent(1, ev), pointerEvent(2, ev));
+            updateDragSpeedStatus(x[0], y[0]);
+            f.pointerHover(x, y);
             break;
         case POINTER_HOVER_RELEASED:
-            f.pointerHoverReleased(pointerEvent(1, ev), pointerEvent(2, ev));
+            f.pointerHoverReleased(x, y);
             break;
         case SIZE_CHANGED:
-            f.sizeChangedInternal(ev[1], ev[2]);
+            f.sizeChangedInternal(arg0, arg1);
             break;
         case HIDE_NOTIFY:
             f.hideNotify();
@@ -1343,16 +1411,6 @@ public final class Display {
         }
     }
     
-    private int[] pointerEvent(int off, int[] event) {
-        int[] peX = new int[event.length / 2];
-        int offset = 0;
-        for(int iter = off ; iter < event.length ; iter+=2 ) {
-            peX[offset] = event[iter];
-            offset++;
-        }
-        return peX;
-    }
-
     /**
      * Returns true for a case where the EDT has nothing at all to do
      */
@@ -1360,7 +1418,7 @@ public final class Display {
         Form current = impl.getCurrentForm();
         return (current == null || (!current.hasAnimations())) &&
                 (animationQueue == null || animationQueue.size() == 0) &&
-                inputEvents.size() == 0 &&
+                inputEvents.isEmpty() &&
                 (!impl.hasPendingPaints()) &&
                 hasNoSerialCallsPending() && !keyRepeatCharged 
                 && !longPointerCharged;
@@ -27,12 +27,12 @@ package com.sun.lwuit;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
 
 /**
  * An image that only keeps the binary data of the source file used to load it
  * in permanent memory. This allows the bitmap to get collected while the binary
- * data remains, a weak reference is used for caching.
+ * data remains, the decoded bitmap is kept in the {@link ImageCache} and can be
+ * locked there while the image is on the screen.
  *
  * @author Shai Almog
  */
@@ -42,7 +42,7 @@ public class EncodedImage extends Image {
     private int height = -1;
     private boolean opaqueChecked = false;
     private boolean opaque = false;
-    private WeakReference cache;
+    private int locks;
     
     private EncodedImage(byte[] imageData) {
         super(null);
@@ -92,17 +92,42 @@ public class EncodedImage extends Image {
     }
     
     private Image getInternal() {
-        if(cache != null) {
-            Image i = (Image)cache.get();
-            if(i != null) {
-                return i;
-            }
+        ImageCache cache = ImageCache.getInstance();
+        Image i = cache.get(this, -1, -1);
+        if(i != null) {
+            return i;
+        }
+        i = Image.createImage(imageData, 0, imageData.length);
+        cache.put(this, -1, -1, i);
+        if(locks > 0) {
+            cache.pin(this, -1, -1);
         }
-        Image i = Image.createImage(imageData, 0, imageData.length);
-        cache = new WeakReference(i);
         return i;
     }
 
+    /**
+     * Keeps the decoded image in the image cache until unlock is invoked
+     */
+    public void lock() {
+        locks++;
+        if(locks == 1 && !ImageCache.getInstance().pin(this, -1, -1)) {
+            // decoding puts the image into the cache pinned
+            getInternal();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void unlock() {
+        if(locks > 0) {
+            locks--;
+            if(locks == 0) {
+                ImageCache.getInstance().unpin(this, -1, -1);
+            }
+        }
+    }
+
     /**
      * Creates an image from the input stream 
      * 
@@ -203,32 +228,22 @@ public class EncodedImage extends Image {
         getInternal().toRGB(image, destX, destY, x, y, width, height);
     }
 
-    /**
-     * @inheritDoc
-     */
-    public Image scaledWidth(int width) {
-        return getInternal().scaledWidth(width);
-    }
-
-    /**
-     * @inheritDoc
-     */
-    public Image scaledHeight(int height) {
-        return getInternal().scaledHeight(height);
-    }
-
-    /**
-     * @inheritDoc
-     */
-    public Image scaledSmallerRatio(int width, int height) {
-        return getInternal().scaledSmallerRatio(width, height);
-    }
-
     /**
      * @inheritDoc
      */
     public Image scaled(int width, int height) {
-        return getInternal().scaled(width, height);
+        if(width == -1) {
+            return scaledHeight(height);
+        } 
+        if(height == -1) {
+            return scaledWidth(width);
+        }
+        if(width == getWidth() && height == getHeight()) {
+            return this;
+        }
+        // scaled copies are cached under the encoded image rather than the
+        // decoded one which may be dropped
+        return getInternal().scaled(this, width, height);
     }
 
     /**
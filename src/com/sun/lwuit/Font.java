@@ -121,6 +121,12 @@ public class Font {
 
     private Object font;
 
+    /**
+     * Glyph widths measured by {@link LineBreaker} plus one, in pages of 256
+     * characters indexed by the high byte of the character
+     */
+    int[][] widthCache;
+
     /**
      * Creates a new Font
      */
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import com.sun.lwuit.geom.Rectangle;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * Opt-in profiler of the EDT, installed with
+ * {@link Display#setProfiler(FrameProfiler)}. While installed it records, for
+ * every frame the EDT does work in, the time spent in each phase of the loop,
+ * the depth of the paint queue and whether the frame overran the frame rate
+ * set by {@link Display#setFramerate(int)}. The last frames are kept in a ring
+ * buffer; paint costs are accumulated per component UIID. When no profiler is
+ * installed every hook is a single null check.
+ *
+ * <p>Timings come from System.currentTimeMillis() which is all CLDC offers, so
+ * single measurements are coarse and averages over the buffer are what
+ * matter. Component paint costs are inclusive of the children.
+ *
+ * <p>The numbers can be drawn on top of the UI by
+ * {@link #setOverlayVisible(boolean)}, read through the accessors or printed
+ * with {@link #toString()}.
+ */
+public class FrameProfiler {
+    /**
+     * Handling of key and pointer events, including key repeat
+     */
+    public static final int PHASE_INPUT = 0;
+
+    /**
+     * Painting the dirty components and animations in the paint queue
+     */
+    public static final int PHASE_PAINT = 1;
+
+    /**
+     * Form.repaintAnimations()
+     */
+    public static final int PHASE_ANIMATIONS = 2;
+
+    /**
+     * Runnables posted through callSerially()
+     */
+    public static final int PHASE_SERIAL_CALLS = 3;
+
+    /**
+     * Painting a transition, during which the rest of the loop is skipped
+     */
+    public static final int PHASE_TRANSITION = 4;
+
+    /**
+     * Number of phases
+     */
+    public static final int PHASE_COUNT = 5;
+
+    private static final String[] PHASE_NAMES = {"in", "paint", "anim", "call", "trans"};
+
+    private final int capacity;
+    private final int[][] phases;
+    private final int[] totals;
+    private final int[] queueDepths;
+    private int next;
+    private int size;
+
+    private final int[] current = new int[PHASE_COUNT];
+    private long frameStart;
+    private long phaseStart;
+    private int currentQueueDepth;
+
+    private long frames;
+    private long idleFrames;
+    private long droppedFrames;
+    private int maxQueueDepth;
+
+    /**
+     * UIID -> long[]{paint count, total ms, max ms}
+     */
+    private final Hashtable componentCosts = new Hashtable();
+
+    private boolean overlayVisible;
+    private final Rectangle overlayBounds = new Rectangle();
+    private Font overlayFont;
+
+    /**
+     * Creates a profiler keeping the given number of frames
+     *
+     * @param capacity number of frames in the ring buffer
+     */
+    public FrameProfiler(int capacity) {
+        this.capacity = capacity;
+        phases = new int[PHASE_COUNT][capacity];
+        totals = new int[capacity];
+        queueDepths = new int[capacity];
+    }
+
+    /**
+     * Invoked by the EDT when a frame starts
+     */
+    void beginFrame() {
+        frameStart = System.currentTimeMillis();
+        phaseStart = frameStart;
+        for (int iter = 0; iter < PHASE_COUNT; iter++) {
+            current[iter] = 0;
+        }
+        currentQueueDepth = 0;
+    }
+
+    /**
+     * Invoked by the EDT when a phase of the frame completes, the time since
+     * the previous phase is added to it
+     */
+    void endPhase(int phase) {
+        long now = System.currentTimeMillis();
+        current[phase] += (int) (now - phaseStart);
+        phaseStart = now;
+    }
+
+    /**
+     * Invoked by the EDT when the frame completes
+     *
+     * @param frameBudget milliseconds a frame may take at the set frame rate
+     */
+    synchronized void endFrame(int frameBudget) {
+        int total = (int) (phaseStart - frameStart);
+        frames++;
+        if (total == 0 && currentQueueDepth == 0) {
+            // the EDT woke up with nothing to do, don't let these dilute the buffer
+            idleFrames++;
+            return;
+        }
+        if (frameBudget > 0 && total >= frameBudget) {
+            droppedFrames += total / frameBudget;
+        }
+        for (int iter = 0; iter < PHASE_COUNT; iter++) {
+            phases[iter][next] = current[iter];
+        }
+        totals[next] = total;
+        queueDepths[next] = currentQueueDepth;
+        next = (next + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * Invoked by the implementation with the number of entries it is about
+     * to paint from the paint queue
+     *
+     * @param depth the paint queue depth
+     */
+    public void paintQueueDepth(int depth) {
+        currentQueueDepth = depth;
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * Invoked when a component completed painting itself and its children
+     */
+    synchronized void componentPainted(Component cmp, long time) {
+        String uiid = cmp.getUIID();
+        if (uiid == null) {
+            uiid = "?";
+        }
+        long[] cost = (long[]) componentCosts.get(uiid);
+        if (cost == null) {
+            cost = new long[3];
+            componentCosts.put(uiid, cost);
+        }
+        cost[0]++;
+        cost[1] += time;
+        if (time > cost[2]) {
+            cost[2] = time;
+        }
+    }
+
+    /**
+     * Clears all recorded data
+     */
+    public synchronized void reset() {
+        next = 0;
+        size = 0;
+        frames = 0;
+        idleFrames = 0;
+        droppedFrames = 0;
+        maxQueueDepth = 0;
+        componentCosts.clear();
+    }
+
+    /**
+     * Returns the number of frames in the ring buffer
+     *
+     * @return frames available to the accessors
+     */
+    public synchronized int getFrameCount() {
+        return size;
+    }
+
+    /**
+     * Returns the duration of a buffered frame
+     *
+     * @param age 0 for the last frame, 1 for the one before it etc.
+     * @return milliseconds the frame took
+     */
+    public synchronized int getFrameTime(int age) {
+        return totals[index(age)];
+    }
+
+    /**
+     * Returns the time a buffered frame spent in one phase
+     *
+     * @param age 0 for the last frame, 1 for the one before it etc.
+     * @param phase one of the PHASE_ constants
+     * @return milliseconds spent in the phase
+     */
+    public synchronized int getPhaseTime(int age, int phase) {
+        return phases[phase][index(age)];
+    }
+
+    /**
+     * Returns the paint queue depth of a buffered frame
+     *
+     * @param age 0 for the last frame, 1 for the one before it etc.
+     * @return number of components and animations painted in the frame
+     */
+    public synchronized int getPaintQueueDepth(int age) {
+        return queueDepths[index(age)];
+    }
+
+    /**
+     * Returns the total number of frames the EDT ran, including idle ones
+     * that are not buffered
+     *
+     * @return frames since the profiler was installed or reset
+     */
+    public synchronized long getTotalFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of frames lost to frames taking longer than the
+     * frame rate allows; a frame taking three frame durations counts as three
+     *
+     * @return dropped frames since the profiler was installed or reset
+     */
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Returns the deepest paint queue seen
+     *
+     * @return maximum paint queue depth since the profiler was installed or reset
+     */
+    public synchronized int getMaxPaintQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Returns the paint cost of a component type
+     *
+     * @param uiid the UIID of the components
+     * @return {paint count, total milliseconds, maximum milliseconds} or null
+     * if no such component was painted
+     */
+    public synchronized long[] getComponentCost(String uiid) {
+        long[] cost = (long[]) componentCosts.get(uiid);
+        if (cost == null) {
+            return null;
+        }
+        return new long[]{cost[0], cost[1], cost[2]};
+    }
+
+    /**
+     * Returns the UIIDs of all the painted components
+     *
+     * @return enumeration of UIID strings
+     */
+    public synchronized Enumeration getComponentUIIDs() {
+        return copyCosts().keys();
+    }
+
+    /**
+     * Shows or hides the statistics drawn on top of the UI
+     *
+     * @param overlayVisible true to draw the overlay
+     */
+    public void setOverlayVisible(boolean overlayVisible) {
+        this.overlayVisible = overlayVisible;
+        Form f = Display.getInstance().getCurrent();
+        if (f != null) {
+            f.repaint();
+        }
+    }
+
+    /**
+     * Indicates whether the overlay is drawn
+     *
+     * @return true if the overlay is drawn
+     */
+    public boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    /**
+     * Returns the area covered by the overlay the last time it was painted,
+     * so the implementation can flush it
+     *
+     * @return the overlay bounds
+     */
+    public Rectangle getOverlayBounds() {
+        return overlayBounds;
+    }
+
+    /**
+     * Draws the statistics at the top left corner of the screen, invoked by
+     * the implementation's paintOverlay
+     *
+     * @param g graphics of the screen
+     */
+    public void paintOverlay(Graphics g) {
+        String[] lines = overlayLines();
+        if (overlayFont == null) {
+            overlayFont = Font.createSystemFont(Font.FACE_MONOSPACE, Font.STYLE_PLAIN, Font.SIZE_SMALL);
+        }
+        int lineHeight = overlayFont.getHeight();
+        int width = 0;
+        for (int iter = 0; iter < lines.length; iter++) {
+            width = Math.max(width, overlayFont.stringWidth(lines[iter]));
+        }
+        width += 4;
+        int height = lines.length * lineHeight + 4;
+
+        int tx = g.getTranslateX();
+        int ty = g.getTranslateY();
+        int clipX = g.getClipX();
+        int clipY = g.getClipY();
+        int clipW = g.getClipWidth();
+        int clipH = g.getClipHeight();
+        int color = g.getColor();
+        Font font = g.getFont();
+        g.translate(-tx, -ty);
+        g.setClip(0, 0, width, height);
+
+        g.setColor(0);
+        g.fillRect(0, 0, width, height);
+        g.setColor(0xffff00);
+        g.setFont(overlayFont);
+        for (int iter = 0; iter < lines.length; iter++) {
+            g.drawString(lines[iter], 2, 2 + iter * lineHeight);
+        }
+
+        g.setFont(font);
+        g.setColor(color);
+        g.translate(tx, ty);
+        g.setClip(clipX, clipY, clipW, clipH);
+        overlayBounds.setX(0);
+        overlayBounds.setY(0);
+        overlayBounds.getSize().setWidth(width);
+        overlayBounds.getSize().setHeight(height);
+    }
+
+    private synchronized String[] overlayLines() {
+        int[] sums = new int[PHASE_COUNT];
+        int total = 0;
+        int max = 0;
+        for (int age = 0; age < size; age++) {
+            int i = index(age);
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                sums[phase] += phases[phase][i];
+            }
+            total += totals[i];
+            max = Math.max(max, totals[i]);
+        }
+        int n = Math.max(size, 1);
+        StringBuffer phaseLine = new StringBuffer();
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (phase > 0) {
+                phaseLine.append(' ');
+            }
+            phaseLine.append(PHASE_NAMES[phase]).append(' ').append(sums[phase] / n);
+        }
+        return new String[]{
+            "frame " + (size > 0 ? totals[index(0)] : 0) + " avg " + total / n + " max " + max,
+            phaseLine.toString(),
+            "drop " + droppedFrames + " queue " + (size > 0 ? queueDepths[index(0)] : 0) + " max " + maxQueueDepth
+        };
+    }
+
+    private Hashtable copyCosts() {
+        Hashtable copy = new Hashtable();
+        for (Enumeration e = componentCosts.keys(); e.hasMoreElements();) {
+            Object key = e.nextElement();
+            copy.put(key, componentCosts.get(key));
+        }
+        return copy;
+    }
+
+    private int index(int age) {
+        if (age < 0 || age >= size) {
+            throw new IndexOutOfBoundsException("Frame " + age + " of " + size);
+        }
+        return (next - 1 - age + capacity) % capacity;
+    }
+
+    /**
+     * Summary of the buffered frames and the costliest components
+     *
+     * @return multi line report
+     */
+    public synchronized String toString() {
+        String[] lines = overlayLines();
+        StringBuffer report = new StringBuffer();
+        report.append("frames ").append(frames).append(" (idle ").append(idleFrames).append(")\n");
+        for (int iter = 0; iter < lines.length; iter++) {
+            report.append(lines[iter]).append('\n');
+        }
+        Hashtable left = copyCosts();
+        while (!left.isEmpty()) {
+            String costliest = null;
+            long[] cost = null;
+            for (Enumeration e = left.keys(); e.hasMoreElements();) {
+                String uiid = (String) e.nextElement();
+                long[] c = (long[]) left.get(uiid);
+                if (cost == null || c[1] > cost[1]) {
+                    costliest = uiid;
+                    cost = c;
+                }
+            }
+            left.remove(costliest);
+            report.append(costliest).append(": ").append(cost[0]).append(" paints, ").append(cost[1]).append(" ms, max ").append(cost[2]).append(" ms\n");
+        }
+        return report.toString();
+    }
+}
@@ -24,12 +24,10 @@
  */
 package com.sun.lwuit;
 
-import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.impl.LWUITImplementation;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.util.Hashtable;
 
 /**
  * Abstracts the underlying platform images allowing us to treat them as a uniform
@@ -44,7 +42,12 @@ public class Image {
 
     private boolean opaqueTested = false;
     private boolean opaque;
-    private WeakReference scaleCache;
+    /**
+     * The image scaled copies of this image are created from while it is
+     * alive, scaled copies of a scaled copy are cached under the original.
+     * Weak so a small copy doesn't keep a large original in memory.
+     */
+    private WeakReference scaleSource;
     private boolean animated;
     private long imageTime = -1;
     private String svgBaseURL;
@@ -67,46 +70,22 @@ public class Image {
     }
 
     
-    private Hashtable getScaleCache() {
-        if(scaleCache == null) {
-            Hashtable h = new Hashtable();
-            scaleCache = new WeakReference(h);
-            return h;
-        }
-        Hashtable h = (Hashtable)scaleCache.get();
-        if(h == null) {
-            h = new Hashtable();
-            scaleCache = new WeakReference(h);
-        }
-        return h;
-    }
-
     /**
-     * Returns a cached scaled image
-     *
-     * @param size the size of the cached image
-     * @return cached image
+     * Keeps the decoded data of the image in memory until unlock is invoked, this
+     * is useful for images of encoded data which would otherwise be decoded again
+     * once they are dropped from the image cache. Does nothing by default.
+     * Invocations should be balanced by calls to unlock.
      */
-    Image getCachedImage(Dimension size) {
-        WeakReference w = (WeakReference)getScaleCache().get(size);
-        if(w != null) {
-            return (Image)w.get();
-        }
-        return null;
-    } 
-    
+    public void lock() {
+    }
+
     /**
-     * Returns a cached scaled image
-     * 
-     * @param size the size of the cached image
-     * @return cached image
+     * Reverses a call to lock, allowing the decoded data to be dropped from the
+     * image cache again. Does nothing by default.
      */
-    void cacheImage(Dimension size, Image i) {
-        WeakReference w = new WeakReference(i);
-        getScaleCache().put(size, w);
+    public void unlock() {
     }
 
-
     void setImage(Object image) {
         this.image = image;
     }
@@ -775,8 +754,25 @@ public class Image {
         if(height == -1) {
             return scaledWidth(width);
         }
-        Dimension d = new Dimension(width, height);
-        Image i = getCachedImage(d);
+        if(scaleSource != null) {
+            Image source = (Image)scaleSource.get();
+            if(source != null) {
+                return source.scaled(width, height);
+            }
+            scaleSource = null;
+        }
+        return scaled(this, width, height);
+    }
+
+    /**
+     * Creates a scaled copy of this image or returns the copy cached for the
+     * given source image
+     *
+     * @param source the original image the copy is cached under
+     */
+    Image scaled(Image source, int width, int height) {
+        ImageCache cache = ImageCache.getInstance();
+        Image i = cache.get(source, width, height);
         if(i != null) {
             return i;
         }
@@ -790,13 +786,13 @@ public class Image {
         }else{
             i = new Image(this.image);
         }
-        i.scaleCache = scaleCache;
+        i.scaleSource = new WeakReference(source);
         i.scale(width, height);
         i.transform = this.transform;
         i.animated = animated;
         i.svgBaseURL = svgBaseURL;
         i.svgData = svgData;        
-        cacheImage(new Dimension(width, height), i);
+        cache.put(source, width, height, i);
         return i;
     }
 
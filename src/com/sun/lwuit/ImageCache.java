@@ -0,0 +1,351 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.lang.ref.WeakReference;
+import java.util.Hashtable;
+
+/**
+ * Global cache of decoded and scaled images bounded by the memory their pixels
+ * occupy (width * height * 4 bytes). When the budget is exceeded the least
+ * recently used images are dropped, images that are pinned (e.g. the decoded
+ * data of an {@link EncodedImage} that is {@link Image#lock() locked} while on
+ * the screen) are never dropped but count toward the budget.
+ * <p>The cache holds the decoded data of encoded images and the scaled copies
+ * created by {@link Image#scaled(int, int)}, it keeps hit/miss/eviction counts
+ * that help tune the budget. Source images are only weakly referenced so a
+ * cached copy never keeps its (uncounted) source alive, the copies of a source
+ * that was collected are dropped first.
+ */
+public final class ImageCache {
+    private static final ImageCache INSTANCE = new ImageCache();
+
+    private final Hashtable entries = new Hashtable();
+
+    /**
+     * Reused for lookups so a cache hit doesn't allocate
+     */
+    private final Entry probe = new Entry();
+
+    /**
+     * Sentinel of the circular LRU list, head.next is the most recently used
+     * entry and head.previous the least recently used
+     */
+    private final Entry head = new Entry();
+
+    private int maxSize = 512 * 1024;
+    private int size;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * A cached image, also used as its own hashtable key
+     */
+    private static final class Entry {
+        /**
+         * The source of a cached image, null for the lookup probe
+         */
+        WeakReference source;
+
+        /**
+         * The source of the lookup probe, null for cached images
+         */
+        Object probeSource;
+        int hash;
+        int width;
+        int height;
+        Image image;
+        int bytes;
+        int pins;
+        Entry previous;
+        Entry next;
+
+        Object getSource() {
+            if(probeSource != null) {
+                return probeSource;
+            }
+            return source.get();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            Entry e = (Entry)o;
+            if(e == this) {
+                return true;
+            }
+            Object s = getSource();
+            return s != null && e.getSource() == s && e.width == width && e.height == height;
+        }
+    }
+
+    private ImageCache() {
+        head.previous = head;
+        head.next = head;
+    }
+
+    /**
+     * Returns the global image cache
+     *
+     * @return the image cache instance
+     */
+    public static ImageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached image for the given source and size or null
+     *
+     * @param source the image the cached image was created from
+     * @param width the width of the cached image or -1 for the decoded source
+     * @param height the height of the cached image or -1 for the decoded source
+     */
+    synchronized Image get(Object source, int width, int height) {
+        Entry e = find(source, width, height);
+        if(e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        unlink(e);
+        link(e);
+        return e.image;
+    }
+
+    /**
+     * Adds an image to the cache, dropping the least recently used images if
+     * the cache is over its budget
+     */
+    synchronized void put(Object source, int width, int height, Image image) {
+        Entry e = find(source, width, height);
+        if(e == null) {
+            e = new Entry();
+            e.source = new WeakReference(source);
+            e.hash = hash(source, width, height);
+            e.width = width;
+            e.height = height;
+            entries.put(e, e);
+        } else {
+            unlink(e);
+            size -= e.bytes;
+        }
+        e.image = image;
+        e.bytes = image.getWidth() * image.getHeight() * 4;
+        size += e.bytes;
+        link(e);
+        trim(e);
+    }
+
+    /**
+     * Prevents the image from being dropped until unpin is invoked as many
+     * times as pin was
+     *
+     * @return false if the image isn't in the cache
+     */
+    synchronized boolean pin(Object source, int width, int height) {
+        Entry e = find(source, width, height);
+        if(e == null) {
+            return false;
+        }
+        e.pins++;
+        return true;
+    }
+
+    /**
+     * Reverses a call to pin, the image can be dropped again once it is no
+     * longer pinned
+     */
+    synchronized void unpin(Object source, int width, int height) {
+        Entry e = find(source, width, height);
+        if(e != null && e.pins > 0) {
+            e.pins--;
+            if(e.pins == 0) {
+                trim(null);
+            }
+        }
+    }
+
+    /**
+     * Drops all the images that aren't pinned
+     */
+    public synchronized void clear() {
+        Entry e = head.previous;
+        while(e != head) {
+            Entry previous = e.previous;
+            if(e.pins == 0) {
+                remove(e);
+            }
+            e = previous;
+        }
+    }
+
+    private static int hash(Object source, int width, int height) {
+        return System.identityHashCode(source) ^ (width * 31 + height);
+    }
+
+    private Entry find(Object source, int width, int height) {
+        probe.probeSource = source;
+        probe.hash = hash(source, width, height);
+        probe.width = width;
+        probe.height = height;
+        Entry e = (Entry)entries.get(probe);
+        probe.probeSource = null;
+        return e;
+    }
+
+    /**
+     * Drops the images whose source was collected, then least recently used
+     * images until the cache fits the budget, the given entry is kept even if
+     * it doesn't fit on its own
+     */
+    private void trim(Entry keep) {
+        if(size <= maxSize) {
+            return;
+        }
+        Entry e = head.previous;
+        while(e != head) {
+            Entry previous = e.previous;
+            if(e != keep && e.source.get() == null) {
+                // nothing can look the image up anymore, pinned or not
+                remove(e);
+            }
+            e = previous;
+        }
+        e = head.previous;
+        while(size > maxSize && e != head) {
+            Entry previous = e.previous;
+            if(e != keep && e.pins == 0) {
+                remove(e);
+                evictions++;
+            }
+            e = previous;
+        }
+    }
+
+    private void remove(Entry e) {
+        unlink(e);
+        entries.remove(e);
+        size -= e.bytes;
+        e.image = null;
+    }
+
+    private void link(Entry e) {
+        e.previous = head;
+        e.next = head.next;
+        head.next.previous = e;
+        head.next = e;
+    }
+
+    private void unlink(Entry e) {
+        e.previous.next = e.next;
+        e.next.previous = e.previous;
+        e.previous = null;
+        e.next = null;
+    }
+
+    /**
+     * Indicates the number of bytes of image data the cache may hold
+     *
+     * @param maxSize the budget in bytes
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        trim(null);
+    }
+
+    /**
+     * Indicates the number of bytes of image data the cache may hold
+     *
+     * @return the budget in bytes, 512kb by default
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of bytes of image data currently cached
+     *
+     * @return bytes cached
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of images currently cached
+     *
+     * @return images cached
+     */
+    public int getImageCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached image
+     *
+     * @return cache hits
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to decode or scale an image
+     *
+     * @return cache misses
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of images dropped to keep the cache within its budget
+     *
+     * @return evictions
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public String toString() {
+        return "ImageCache " + entries.size() + " images, " + size + "/" + maxSize + " bytes, " +
+                hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
@@ -24,7 +24,6 @@
  */
 package com.sun.lwuit;
 
-import com.sun.lwuit.geom.Dimension;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -81,39 +80,6 @@ public class IndexedImage extends Image {
         }
     }
 
-    /**
-     * Converts an image to a package image after which the original image can be GC'd
-     */
-    private IndexedImage(int width, int height, int[] palette, int[] rgb) {
-        super(null);
-        
-        this.width = width;
-        this.height = height;
-        this.palette = palette;
-        
-        // byte based package image
-        imageDataByte = new byte[width * height];
-        for(int iter = 0 ; iter < imageDataByte.length ; iter++) {
-            imageDataByte[iter] = (byte)paletteOffset(rgb[iter]);
-        }
-        initOpaque();
-    }
-
-    /**
-     * Finds the offset within the palette of the given rgb value
-     * 
-     * @param value ARGB value from the image
-     * @return offset within the palette array
-     */
-    private int paletteOffset(int rgb) {
-        for(int iter = 0 ; iter < palette.length ; iter++) {
-            if(rgb == palette[iter]) {
-                return iter;
-            }
-        }
-        throw new IllegalStateException("Invalid palette request in paletteOffset");
-    }
-
     /**
      * Packs the image loaded by MIDP
      * 
@@ -200,34 +166,41 @@ public class IndexedImage extends Image {
      * @return a packed image or null
      */
     public static IndexedImage pack(int[] rgb, int width, int height) {
+        return pack(rgb, width, height, false);
+    }
+
+    /**
+     * Packs the source rgba image, images with more than 256 colors are either
+     * rejected or reduced to 256 colors
+     *
+     * @param rgb array containing ARGB data
+     * @param width width of the image in the rgb array
+     * @param height height of the image
+     * @param quantize true to reduce the colors of an image with more than 256
+     * colors (lossy), false to fail
+     * @return a packed image or null if the image has more than 256 colors and
+     * quantize is false
+     */
+    public static IndexedImage pack(int[] rgb, int width, int height, boolean quantize) {
         int arrayLength = width * height;
-        
-        // using a Vector is slower for a small scale device and this is mission critical code
-        int[] tempPalette = new int[256];
-        int paletteLocation = 0;
+        byte[] data = new byte[arrayLength];
+        ColorTable table = new ColorTable(256);
         for(int iter = 0 ; iter < arrayLength ; iter++) {
-            int current = rgb[iter];
-            if(!contains(tempPalette, paletteLocation, current)) {
-                if(paletteLocation > 255) {
-                    return null;
+            int index = table.add(rgb[iter]);
+            if(index > 255) {
+                if(quantize) {
+                    return quantize(rgb, width, height, data);
                 }
-                tempPalette[paletteLocation] = current;
-                paletteLocation++;
+                return null;
             }
+            data[iter] = (byte)index;
         }
 
-        // we need to "shrink" the palette array
-        if(paletteLocation != tempPalette.length) {
-            int[] newArray = new int[paletteLocation];
-            System.arraycopy(tempPalette, 0, newArray, 0, paletteLocation);
-            tempPalette = newArray;
-        }
-        
-        
-        IndexedImage i = new IndexedImage(width, height, tempPalette, rgb);
-        return i;
+        int[] palette = new int[table.size()];
+        System.arraycopy(table.getColors(), 0, palette, 0, palette.length);
+        return new IndexedImage(width, height, palette, data);
     }
-    
+
     /**
      * Tries to pack the given image and would return the packed image or source
      * image if packing failed
@@ -236,29 +209,161 @@ public class IndexedImage extends Image {
      * @return the source image if packing failed or a newly packed image if it succeeded
      */
     public static Image pack(final Image sourceImage) {
+        return pack(sourceImage, false);
+    }
+
+    /**
+     * Packs the given image reducing its colors to 256 if necessary, the result
+     * takes roughly a quarter of the memory of an ARGB image
+     *
+     * @param sourceImage the image which would be converted to a packed image
+     * @param quantize true to reduce the colors of an image with more than 256
+     * colors (lossy), false to return the source image in that case
+     * @return the source image if packing failed or a newly packed image if it succeeded
+     */
+    public static Image pack(final Image sourceImage, boolean quantize) {
         int width = sourceImage.getWidth();
         int height = sourceImage.getHeight();
         int[] rgb = sourceImage.getRGBCached();
         
-        Image i = pack(rgb, width, height);
+        Image i = pack(rgb, width, height, quantize);
         if(i == null) {
             return sourceImage;
         }
         return i;
     }
-    
-    
+
+    /**
+     * Reduces the image to 256 colors using the median cut algorithm: the
+     * distinct colors are repeatedly split at the weighted median of the
+     * channel with the widest range, each box of colors becomes a palette entry
+     * with the average of its colors
+     */
+    private static IndexedImage quantize(int[] rgb, int width, int height, byte[] data) {
+        int arrayLength = width * height;
+        ColorTable table = new ColorTable(1024);
+        for(int iter = 0 ; iter < arrayLength ; iter++) {
+            table.add(rgb[iter]);
+        }
+        int colorCount = table.size();
+        int[] colors = table.getColors();
+        int[] counts = table.getCounts();
+
+        // color indexes sorted so each box is a consecutive range
+        int[] order = new int[colorCount];
+        for(int iter = 0 ; iter < colorCount ; iter++) {
+            order[iter] = iter;
+        }
+        int[] temp = new int[colorCount];
+        int[] boxStart = new int[256];
+        int[] boxEnd = new int[256];
+        int[] boxShift = new int[256];
+        int[] boxRange = new int[256];
+        boxEnd[0] = colorCount;
+        measureBox(colors, order, boxStart, boxEnd, boxShift, boxRange, 0);
+        int boxes = 1;
+        while(boxes < 256) {
+            int widest = -1;
+            for(int iter = 0 ; iter < boxes ; iter++) {
+                if(boxEnd[iter] - boxStart[iter] > 1 && (widest < 0 || boxRange[iter] > boxRange[widest])) {
+                    widest = iter;
+                }
+            }
+            if(widest < 0) {
+                break;
+            }
+            int start = boxStart[widest];
+            int end = boxEnd[widest];
+            int shift = boxShift[widest];
+            sortByChannel(colors, order, temp, start, end, shift);
+
+            int total = 0;
+            for(int iter = start ; iter < end ; iter++) {
+                total += counts[order[iter]];
+            }
+            int split = start + 1;
+            int sum = counts[order[start]];
+            while(split < end - 1 && sum * 2 < total) {
+                sum += counts[order[split]];
+                split++;
+            }
+            boxEnd[widest] = split;
+            boxStart[boxes] = split;
+            boxEnd[boxes] = end;
+            measureBox(colors, order, boxStart, boxEnd, boxShift, boxRange, widest);
+            measureBox(colors, order, boxStart, boxEnd, boxShift, boxRange, boxes);
+            boxes++;
+        }
+
+        int[] palette = new int[boxes];
+        int[] map = temp;
+        for(int box = 0 ; box < boxes ; box++) {
+            long a = 0, r = 0, g = 0, b = 0, total = 0;
+            for(int iter = boxStart[box] ; iter < boxEnd[box] ; iter++) {
+                int index = order[iter];
+                int color = colors[index];
+                int count = counts[index];
+                a += ((color >>> 24) & 0xff) * count;
+                r += ((color >> 16) & 0xff) * count;
+                g += ((color >> 8) & 0xff) * count;
+                b += (color & 0xff) * count;
+                total += count;
+                map[index] = box;
+            }
+            palette[box] = (int)(a / total) << 24 | (int)(r / total) << 16 |
+                    (int)(g / total) << 8 | (int)(b / total);
+        }
+        for(int iter = 0 ; iter < arrayLength ; iter++) {
+            data[iter] = (byte)map[table.indexOf(rgb[iter])];
+        }
+        return new IndexedImage(width, height, palette, data);
+    }
+
     /**
-     * Searches the array up to "length" and returns true if value is within the
-     * array up to that point.
+     * Finds the channel with the widest range within the box and stores its
+     * shift and range
      */
-    private static boolean contains(int[] array, int length, int value) {
-        for(int iter = 0 ; iter < length ; iter++) {
-            if(array[iter] == value) {
-                return true;
+    private static void measureBox(int[] colors, int[] order, int[] boxStart, int[] boxEnd,
+            int[] boxShift, int[] boxRange, int box) {
+        int bestShift = 0;
+        int bestRange = -1;
+        for(int shift = 0 ; shift < 32 ; shift += 8) {
+            int min = 255;
+            int max = 0;
+            for(int iter = boxStart[box] ; iter < boxEnd[box] ; iter++) {
+                int value = (colors[order[iter]] >>> shift) & 0xff;
+                if(value < min) {
+                    min = value;
+                }
+                if(value > max) {
+                    max = value;
+                }
+            }
+            if(max - min > bestRange) {
+                bestRange = max - min;
+                bestShift = shift;
             }
         }
-        return false;
+        boxShift[box] = bestShift;
+        boxRange[box] = bestRange;
+    }
+
+    /**
+     * Counting sort of the given range of color indexes by one channel
+     */
+    private static void sortByChannel(int[] colors, int[] order, int[] temp, int start, int end, int shift) {
+        int[] buckets = new int[257];
+        for(int iter = start ; iter < end ; iter++) {
+            buckets[((colors[order[iter]] >>> shift) & 0xff) + 1]++;
+        }
+        for(int iter = 1 ; iter < 257 ; iter++) {
+            buckets[iter] += buckets[iter - 1];
+        }
+        for(int iter = start ; iter < end ; iter++) {
+            int index = order[iter];
+            temp[start + buckets[(colors[index] >>> shift) & 0xff]++] = index;
+        }
+        System.arraycopy(temp, start, order, start, end - start);
     }
     
     static int[] lineCache;
@@ -333,11 +438,14 @@ public class IndexedImage extends Image {
         if(srcWidth == width && srcHeight == height){
             return this;
         }
-        Dimension d = new Dimension(width, height);
-        Image i = getCachedImage(d);
+        ImageCache cache = ImageCache.getInstance();
+        Image i = cache.get(this, width, height);
+        if(i != null) {
+            return i;
+        }
         // currently we only support byte data...
         i = new IndexedImage(width, height, palette, scaleArray(imageDataByte, width, height));
-        cacheImage(d, i);
+        cache.put(this, width, height, i);
         return i;
     }
     
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Vector;
+
+/**
+ * Fixed capacity ring of the key, pointer and notification events waiting for
+ * the EDT. Events are stored in preallocated primitive slots so queueing and
+ * dispatching them allocates nothing.
+ *
+ * <p>The EDT is the only consumer and reads without locking, it only relies on
+ * the volatile head and tail indexes. Producers are serialized on the queue
+ * itself, which is uncontended on MIDP where all callbacks come from one
+ * thread, and the EDT never takes that monitor.
+ *
+ * <p>A flood of drags takes a single slot: a drag queued behind another drag
+ * overwrites its coordinates. The rewrite is versioned so the EDT never reads
+ * a half written position.
+ *
+ * <p>When the ring is full (e.g. the EDT is stuck in a long layout) further
+ * events wait in a spill list and are moved into the ring as the EDT frees
+ * slots, only then does the EDT take the monitor. The spill list is bounded
+ * for events the caller marks as droppable (presses, drags), other events
+ * such as releases are never dropped so nothing stays pressed.
+ */
+class InputEventQueue {
+    /**
+     * Points of a pointer event stored in the slot, events with more points
+     * (multi-touch) keep their coordinates in a separate array
+     */
+    static final int MAX_POINTS = 2;
+
+    /**
+     * Slot layout: type, point count, then either the key code, the width and
+     * height or x0, y0, x1, y1
+     */
+    private static final int SLOT_SIZE = 2 + MAX_POINTS * 2;
+
+    private final int capacity;
+    private final int[] slots;
+    private final int[][] overflow;
+
+    /**
+     * Next slot the EDT reads, only written by the EDT
+     */
+    private volatile int head;
+
+    /**
+     * Next slot to fill, only written by producers
+     */
+    private volatile int tail;
+
+    /**
+     * Slot whose coordinates are being overwritten by a coalesced event or -1,
+     * and the number of such rewrites, checked by the EDT while copying
+     */
+    private volatile int rewriting = -1;
+    private volatile int rewrites;
+
+    /**
+     * Events that didn't fit in the ring, in order, each an int[] laid out as a
+     * slot; only touched under the monitor
+     */
+    private final Vector spill = new Vector();
+
+    /**
+     * Size of the spill list, read by the EDT to avoid taking the monitor
+     */
+    private volatile int spilled;
+
+    private int droppedEvents;
+
+    /**
+     * @param capacity maximum number of queued events
+     */
+    InputEventQueue(int capacity) {
+        this.capacity = capacity;
+        slots = new int[capacity * SLOT_SIZE];
+        overflow = new int[capacity][];
+    }
+
+    /**
+     * Queues an event with up to two int arguments
+     *
+     * @param droppable true if the event may be dropped when the queue is full
+     * @return false if the queue was full and the event was dropped
+     */
+    synchronized boolean add(int type, int a, int b, boolean droppable) {
+        int t = tail;
+        if (spilled > 0 || isFull(t)) {
+            return addSpill(new int[] {type, 0, a, b}, droppable);
+        }
+        int offset = t * SLOT_SIZE;
+        slots[offset] = type;
+        slots[offset + 1] = 0;
+        slots[offset + 2] = a;
+        slots[offset + 3] = b;
+        tail = (t + 1) % capacity;
+        return true;
+    }
+
+    /**
+     * Queues a pointer event
+     *
+     * @param coalesce true if the event may replace the position of an
+     * identical event queued right before it
+     * @param droppable true if the event may be dropped when the queue is full
+     * @return false if the queue was full and the event was dropped
+     */
+    synchronized boolean addPointer(int type, int[] x, int[] y, boolean coalesce,
+            boolean droppable) {
+        int t = tail;
+        if (spilled > 0 || isFull(t)) {
+            if (coalesce && coalesceSpill(type, x, y)) {
+                return true;
+            }
+            int[] event = new int[2 + x.length * 2];
+            event[0] = type;
+            event[1] = x.length;
+            for (int iter = 0; iter < x.length; iter++) {
+                event[2 + iter * 2] = x[iter];
+                event[3 + iter * 2] = y[iter];
+            }
+            return addSpill(event, droppable);
+        }
+        if (coalesce && coalesce(t, type, x, y)) {
+            return true;
+        }
+        int offset = t * SLOT_SIZE;
+        slots[offset] = type;
+        slots[offset + 1] = x.length;
+        if (x.length <= MAX_POINTS) {
+            overflow[t] = null;
+            for (int iter = 0; iter < x.length; iter++) {
+                slots[offset + 2 + iter * 2] = x[iter];
+                slots[offset + 3 + iter * 2] = y[iter];
+            }
+        } else {
+            int[] points = new int[x.length * 2];
+            for (int iter = 0; iter < x.length; iter++) {
+                points[iter * 2] = x[iter];
+                points[iter * 2 + 1] = y[iter];
+            }
+            overflow[t] = points;
+        }
+        tail = (t + 1) % capacity;
+        return true;
+    }
+
+    /**
+     * Overwrites the coordinates of the last event if it has the given type and
+     * point count and the EDT hasn't started reading it
+     */
+    private boolean coalesce(int t, int type, int[] x, int[] y) {
+        int last = (t - 1 + capacity) % capacity;
+        int offset = last * SLOT_SIZE;
+        if (head == t || last == head || slots[offset] != type
+                || slots[offset + 1] != x.length || x.length > MAX_POINTS) {
+            return false;
+        }
+        rewriting = last;
+        for (int iter = 0; iter < x.length; iter++) {
+            slots[offset + 2 + iter * 2] = x[iter];
+            slots[offset + 3 + iter * 2] = y[iter];
+        }
+        rewrites++;
+        rewriting = -1;
+
+        // if the EDT reached the slot meanwhile it may have read the old
+        // position, queue the new one as well
+        int h = head;
+        return last != h && (last - h + capacity) % capacity < (t - h + capacity) % capacity;
+    }
+
+    private boolean isFull(int t) {
+        return (t + 1) % capacity == head;
+    }
+
+    /**
+     * Queues an event behind the full ring, droppable events are dropped once
+     * the spill list holds as many events as the ring
+     */
+    private boolean addSpill(int[] event, boolean droppable) {
+        if (droppable && spill.size() >= capacity) {
+            droppedEvents++;
+            return false;
+        }
+        spill.addElement(event);
+        spilled = spill.size();
+        return true;
+    }
+
+    /**
+     * Same as coalesce() for the last spilled event, which the EDT can't be
+     * reading
+     */
+    private boolean coalesceSpill(int type, int[] x, int[] y) {
+        int size = spill.size();
+        if (size == 0) {
+            return false;
+        }
+        int[] last = (int[]) spill.elementAt(size - 1);
+        if (last[0] != type || last[1] != x.length) {
+            return false;
+        }
+        for (int iter = 0; iter < x.length; iter++) {
+            last[2 + iter * 2] = x[iter];
+            last[3 + iter * 2] = y[iter];
+        }
+        return true;
+    }
+
+    /**
+     * Moves spilled events into the slots the EDT freed, called by the EDT
+     */
+    private synchronized void refill() {
+        int t = tail;
+        while (spill.size() > 0 && !isFull(t)) {
+            int[] event = (int[]) spill.elementAt(0);
+            spill.removeElementAt(0);
+            int offset = t * SLOT_SIZE;
+            int count = event[1];
+            slots[offset] = event[0];
+            slots[offset + 1] = count;
+            if (count <= MAX_POINTS) {
+                overflow[t] = null;
+                int length = count == 0 ? 2 : count * 2;
+                System.arraycopy(event, 2, slots, offset + 2, length);
+            } else {
+                int[] points = new int[count * 2];
+                System.arraycopy(event, 2, points, 0, points.length);
+                overflow[t] = points;
+            }
+            t = (t + 1) % capacity;
+        }
+        tail = t;
+        spilled = spill.size();
+    }
+
+    /**
+     * Returns the number of droppable events dropped because the queue was full
+     */
+    synchronized int getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Returns the number of queued events
+     */
+    int size() {
+        return (tail - head + capacity) % capacity + spilled;
+    }
+
+    /**
+     * Removes the event at the head
+     */
+    void remove() {
+        int h = head;
+        overflow[h] = null;
+        head = (h + 1) % capacity;
+        if (spilled > 0) {
+            refill();
+        }
+    }
+
+    /**
+     * Returns the type of the event at the head
+     */
+    int type() {
+        return slots[head * SLOT_SIZE];
+    }
+
+    /**
+     * Returns an int argument of the event at the head, 0 for the key code or
+     * width and 1 for the height
+     */
+    int arg(int index) {
+        return slots[head * SLOT_SIZE + 2 + index];
+    }
+
+    /**
+     * Returns the number of points of the pointer event at the head
+     */
+    int pointCount() {
+        return slots[head * SLOT_SIZE + 1];
+    }
+
+    /**
+     * Copies the coordinates of the pointer event at the head, the arrays must
+     * have pointCount() elements
+     */
+    void copyPoints(int[] x, int[] y) {
+        int h = head;
+        int[] points = overflow[h];
+        if (points != null) {
+            for (int iter = 0; iter < x.length; iter++) {
+                x[iter] = points[iter * 2];
+                y[iter] = points[iter * 2 + 1];
+            }
+            return;
+        }
+        int offset = h * SLOT_SIZE + 2;
+        while (true) {
+            int version = rewrites;
+            if (rewriting != h) {
+                for (int iter = 0; iter < x.length; iter++) {
+                    x[iter] = slots[offset + iter * 2];
+                    y[iter] = slots[offset + iter * 2 + 1];
+                }
+                if (version == rewrites && rewriting != h) {
+                    return;
+                }
+            }
+            // a producer is rewriting this position, let it finish
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Indicates whether the event at the head and the one after it are both
+     * of the given type with the same number of points, i.e. the head can be
+     * skipped in favor of the newer position
+     */
+    boolean isSupersededBy(int type) {
+        int h = head;
+        int n = (h + 1) % capacity;
+        if (n == tail) {
+            return false;
+        }
+        int offset = h * SLOT_SIZE;
+        int nextOffset = n * SLOT_SIZE;
+        return slots[offset] == type && slots[nextOffset] == type
+                && slots[offset + 1] == slots[nextOffset + 1];
+    }
+}
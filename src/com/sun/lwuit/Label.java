@@ -144,6 +144,10 @@ public class Label extends Component {
      * @inheritDoc
      */
     void initComponentImpl() {
+        if(!isInitialized() && icon != null) {
+            // keep the decoded icon while the label is on the screen
+            icon.lock();
+        }
         super.initComponentImpl();
         if(hasFocus()) {
             LookAndFeel lf = UIManager.getInstance().getLookAndFeel();
@@ -157,6 +161,16 @@ public class Label extends Component {
             getComponentForm().registerAnimatedInternal(this);
         }
     }
+
+    /**
+     * @inheritDoc
+     */
+    void deinitializeImpl() {
+        if(isInitialized() && icon != null) {
+            icon.unlock();
+        }
+        super.deinitializeImpl();
+    }
     
     /**
      * Returns the label text
@@ -176,6 +190,14 @@ public class Label extends Component {
         if(this.icon == icon) {
             return;
         }
+        if(isInitialized()) {
+            if(this.icon != null) {
+                this.icon.unlock();
+            }
+            if(icon != null) {
+                icon.lock();
+            }
+        }
         this.icon = icon;
         setShouldCalcPreferredSize(true);
         checkAnimation();
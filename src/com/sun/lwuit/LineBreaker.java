@@ -0,0 +1,268 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Vector;
+
+/**
+ * Breaks text into the rows of a {@link TextArea} and into the words laid out
+ * by the HTML component. Widths are summed one character at a time from a
+ * per font cache of glyph widths, so text is measured in a single pass
+ * without building intermediate strings. The glyph widths are the only state
+ * kept; callers that want to reuse computed breaks keep them themselves.
+ */
+public final class LineBreaker {
+    private LineBreaker() {
+    }
+
+    /**
+     * Returns the width of the given character in the given font, measuring it
+     * only the first time it is asked for
+     *
+     * @param font the font to measure with
+     * @param c the character
+     * @return the width of the character in pixels
+     */
+    public static int charWidth(Font font, char c) {
+        int[][] pages = font.widthCache;
+        if(pages == null) {
+            pages = new int[256][];
+            font.widthCache = pages;
+        }
+        int[] page = pages[c >> 8];
+        if(page == null) {
+            page = new int[256];
+            pages[c >> 8] = page;
+        }
+        // widths are kept plus one so zero marks a character not measured yet
+        int w = page[c & 0xff];
+        if(w == 0) {
+            w = font.charWidth(c) + 1;
+            page[c & 0xff] = w;
+        }
+        return w - 1;
+    }
+
+    /**
+     * Returns the width of the given characters as the sum of their cached
+     * glyph widths
+     *
+     * @param font the font to measure with
+     * @param chars array of characters
+     * @param offset the first character to measure
+     * @param length the number of characters to measure
+     * @return the width of the characters in pixels
+     */
+    public static int charsWidth(Font font, char[] chars, int offset, int length) {
+        int w = 0;
+        for(int iter = offset ; iter < offset + length ; iter++) {
+            w += charWidth(font, chars[iter]);
+        }
+        return w;
+    }
+
+    /**
+     * Returns the width of the given string as the sum of its cached glyph
+     * widths
+     *
+     * @param font the font to measure with
+     * @param str the string to measure
+     * @return the width of the string in pixels
+     */
+    public static int stringWidth(Font font, String str) {
+        int w = 0;
+        int length = str.length();
+        for(int iter = 0 ; iter < length ; iter++) {
+            w += charWidth(font, str.charAt(iter));
+        }
+        return w;
+    }
+
+    /**
+     * Splits the text into words at white space, breaking words that are wider
+     * than the given width
+     *
+     * @param text the text to split
+     * @param font the font the words will be drawn in
+     * @param width the widest a word may be
+     * @return vector of the words as strings
+     */
+    public static Vector breakWords(String text, Font font, int width) {
+        Vector words = new Vector();
+        int length = text.length();
+        int start = 0;
+        int wordWidth = 0;
+        for(int iter = 0 ; iter < length ; iter++) {
+            char c = text.charAt(iter);
+            if(c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                if(iter > start) {
+                    words.addElement(text.substring(start, iter));
+                }
+                start = iter + 1;
+                wordWidth = 0;
+            } else {
+                int w = charWidth(font, c);
+                if(wordWidth + w > width) {
+                    words.addElement(text.substring(start, iter));
+                    start = iter;
+                    wordWidth = 0;
+                }
+                wordWidth += w;
+            }
+        }
+        if(length > start) {
+            words.addElement(text.substring(start));
+        }
+        return words;
+    }
+
+    /**
+     * Breaks the text into the rows of a text area. Rows end at a new line, or
+     * at the last space that still fits within the width; a row without any
+     * space is cut at the width. Characters found in unsupported are replaced
+     * by spaces in the given array.
+     *
+     * @param text the text to break
+     * @param font the font the rows will be drawn in
+     * @param width the width available for a row
+     * @param minCharactersInRow the number of characters that certainly fit in a row
+     * @param charWidth the width of the widest character of the font
+     * @param unsupported characters the font can't draw
+     * @param useStringWidth true to measure every row as a whole with
+     * {@link Font#charsWidth(char[], int, int)} rather than summing glyph widths
+     * @return vector of the rows as strings
+     */
+    static Vector breakRows(char[] text, Font font, int width, int minCharactersInRow,
+            int charWidth, String unsupported, boolean useStringWidth) {
+        Vector rowStrings = new Vector();
+        int textLength = text.length;
+        int from = 0;
+        int to = Math.max(Math.min(textLength - 1, minCharactersInRow), 0);
+        int i, spaceIndex;
+
+        /*
+        iteration over the string using indexes, from - the beginning of the row , to - end of a row
+        for each row we will try to search for a "space" character at the end of the row ( row is text area available width)
+        indorder to improve the efficiency we do not search an entire row but we start from minCharactersInRow which indicates
+        what is the minimum amount of characters that can feet in the text area width.
+        if we dont find we will go backwards and search for the first space available,
+        if there is no space in the entire row we will cut the line inorder to fit in.
+         */
+        while(to < textLength) {
+            String rowText = "";
+            spaceIndex = -1;
+            int maxLength = to;
+            int rowWidth = 0;
+            if(to != from) {
+                rowWidth = charsWidth(font, text, from, to - from);
+            }
+
+            // search for "space" character at close as possible to the end of the row
+            for(i = to ; i < textLength ; i++) {
+                char c = text[i];
+                if(useStringWidth) {
+                    int length = i - from + 1;
+                    if(length * charWidth >= width && font.charsWidth(text, from, length) >= width) {
+                        break;
+                    }
+                }
+                rowWidth += charWidth(font, c);
+                if(rowWidth >= width) {
+                    break;
+                }
+                if(unsupported.indexOf(c) > -1) {
+                    text[i] = ' ';
+                    c = ' ';
+                }
+                if(c == ' ' || c == '\n') {
+                    spaceIndex = i;
+                    // newline has been found. We can end the loop here as the line cannot grow more
+                    if(c == '\n') {
+                        break;
+                    }
+                }
+                maxLength++;
+            }
+
+            // if we got to the end of the text use the entire row,
+            // also if space is next character (in the next row) we can cut the line
+            if(i == textLength || text[i] == ' ' || text[i] == '\n') {
+                spaceIndex = i;
+            }
+
+            // if we found space in the limit width of the row (searched only from minCharactersInRow)
+            if(spaceIndex != -1) {
+                // make sure that if we have a newline character before the end of the line we should
+                // break there instead
+                int newLine = indexOf(text, '\n', from, spaceIndex - from);
+                if(newLine > -1 && newLine < spaceIndex) {
+                    spaceIndex = newLine;
+                }
+
+                rowText = new String(text, from, spaceIndex - from);
+                from = spaceIndex + 1;
+            } else {
+                // if there is no space from minCharactersInRow to limit need to search backwards
+                for(i = to ; spaceIndex == -1 && i >= from ; i--) {
+                    char chr = text[i];
+                    if(chr == ' ' || chr == '\n' || chr == '\t') {
+                        spaceIndex = i;
+
+                        // don't forget to search for line breaks in the
+                        // remaining part. otherwise we overlook possible
+                        // line breaks!
+                        int newLine = indexOf(text, '\n', from, i - from);
+                        if(newLine > -1 && newLine < spaceIndex) {
+                            spaceIndex = newLine;
+                        }
+                        rowText = new String(text, from, spaceIndex - from);
+                        from = spaceIndex + 1;
+                    }
+                }
+                if(spaceIndex == -1) {
+                    if(maxLength <= 0) {
+                        maxLength = 1;
+                    }
+                    spaceIndex = maxLength;
+                    rowText = new String(text, from, spaceIndex - from);
+                    from = spaceIndex;
+                }
+            }
+
+            rowStrings.addElement(rowText);
+            to = from;
+        }
+        return rowStrings;
+    }
+
+    private static int indexOf(char[] t, char c, int offset, int length) {
+        for(int iter = offset ; iter < t.length && iter < offset + length ; iter++) {
+            if(t[iter] == c) {
+                return iter;
+            }
+        }
+        return -1;
+    }
+}
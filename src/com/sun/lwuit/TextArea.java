@@ -162,6 +162,18 @@ public class TextArea extends Component {
     private Vector rowStrings;
     private int widthForRowCalculations = -1;
 
+    /**
+     * Number of earlier row breakings of the current text kept in rowsCache
+     */
+    private static final int CACHED_ROWS = 3;
+
+    /**
+     * Rows of the current text for the last few widths and fonts, most
+     * recently used last, so a width that comes back (e.g. a scrollbar or a
+     * focus style coming and going) doesn't wrap the text again
+     */
+    private Vector rowsCache;
+
     private int rowsGap = 2;
 
     private boolean triggerClose;
@@ -190,8 +202,6 @@ public class TextArea extends Component {
     private int align = LEFT;
     private int absAlign = isRTL() ? RIGHT : LEFT;
 
-    private int currentRowWidth;
-
     /**
      * Creates an area with the given rows and columns
      * 
@@ -353,6 +363,7 @@ public class TextArea extends Component {
         
         // special case to make the text field really fast...
         rowStrings=null; //zero the vector inorder to initialize it on the next paint
+        rowsCache = null;
         repaint();
     }
 
@@ -636,16 +647,6 @@ public class TextArea extends Component {
         return (String)rowsV.elementAt(line);
     }
     
-    private int indexOf(char[] t, char c, int offset, int length) {
-        for(int iter = offset ; iter < t.length && iter < offset+length; iter++) {
-            if(t[iter] == c) {
-                return iter;
-           }
-       }
-       return -1;
-   }
-
-    
     /**
      * Override this to modify the text for rendering in cases of invalid characters 
      * for display, this method allows the developer to replace such characters e.g.:
@@ -658,19 +659,6 @@ public class TextArea extends Component {
         return text.toCharArray();
     }
 
-    private int updateRowWidth(char c, Font font) {
-        currentRowWidth += font.charWidth(c);
-        return currentRowWidth;
-    }
-
-    private boolean fastCharWidthCheck(char[] chrs, int off, int length, int width, int charWidth, Font f) {
-        if(length * charWidth < width) {
-            return true;
-        }
-        length = Math.min(chrs.length, length);
-        return f.charsWidth(chrs, off, length) < width;
-    }
-
     private void initRowString() {
         Style style = getUnselectedStyle();
         rowStrings= new Vector();
@@ -684,17 +672,16 @@ public class TextArea extends Component {
         if(text == null || text.equals("")){
             return;
         }
-        char[] text = preprocess(getText());
         int rows = this.rows;
         if(growByContent) {
             rows = Math.max(rows, getLines());
         }
         
         Font font = style.getFont();
-        int charWidth = font.charWidth(widestChar);
+        int charWidth = LineBreaker.charWidth(font, widestChar);
         Style selectedStyle = getSelectedStyle();
         if(selectedStyle.getFont() != style.getFont()) {
-            int cw = selectedStyle.getFont().charWidth(widestChar);
+            int cw = LineBreaker.charWidth(selectedStyle.getFont(), widestChar);
             if(cw > charWidth) {
                 charWidth = cw;
                 font = selectedStyle.getFont();
@@ -711,141 +698,47 @@ public class TextArea extends Component {
             }
         }*/
         
+        String unsupported = getUnsupportedChars();
+        int scrollWidth = UIManager.getInstance().getLookAndFeel().getVerticalScrollWidth();
+        if(rowsCache == null) {
+            rowsCache = new Vector(CACHED_ROWS);
+        }
+        for(int iter = rowsCache.size() - 1 ; iter >= 0 ; iter--) {
+            RowsEntry e = (RowsEntry)rowsCache.elementAt(iter);
+            if(e.font == font && e.width == textAreaWidth && e.rows == rows && e.charWidth == charWidth &&
+                    e.scrollWidth == scrollWidth && e.useStringWidth == useStringWidth &&
+                    e.unsupported.equals(unsupported)) {
+                rowsCache.removeElementAt(iter);
+                rowsCache.addElement(e);
+                rowStrings = e.rowStrings;
+                return;
+            }
+        }
+        RowsEntry e = new RowsEntry();
+        e.font = font;
+        e.width = textAreaWidth;
+        e.rows = rows;
+        e.charWidth = charWidth;
+        e.scrollWidth = scrollWidth;
+        e.useStringWidth = useStringWidth;
+        e.unsupported = unsupported;
+
+        char[] text = preprocess(getText());
         int minCharactersInRow = Math.max(1, textAreaWidth / charWidth);
-        int rowIndex=0;
-        int from=0;
-        int to=from+minCharactersInRow;
-        int textLength=text.length;
-        String rowText;
-        int i,spaceIndex;
         
         // if there is any possibility of a scrollbar we need to reduce the textArea
         // width to accommodate it
-        if(textLength / minCharactersInRow > Math.max(2, rows)) {
-            textAreaWidth -= UIManager.getInstance().getLookAndFeel().getVerticalScrollWidth();
+        if(text.length / minCharactersInRow > Math.max(2, rows)) {
+            textAreaWidth -= scrollWidth;
             textAreaWidth -= charWidth/2;
         }
-        String unsupported = getUnsupportedChars();
-        
-        /*
-        iteration over the string using indexes, from - the beginning of the row , to - end of a row
-        for each row we will try to search for a "space" character at the end of the row ( row is text area available width)
-        indorder to improve the efficiency we do not search an entire row but we start from minCharactersInRow which indicates
-        what is the minimum amount of characters that can feet in the text area width.
-        if we dont find we will go backwards and search for the first space available,
-        if there is no space in the entire row we will cut the line inorder to fit in.
-         */
-
-        //Don't rely on the fact that short text has no newline character. we always have to parse the text.
-        to = Math.max( Math.min(textLength-1,to), 0 );
-        while(to<textLength) {
-            if(to>textLength){
-                to=textLength;
-            }
-
-            spaceIndex=-1;
-            rowText="";
-            int maxLength = to;
-
-            if(useStringWidth) {
-                // search for "space" character at close as possible to the end of the row
-                for( i=to; i < textLength && fastCharWidthCheck(text, from, i - from + 1, textAreaWidth, charWidth, font) ; i++){
-                    char c = text[i];
-                    if(updateRowWidth(c, font) >= textAreaWidth) {
-                        break;
-                    }
-                    if(unsupported.indexOf(c) > -1) {
-                        text[i] = ' ';
-                        c = ' ';
-                    }
-                    if(c == ' ' || c == '\n') {
-                        spaceIndex=i;
-                        // newline has been found. We can end the loop here as the line cannot grow more
-                        if (c == '\n')
-                            break;
-                    }
-                    maxLength++;
-                }
-            } else {
-                currentRowWidth = 0;
-                if(to != from) {
-                    currentRowWidth = font.charsWidth(text, from, to - from);
-                }
-
-                // search for "space" character at close as possible to the end of the row
-                for( i=to; i < textLength ; i++){
-                    char c = text[i];
-                    if(updateRowWidth(c, font) >= textAreaWidth) {
-                        break;
-                    }
-                    if(unsupported.indexOf(c) > -1) {
-                        text[i] = ' ';
-                        c = ' ';
-                    }
-                    if(c == ' ' || c == '\n') {
-                        spaceIndex=i;
-                        // newline has been found. We can end the loop here as the line cannot grow more
-                        if (c == '\n')
-                            break;
-                    }
-                    maxLength++;
-                }
-            }
-            
-            // if we got to the end of the text use the entire row,
-            // also if space is next character (in the next row) we can cut the line
-            if(i == textLength || text[i] == ' ' || text[i] == '\n') {
-                spaceIndex=i;
-            }
-
-            // if we found space in the limit width of the row (searched only from minCharactersInRow)
-            if(spaceIndex!=-1){
-                // make sure that if we have a newline character before the end of the line we should
-                // break there instead
-                int newLine = indexOf(text, '\n', from, spaceIndex - from);
-                if(newLine > -1 && newLine < spaceIndex) {
-                    spaceIndex = newLine;
-                }
-
-                rowText = new String(text, from, spaceIndex - from);
-                from=spaceIndex+1;
-
-            } // if there is no space from minCharactersInRow to limit need to search backwards
-            else{
-                for( i=to; spaceIndex==-1 && i>=from ; i--){
-                    char chr = text[i];
-                    if(chr == ' ' || chr == '\n' || chr == '\t') {
-                        spaceIndex=i;
-                        
-                        // don't forget to search for line breaks in the
-                        // remaining part. otherwise we overlook possible
-                        // line breaks!
-                        int newLine = indexOf(text, '\n', from, i - from);
-                        if(newLine > -1 && newLine < spaceIndex) {
-                           spaceIndex = newLine;
-                        }
-                        rowText = new String(text, from, spaceIndex - from);
-                        from=spaceIndex+1;
-                    }
-
-                }
-                if(spaceIndex==-1) {
-                    // from = to + 1;
-                    if(maxLength <= 0) {
-                        maxLength = 1;
-                    }
-                    spaceIndex = maxLength;
-                    rowText = new String(text, from, spaceIndex - from);
-                    from = spaceIndex;
-                }
-            }
-
-            rowStrings.addElement(rowText); 
-            //adding minCharactersInRow doesn't work if what is left is less
-            //then minCharactersInRow
-            to=from;//+minCharactersInRow;
-            rowIndex++;
+        e.rowStrings = LineBreaker.breakRows(text, font, textAreaWidth, minCharactersInRow, charWidth,
+                unsupported, useStringWidth);
+        if(rowsCache.size() == CACHED_ROWS) {
+            rowsCache.removeElementAt(0);
         }
+        rowsCache.addElement(e);
+        rowStrings = e.rowStrings;
     }
     
     /**
@@ -1254,4 +1147,18 @@ public class TextArea extends Component {
     public static void setUseStringWidth(boolean aUseStringWidth) {
         useStringWidth = aUseStringWidth;
     }
+
+    /**
+     * Rows of the current text computed for one width and font
+     */
+    private static final class RowsEntry {
+        Font font;
+        int width;
+        int rows;
+        int charWidth;
+        int scrollWidth;
+        boolean useStringWidth;
+        String unsupported;
+        Vector rowStrings;
+    }
 }
@@ -28,6 +28,7 @@ import com.sun.lwuit.Component;
 import com.sun.lwuit.Font;
 import com.sun.lwuit.plaf.Style;
 import java.util.Enumeration;
+import java.util.Vector;
 
 /**
  * The CSSElement class defines a single CSS element with its attributes and children.
@@ -508,6 +509,7 @@ class CSSElement extends Element {
     private int selectorSpecificity = -1; // A value used to determine how specific this selector is - the more the selector is specific (i.e. id > class > tag) the more it overrides other less specific selectors
     private String selectorId=null; // The selector's ID (if it's an ID selector, i.e. '#someid')
     private String selectorClass=null; // The selector's class (if it's a class selector i.e. '.someclass')
+    private String[] selectorClasses=null; // The class names in selectorClass (i.e. '.class1.class2' requires both)
     private String selectorTag=null; // The selector's tag (if it's a tag selector - i.e. 'div')
 
     private int selectorPseudoClass=0;
@@ -856,6 +858,7 @@ class CSSElement extends Element {
                 spec+=10;
                 selectorClass=name.substring(index+1);
                 //selectorClass=selectorClass.replace('.', ' ');
+                selectorClasses=splitSelectorClass(selectorClass);
 
                 if (index!=0) {
                     spec+=1;
@@ -896,6 +899,36 @@ class CSSElement extends Element {
         return selectorClass;
     }
 
+    /**
+     * Returns the class names this selector requires, or null if none
+     * This method assumes that calcSelectorSpecificity was invoked before.
+     *
+     * @return the class names this selector requires, or null if none
+     */
+    String[] getSelectorClasses() {
+        return selectorClasses;
+    }
+
+    /**
+     * Splits a selector class such as 'class1.class2' to its class names
+     *
+     * @param selectorClass The selector class
+     * @return an array of the class names
+     */
+    private static String[] splitSelectorClass(String selectorClass) {
+        Vector classes=new Vector();
+        int dotIndex=selectorClass.indexOf('.');
+        while (dotIndex!=-1) {
+            classes.addElement(selectorClass.substring(0, dotIndex));
+            selectorClass=selectorClass.substring(dotIndex+1);
+            dotIndex=selectorClass.indexOf('.');
+        }
+        classes.addElement(selectorClass);
+        String[] result=new String[classes.size()];
+        classes.copyInto(result);
+        return result;
+    }
+
     /**
      * Returns this selector's tag, or null if none
      * This method assumes that calcSelectorSpecificity was invoked before.
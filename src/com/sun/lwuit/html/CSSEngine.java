@@ -228,7 +228,7 @@ class CSSEngine {
         }
 
         css=sortSelectorsBySpecificity(css);
-        applyCSS(document, htmlC, css, null);
+        applyCSS(document, htmlC, new SelectorIndex(css), null);
     }
     
     /**
@@ -236,44 +236,46 @@ class CSSEngine {
      *
      * @param element The specific element in the document to apply the CSS on
      * @param htmlC The HTMLComponent to apply the CSS on
-     * @param css An array containing selectors sorted by specificity from all the external CSS files and then the embedded CSS segments
+     * @param index The selectors from all the external CSS files and then the embedded CSS segments, sorted by specificity and indexed
      * @param nestedSelectors A vector containing nested selectors, or null if none
      */
-    private void applyCSS(Element element,HTMLComponent htmlC,CSSElement[] css,Vector nestedSelectors) { //Vector styleAttributes
+    private void applyCSS(Element element,HTMLComponent htmlC,SelectorIndex index,Vector nestedSelectors) { //Vector styleAttributes
         String id=element.getAttributeById(Element.ATTR_ID);
-        String className=element.getAttributeById(Element.ATTR_CLASS);
+        String[] classes=splitClasses(element.getAttributeById(Element.ATTR_CLASS));
 
-        Vector nextNestedSelectors=new Vector();
-        for (int e=0;e<css.length;e++) {
-            CSSElement currentSelector = css[e];
-            checkSelector(currentSelector, element, htmlC, className, id,nextNestedSelectors);
+        Vector nextNestedSelectors=null;
+        int count=index.findCandidates(element, id, classes);
+        int[] candidates=index.candidates; // Note that the candidates array is reused by the next element, so it is used up before the recursion below
+        for (int e=0;e<count;e++) {
+            CSSElement currentSelector = index.css[candidates[e]];
+            nextNestedSelectors=checkSelector(currentSelector, element, htmlC, classes, id,nextNestedSelectors);
         }
 
         if (nestedSelectors!=null) {
             for (Enumeration e=nestedSelectors.elements();e.hasMoreElements();) {
                 CSSElement currentSelector=(CSSElement)e.nextElement();
-                checkSelector(currentSelector, element, htmlC, className, id,nextNestedSelectors);
+                nextNestedSelectors=checkSelector(currentSelector, element, htmlC, classes, id,nextNestedSelectors);
             }
         }
 
-        if (nextNestedSelectors.size()==0) {
-            nextNestedSelectors=null;
-        }
-
         String styleStr=element.getAttributeById(Element.ATTR_STYLE);
         if (styleStr!=null) {
-                CSSElement style=null;
-                styleStr="{"+styleStr+"}"; // So it will be parsed correctly
-                try {
-                    style = Parser.getInstance().parseCSS(new InputStreamReader(new ByteArrayInputStream(styleStr.getBytes())),htmlC);
+                CSSElement style=(CSSElement)index.inlineStyles.get(styleStr); // The same inline style is often repeated on many elements
+                if (style==null) {
+                    try {
+                        style = Parser.getInstance().parseCSS(new InputStreamReader(new ByteArrayInputStream(("{"+styleStr+"}").getBytes())),htmlC); // The brackets are so it will be parsed correctly
+                        index.inlineStyles.put(styleStr, style);
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+                if (style!=null) {
                     applyStyle(element, style, htmlC);
-                } catch (IOException ex) {
-                    ex.printStackTrace();
                 }
         }
 
         for(int i=0;i<element.getNumChildren();i++) {
-            applyCSS(element.getChildAt(i), htmlC,css,nextNestedSelectors);
+            applyCSS(element.getChildAt(i), htmlC,index,nextNestedSelectors);
         }
     }
     
@@ -285,13 +287,14 @@ class CSSEngine {
      * @param currentSelector The current CSS selector to check
      * @param element The element to check
      * @param htmlC The HTMLComponent
-     * @param className The element's class name (Can be derived from element but since this method is called a lot it is extracted before and sent as a parameter)
-     * @param id The element's id (Same comment as in className)
-     * @param nextNestedSelectors A vector containing the nested selectors
+     * @param classes The element's class names (Can be derived from element but since this method is called a lot they are extracted before and sent as a parameter)
+     * @param id The element's id (Same comment as in classes)
+     * @param nextNestedSelectors A vector containing the nested selectors, or null if there are none yet
+     * @return The nested selectors vector, created if this is the first nested selector added
      */
-    private void checkSelector(CSSElement currentSelector,Element element,HTMLComponent htmlC,String className,String id,Vector nextNestedSelectors) {
+    private Vector checkSelector(CSSElement currentSelector,Element element,HTMLComponent htmlC,String[] classes,String id,Vector nextNestedSelectors) {
         if (((currentSelector.getSelectorTag()==null) || (currentSelector.getSelectorTag().equalsIgnoreCase(element.getName()))) &&
-            ((currentSelector.getSelectorClass()==null) || (containsClass(className,currentSelector.getSelectorClass()))) &&
+            ((currentSelector.getSelectorClass()==null) || (containsClasses(classes,currentSelector.getSelectorClasses()))) &&
             ((currentSelector.getSelectorId()==null) || (currentSelector.getSelectorId().equalsIgnoreCase(id)))) {
                 if (currentSelector.getNumChildren()==0) {
                     if ((element.getId()!=Element.TAG_A) ||
@@ -302,6 +305,9 @@ class CSSEngine {
                         applyStyle(element, currentSelector,htmlC);
                     }
                 } else {
+                    if (nextNestedSelectors==null) {
+                        nextNestedSelectors=new Vector();
+                    }
                     nextNestedSelectors.addElement(currentSelector.getChildAt(0));
 
                     // Check if this is a Descendant selector (i.e. div * b - which means match any b that is the descendant (grandchild and on) of div
@@ -311,36 +317,63 @@ class CSSEngine {
                     }
                 }
         }
+        return nextNestedSelectors;
+    }
+
+    /**
+     * Splits the value of a class attribute to the class names it contains, i.e. class="class1 class2"
+     * Duplicate class names are omitted
+     *
+     * @param elementClass The value of the class attribute, can be null
+     * @return An array of the class names, or null if elementClass is null
+     */
+    private String[] splitClasses(String elementClass) {
+        if (elementClass==null) {
+            return null;
+        }
+        Vector classes=new Vector();
+        int start=0;
+        int len=elementClass.length();
+        while (start<len) {
+            int end=elementClass.indexOf(' ', start);
+            if (end==-1) {
+                end=len;
+            }
+            if (end>start) {
+                String className=elementClass.substring(start, end);
+                if (!classes.contains(className)) {
+                    classes.addElement(className);
+                }
+            }
+            start=end+1;
+        }
+        String[] result=new String[classes.size()];
+        classes.copyInto(result);
+        return result;
     }
 
     /**
-     * Checks if the specified class is contained in the specified text
-     * This is used for elements that have several classes i.e. class="class1 class2"
-     * Note: A simple indexOf could not be used since we need to find whole words and not frgaments of words
+     * Checks if all of the specified selector classes are contained in the element's classes
+     * Selector can require multiple classes, i.e. class1.class2 (which needs to match to "class 1 class2" and "class2 class1" and also "class1 otherclasses class2"
      *
-     * @param selectorClass The text
-     * @param elementClass The word to find in the text
-     * @return true if the word is found, false otherwise
+     * @param elementClasses The element's classes as returned from splitClasses
+     * @param selectorClasses The selector's classes
+     * @return true if all the selector classes are found, false otherwise
      */
-    private boolean containsClass(String elementClass,String selectorClass) {
-        if ((elementClass==null) || (selectorClass==null)) {
+    private boolean containsClasses(String[] elementClasses,String[] selectorClasses) {
+        if ((elementClasses==null) || (selectorClasses==null)) {
             return false;
         }
-        // The spaces addition is to make sure we get a whole word and not a fragment of a word
-        elementClass=" "+elementClass+" ";
-        
-        // Selector can require multiple classes, i.e. class.1class2 (which needs to match to "class 1 class2" and "class2 class1" and also "class1 otherclasses class2"
-        int dotIndex=selectorClass.indexOf('.');
-        while (dotIndex!=-1) {
-            String curWord=selectorClass.substring(0, dotIndex);
-            if (elementClass.indexOf(" "+curWord+" ")==-1) {
+        for(int i=0;i<selectorClasses.length;i++) {
+            boolean found=false;
+            for(int j=0;(j<elementClasses.length) && (!found);j++) {
+                found=elementClasses[j].equals(selectorClasses[i]);
+            }
+            if (!found) {
                 return false;
             }
-            selectorClass=selectorClass.substring(dotIndex+1);
-            dotIndex=selectorClass.indexOf('.');
         }
-
-        return (elementClass.indexOf(" "+selectorClass+" ")!=-1);
+        return true;
     }
 
     /**
@@ -1556,4 +1589,143 @@ class CSSEngine {
         return null;
     }
 
+    /**
+     * Holds the selectors sorted by specificity, bucketed by the most specific simple selector they require (id, then class, then tag).
+     * An element is then checked only against the selectors in the buckets of its id, classes and tag and those that require none of them.
+     * Each selector is in a single bucket, and the buckets hold indexes to the sorted array so the selectors are still applied by specificity.
+     */
+    private static class SelectorIndex {
+
+        /**
+         * The selectors sorted by specificity
+         */
+        CSSElement[] css;
+
+        /**
+         * The indexes of the selectors that match the element given to the last call to findCandidates, in ascending order
+         */
+        int[] candidates=new int[16];
+
+        /**
+         * Inline CSS (Style attributes) that were already parsed, keyed by the attribute value
+         */
+        Hashtable inlineStyles=new Hashtable();
+
+        private Hashtable byId=new Hashtable(); // Lowercase id -> int[] of selector indexes
+        private Hashtable byClass=new Hashtable(); // Class name -> int[] of selector indexes
+        private Hashtable byTag=new Hashtable(); // Lowercase tag name -> int[] of selector indexes
+        private int[] universal; // The indexes of the selectors that require no id, class or tag
+        private int[] merged=new int[16]; // A temporary array used when merging buckets
+
+        /**
+         * Creates the index of the given selectors
+         *
+         * @param css The selectors sorted by specificity
+         */
+        SelectorIndex(CSSElement[] css) {
+            this.css=css;
+            Vector universalVector=new Vector();
+            for(int i=0;i<css.length;i++) {
+                CSSElement selector=css[i];
+                Integer index=new Integer(i);
+                if (selector.getSelectorId()!=null) {
+                    addToBucket(byId, selector.getSelectorId().toLowerCase(), index);
+                } else if (selector.getSelectorClass()!=null) {
+                    addToBucket(byClass, selector.getSelectorClasses()[0], index);
+                } else if (selector.getSelectorTag()!=null) {
+                    addToBucket(byTag, selector.getSelectorTag().toLowerCase(), index);
+                } else {
+                    universalVector.addElement(index);
+                }
+            }
+            toArrays(byId);
+            toArrays(byClass);
+            toArrays(byTag);
+            universal=toArray(universalVector);
+        }
+
+        private void addToBucket(Hashtable buckets,String key,Integer index) {
+            Vector bucket=(Vector)buckets.get(key);
+            if (bucket==null) {
+                bucket=new Vector();
+                buckets.put(key, bucket);
+            }
+            bucket.addElement(index);
+        }
+
+        private void toArrays(Hashtable buckets) {
+            for(Enumeration e=buckets.keys();e.hasMoreElements();) {
+                Object key=e.nextElement();
+                buckets.put(key, toArray((Vector)buckets.get(key)));
+            }
+        }
+
+        private int[] toArray(Vector bucket) {
+            int[] result=new int[bucket.size()];
+            for(int i=0;i<result.length;i++) {
+                result[i]=((Integer)bucket.elementAt(i)).intValue();
+            }
+            return result;
+        }
+
+        /**
+         * Collects the indexes of the selectors that may match the given element into the candidates array, in ascending order
+         * The candidates still have to be checked fully, as a selector may require more than what it was bucketed by.
+         *
+         * @param element The element
+         * @param id The element's id or null if none
+         * @param classes The element's classes or null if none
+         * @return The number of candidates
+         */
+        int findCandidates(Element element,String id,String[] classes) {
+            int count=merge(0, universal);
+            if (id!=null) {
+                count=merge(count, (int[])byId.get(id.toLowerCase()));
+            }
+            if (classes!=null) {
+                for(int i=0;i<classes.length;i++) {
+                    count=merge(count, (int[])byClass.get(classes[i]));
+                }
+            }
+            return merge(count, (int[])byTag.get(element.getName()));
+        }
+
+        /**
+         * Merges the given bucket into the first count candidates, keeping them in ascending order
+         *
+         * @param count The number of candidates so far
+         * @param bucket The bucket to merge, can be null
+         * @return The number of candidates after the merge
+         */
+        private int merge(int count,int[] bucket) {
+            if ((bucket==null) || (bucket.length==0)) {
+                return count;
+            }
+            int total=count+bucket.length;
+            if (merged.length<total) {
+                merged=new int[total*2];
+            }
+            int i=0;
+            int j=0;
+            int k=0;
+            while ((i<count) && (j<bucket.length)) {
+                if (candidates[i]<bucket[j]) {
+                    merged[k++]=candidates[i++];
+                } else {
+                    merged[k++]=bucket[j++];
+                }
+            }
+            while (i<count) {
+                merged[k++]=candidates[i++];
+            }
+            while (j<bucket.length) {
+                merged[k++]=bucket[j++];
+            }
+            int[] temp=candidates;
+            candidates=merged;
+            merged=temp.length>=total?temp:new int[total*2];
+            return total;
+        }
+    }
+
 }
@@ -775,6 +775,16 @@ static int getColor(String colorStr,int defaultColor) {
      boolean calculatedUi = false;
 
 
+    /**
+     * Maps the tag names to their IDs, built on first use
+     */
+    private static Hashtable tagIds;
+
+    /**
+     * Maps the attribute names to their IDs, built on first use
+     */
+    private static Hashtable attributeIds;
+
     /**
      * Empty constructor, only to enable CSSElement not to call the Element(String) constructor
      */
@@ -787,17 +797,52 @@ static int getColor(String colorStr,int defaultColor) {
      * @param name The Element's name
      */
     Element(String name) {
-        int i=0;
-        int tagId=-1;
+        id=getTagId(name);
+    }
 
-        while((tagId==-1) && (i<TAG_NAMES.length)) {
-            if (TAG_NAMES[i].equals(name)) {
-                tagId=i;
-            } else {
-                i++;
-            }
+    /**
+     * Returns the ID of the given tag name
+     *
+     * @param name The tag name (lower case)
+     * @return The tag ID or TAG_UNSUPPORTED if the tag is not supported
+     */
+    static int getTagId(String name) {
+        if (tagIds==null) {
+            tagIds=createIdTable(TAG_NAMES);
         }
-        id=tagId;
+        return getId(tagIds, name);
+    }
+
+    /**
+     * Returns the ID of the given attribute name
+     *
+     * @param name The attribute name (lower case)
+     * @return The attribute ID or -1 if there's no such attribute
+     */
+    static int getAttributeId(String name) {
+        if (attributeIds==null) {
+            attributeIds=createIdTable(ATTRIBUTE_NAMES);
+        }
+        return getId(attributeIds, name);
+    }
+
+    private static Hashtable createIdTable(String[] names) {
+        Hashtable table=new Hashtable(names.length*2);
+        for(int i=0;i<names.length;i++) {
+            table.put(names[i], new Integer(i));
+        }
+        return table;
+    }
+
+    private static int getId(Hashtable table,String name) {
+        if (name==null) {
+            return -1;
+        }
+        Integer id=(Integer)table.get(name);
+        if (id==null) {
+            return -1;
+        }
+        return id.intValue();
     }
 
     /**
@@ -842,11 +887,11 @@ static int getColor(String colorStr,int defaultColor) {
     }
     
     /**
-     * Sets this element parent, done interanlly in addChild
+     * Sets this element parent, done interanlly in addChild and by the parser as soon as a tag was read
      * 
      * @param parent The element's parent
      */
-    private void setParent(Element parent) {
+    void setParent(Element parent) {
         this.parent=parent;
     }
 
@@ -886,25 +931,9 @@ static int getColor(String colorStr,int defaultColor) {
             return -1; //No error code for this case since tag not supported error is already notified before
         }
 
-        int attrId=-1;
-        int i=0;
-        if (supportsCoreAttributes()) {
-            while ((attrId==-1) && (i<COMMON_ATTRIBUTES.length)) {
-                if (ATTRIBUTE_NAMES[COMMON_ATTRIBUTES[i]].equals(attribute)) {
-                    attrId=COMMON_ATTRIBUTES[i];
-                } else {
-                    i++;
-                }
-            }
-        }
-
-        i=0;
-        while ((attrId==-1) && (i<TAG_ATTRIBUTES[id].length)) {
-            if (ATTRIBUTE_NAMES[TAG_ATTRIBUTES[id][i]].equals(attribute)) {
-                attrId=TAG_ATTRIBUTES[id][i];
-            } else {
-                i++;
-            }
+        int attrId=getAttributeId(attribute);
+        if ((attrId!=-1) && (!isAttributeSupported(attrId))) {
+            attrId=-1;
         }
 
         if (attrId==-1) {
@@ -921,6 +950,28 @@ static int getColor(String colorStr,int defaultColor) {
         return -1;
     }
 
+    /**
+     * Checks whether the given attribute is one of the attributes of this tag or a core attribute this tag supports
+     *
+     * @param attrId The attribute ID
+     * @return true if the attribute is supported, false otherwise
+     */
+    private boolean isAttributeSupported(int attrId) {
+        if (supportsCoreAttributes()) {
+            for(int i=0;i<COMMON_ATTRIBUTES.length;i++) {
+                if (COMMON_ATTRIBUTES[i]==attrId) {
+                    return true;
+                }
+            }
+        }
+        for(int i=0;i<TAG_ATTRIBUTES[id].length;i++) {
+            if (TAG_ATTRIBUTES[id][i]==attrId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns a list of supported attributes for this tag. Note that the list does not include the core attributes that are supported on almost all tags
      * 
@@ -35,6 +35,7 @@ import com.sun.lwuit.Font;
 import com.sun.lwuit.Form;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Label;
+import com.sun.lwuit.LineBreaker;
 import com.sun.lwuit.List;
 import com.sun.lwuit.RadioButton;
 import com.sun.lwuit.TextArea;
@@ -129,6 +130,17 @@ public class HTMLComponent extends Container implements ActionListener {
      */
     private static final int HR_THICKNESS = 3;
 
+    /**
+     * The maximum number of BODY children that were parsed but not laid out yet in progressive rendering.
+     * When it is reached the parser waits for the layout to catch up, so a slow EDT doesn't make the whole document pile up in memory.
+     */
+    private static final int MAX_PENDING_ELEMENTS = 16;
+
+    /**
+     * Once the visible area was filled in progressive rendering, the page is laid out again at most once in this many milliseconds
+     */
+    private static final int PROGRESSIVE_LAYOUT_INTERVAL = 500;
+
     /**
      * The time it takes a marquee to move across the screen (See -wap-marquee in CSS)
      */
@@ -248,6 +260,18 @@ public class HTMLComponent extends Container implements ActionListener {
     boolean showImages=true; //true to download image, false otherwise
     private Style pageStyle; // The page's user defined style
 
+    // Progressive rendering
+    private boolean progressive; // true to lay out and show the page while it is still being downloaded and parsed
+    boolean progressiveParsing; // true while the parser should report the BODY children of the current page as they complete (Read by the Parser)
+    private Element progressiveBody; // The BODY element that is being laid out progressively, or null if none
+    private int parsedElements; // The number of BODY children parsed so far
+    private int laidOutElements; // The number of BODY children laid out so far
+    private boolean bodyParsed; // true once the whole document containing progressiveBody was parsed
+    private boolean layoutScheduled; // true if a call to layoutParsedElements is already waiting on the EDT
+    private boolean layingOut; // true while layoutParsedElements is running (It may be reentered while a table image is downloaded)
+    private long lastProgressiveLayout; // The time the page was last laid out in progressive rendering
+    private final Object progressiveLock=new Object(); // Guards the progressive rendering counters above
+
     // Links related
     private Hashtable accessKeys = new Hashtable();// A hastable containing all the access keys in this document and their respective links
     private Hashtable anchors;// A hashtable containing all the anchors of this document
@@ -534,6 +558,19 @@ public class HTMLComponent extends Container implements ActionListener {
         showImages=show;
     }
 
+    /**
+     * Sets whether this HTMLComponent will render pages progressively.
+     * When true, the page is shown as soon as its BODY starts and the content is laid out as it is parsed, instead of waiting for the whole document.
+     * This is done in the granularity of the BODY's children, so a page wrapped entirely in a single table or DIV will still appear only when it is complete.
+     * Progressive rendering applies only to pages that don't link to external CSS files, and CSS is applied once the whole document was parsed.
+     * By default this is false.
+     *
+     * @param progressive true to render pages progressively, false otherwise
+     */
+    public void setProgressiveRendering(boolean progressive) {
+        this.progressive=progressive;
+    }
+
     /**
      * Sets whether this HTMLComponent will ignore all CSS.directives.
      * This includes external CSS files (which won't be downloaded), embedded CSS segmentsand style tags and attributes.
@@ -632,7 +669,9 @@ public class HTMLComponent extends Container implements ActionListener {
 
         new Thread() {
             public void run() {
+                progressiveParsing=progressive;
                 Element doc = Parser.getInstance().parse(isReader,HTMLComponent.this);
+                progressiveParsing=false;
                 documentReady(null, doc);
             }
         }.start();
@@ -690,6 +729,9 @@ public class HTMLComponent extends Container implements ActionListener {
     public void cancel() {
           cancelled=true;
           cancelRedirectsAndImages();
+          synchronized(progressiveLock) {
+              progressiveLock.notifyAll(); // Release the parser if it waits for the progressive layout
+          }
     }
 
     /**
@@ -754,9 +796,14 @@ public class HTMLComponent extends Container implements ActionListener {
      */
     void setPage(final DocumentInfo docInfo) {
         cancelRedirectsAndImages();
+        boolean progressive;
+        synchronized(progressiveLock) {
+            progressive=(progressiveBody!=null);
+        }
         if  ((pageStatus==HTMLCallback.STATUS_REQUESTED) ||
                 (pageStatus==HTMLCallback.STATUS_CONNECTED) ||
-                (pageStatus==HTMLCallback.STATUS_PARSED)) {  //previous page still loading
+                (pageStatus==HTMLCallback.STATUS_PARSED) ||
+                (progressive)) {  //previous page still loading (With progressive rendering it is displayed while it loads)
             cancel();
 
             // TODO - This mechanism is far from ideal - handle better page life cycle
@@ -824,14 +871,17 @@ public class HTMLComponent extends Container implements ActionListener {
 
                 Element newDoc=null;
                 
+                progressiveParsing=progressive;
                 try {
                     newDoc=Parser.getInstance().parse(isr,HTMLComponent.this);
                 } catch (IllegalArgumentException iae) {
+                    progressiveParsing=false;
                     iae.printStackTrace();
                     setPageStatus(HTMLCallback.STATUS_ERROR);
                     isr = getStream("Parsing error "+iae.getMessage(), null);
                     newDoc=Parser.getInstance().parse(isr,HTMLComponent.this);
                 }
+                progressiveParsing=false;
 
                 if (cancelled) {
                     isr=getStream("Page loading cancelled by user",null);
@@ -858,6 +908,26 @@ public class HTMLComponent extends Container implements ActionListener {
             this.pageURL=docInfo.getUrl();
         }
         document=newDocument;
+
+        if ((progressiveBody!=null) && ((!cancelled) || (cancelledCaught)) && (progressiveBody==getBody(newDocument))) {
+            // The body is already being laid out on the EDT, just let it know there's nothing more to come.
+            // This goes through the EDT queue so the page completes only after the STATUS_PARSED notification posted before it was delivered.
+            final Element body=progressiveBody;
+            Display.getInstance().callSerially(new Runnable() {
+                public void run() {
+                    synchronized(progressiveLock) {
+                        if (body!=progressiveBody) { // A newer page replaced this one
+                            return;
+                        }
+                        bodyParsed=true;
+                    }
+                    layoutParsedElements(body);
+                }
+            });
+            return;
+        }
+
+        stopProgressiveLayout();
         cleanup();
         rebuildPage();
         
@@ -865,27 +935,7 @@ public class HTMLComponent extends Container implements ActionListener {
             Display.getInstance().callSerially(new Runnable() {
 
                 public void run() {
-
-                        if (threadQueue.getCSSCount()==-1) {
-                            displayPage();
-                        }
-                        //if ( ((!showImages) || (threadQueue.getQueueSize()==0)) {
-                        if (threadQueue.getQueueSize()==0) {
-                            setPageStatus(HTMLCallback.STATUS_COMPLETED);
-                        } else {
-                            threadQueue.startRunning();
-                        }
-
-                        if (pageURL!=null) { // pageURL can be null if the page was set using setBodyText and not setPage
-                            int hash=pageURL.indexOf('#');
-
-                            if ((hash!=-1) && (pageURL.length()>hash+1)) { // URL contains an anchor
-                                String anchorName=pageURL.substring(hash+1);
-                                goToAnchor(anchorName);
-                            }
-                        }
-
-
+                    displayDocument();
                 }
             });
         } else { // Page was cancelled
@@ -897,6 +947,209 @@ public class HTMLComponent extends Container implements ActionListener {
 
     }
 
+    /**
+     * Displays the page if no CSS files are pending and starts downloading images, this should be run on EDT after the page was built
+     */
+    private void displayDocument() {
+        if (threadQueue.getCSSCount()==-1) {
+            displayPage();
+        }
+        //if ( ((!showImages) || (threadQueue.getQueueSize()==0)) {
+        if (threadQueue.getQueueSize()==0) {
+            setPageStatus(HTMLCallback.STATUS_COMPLETED);
+        } else {
+            threadQueue.startRunning();
+        }
+
+        if (pageURL!=null) { // pageURL can be null if the page was set using setBodyText and not setPage
+            int hash=pageURL.indexOf('#');
+
+            if ((hash!=-1) && (pageURL.length()>hash+1)) { // URL contains an anchor
+                String anchorName=pageURL.substring(hash+1);
+                goToAnchor(anchorName);
+            }
+        }
+    }
+
+    /**
+     * Returns the BODY element of the given document, the same way rebuildPage finds it
+     *
+     * @param root The ROOT element of the document
+     * @return The BODY element, or null if none
+     */
+    private Element getBody(Element root) {
+        Element html=root.getChildById(Element.TAG_HTML);
+        if (html!=null) {
+            return html.getChildById(Element.TAG_BODY);
+        }
+        return null;
+    }
+
+    /**
+     * Called by the parser when the content of the BODY element starts, if progressive rendering is on.
+     * If this is the body that will eventually be displayed, the page is prepared and shown, and its content is laid out as it is parsed.
+     * This is called on the parsing thread.
+     *
+     * @param body The BODY element, its attributes were already parsed
+     */
+    void bodyStarted(Element body) {
+        if ((cancelled) && (!cancelledCaught)) {
+            return;
+        }
+        // Only a BODY directly under the first HTML tag is displayed, the same as rebuildPage does
+        Element html=body.getParent();
+        if ((html==null) || (html.getId()!=Element.TAG_HTML) || (html.getChildById(Element.TAG_BODY)!=null)) {
+            return;
+        }
+        Element root=html.getParent();
+        if ((root==null) || (root.getParent()!=null) || (root.getChildById(Element.TAG_HTML)!=null)) {
+            return;
+        }
+
+        stopProgressiveLayout();
+        cleanup();
+        preparePage(root, html, html.getChildById(Element.TAG_HEAD), body);
+        synchronized(progressiveLock) {
+            parsedElements=0;
+            laidOutElements=0;
+            bodyParsed=false;
+            layoutScheduled=false;
+            progressiveBody=body;
+        }
+
+        if (threadQueue.getCSSCount()==-1) { // With external CSS the page is displayed only after it was downloaded, as usual
+            Display.getInstance().callSerially(new Runnable() {
+                public void run() {
+                    removeAll();
+                    addComponent(BorderLayout.CENTER,mainContainer);
+                    setScrollY(0);
+                    revalidate();
+                    setPageStatus(HTMLCallback.STATUS_DISPLAYED);
+                }
+            });
+        }
+    }
+
+    /**
+     * Called by the parser after a child was added to an element, if progressive rendering is on.
+     * Children of the BODY that is being displayed are scheduled to be laid out on the EDT.
+     * If too many of them are waiting this blocks the parsing thread until the layout catches up.
+     *
+     * @param parent The parent element
+     * @param child The child that was just added to it
+     */
+    void elementParsed(Element parent,Element child) {
+        if (parent!=progressiveBody) {
+            return;
+        }
+        final Element body=parent;
+        boolean schedule=false;
+        synchronized(progressiveLock) {
+            parsedElements++;
+            if (!layoutScheduled) {
+                layoutScheduled=true;
+                schedule=true;
+            }
+        }
+        if (schedule) {
+            Display.getInstance().callSerially(new Runnable() {
+                public void run() {
+                    layoutParsedElements(body);
+                }
+            });
+        }
+        synchronized(progressiveLock) {
+            while ((parsedElements-laidOutElements>=MAX_PENDING_ELEMENTS) && (progressiveBody==body) && ((!cancelled) || (cancelledCaught))) {
+                try {
+                    progressiveLock.wait();
+                } catch (InterruptedException ie) {
+                    // Check again
+                }
+            }
+        }
+    }
+
+    /**
+     * Lays out the BODY children that were parsed since the last call, and completes the page once the whole document was parsed and laid out.
+     * This runs on the EDT and is used only in progressive rendering.
+     *
+     * @param body The BODY element the call was scheduled for
+     */
+    private void layoutParsedElements(Element body) {
+        if (layingOut) { // Reentered while a table image is downloaded (See ResourceThreadQueue.downloadImageImmediately), the running call will lay out the new elements
+            return;
+        }
+        layingOut=true;
+        boolean completed=false;
+        while (true) {
+            int first;
+            int last;
+            synchronized(progressiveLock) {
+                layoutScheduled=false;
+                if (body!=progressiveBody) { // A newer page replaced this one
+                    break;
+                }
+                first=laidOutElements;
+                last=parsedElements;
+                if (first==last) {
+                    if (bodyParsed) {
+                        progressiveBody=null;
+                        completed=true;
+                    }
+                    break;
+                }
+            }
+            processTag(body,Component.LEFT,first,last);
+            synchronized(progressiveLock) {
+                laidOutElements=last;
+                progressiveLock.notifyAll();
+            }
+        }
+        synchronized(progressiveLock) {
+            layingOut=false;
+            progressiveLock.notifyAll();
+        }
+
+        if (completed) {
+            completeBody(body);
+            if (!cancelled) {
+                Element html=document.getChildById(Element.TAG_HTML);
+                checkRedirect(html.getChildById(Element.TAG_HEAD));
+            }
+            displayDocument();
+        } else if (mainContainer.getParent()==this) {
+            // Lay out right away while the screen isn't full. From then on laying out the whole page is needed only when the user
+            // scrolls close to the end of what was laid out, and even then not too often. The rest is laid out when the page completes.
+            long now=System.currentTimeMillis();
+            int bottom=mainContainer.getAbsoluteY()+mainContainer.getHeight(); // On screen
+            int displayHeight=Display.getInstance().getDisplayHeight();
+            if ((bottom<displayHeight) ||
+                    ((bottom<2*displayHeight) && (now-lastProgressiveLayout>=PROGRESSIVE_LAYOUT_INTERVAL))) {
+                lastProgressiveLayout=now;
+                revalidate();
+            }
+        }
+    }
+
+    /**
+     * Stops the progressive layout of the previous page, if any.
+     * When this returns the EDT doesn't lay out the previous page anymore, so the building state can be reset.
+     * This is called only on the parsing threads.
+     */
+    private void stopProgressiveLayout() {
+        synchronized(progressiveLock) {
+            progressiveBody=null;
+            progressiveLock.notifyAll(); // Release a parser of the previous page that waits for the layout to catch up
+            while (layingOut) {
+                try {
+                    progressiveLock.wait();
+                } catch (InterruptedException ie) {
+                    // Check again
+                }
+            }
+        }
+    }
+
 
     void cssCompleted() {
         Display.getInstance().callSerially(new Runnable() {
@@ -911,9 +1164,12 @@ public class HTMLComponent extends Container implements ActionListener {
      * Actually displays the HTML page - this should be run on EDT
      */
     void displayPage() {
-        removeAll();
-        addComponent(BorderLayout.CENTER,mainContainer);
-        setScrollY(0);
+        boolean shown=(mainContainer.getParent()==this);
+        if (!shown) { // Otherwise it was already shown by progressive rendering, and the user may have scrolled it
+            removeAll();
+            addComponent(BorderLayout.CENTER,mainContainer);
+            setScrollY(0);
+        }
 
         revalidate();
         repaint();
@@ -941,7 +1197,9 @@ public class HTMLComponent extends Container implements ActionListener {
 
         }
 
-        setPageStatus(HTMLCallback.STATUS_DISPLAYED);
+        if (!shown) { // Progressive rendering reported it when the page was first shown
+            setPageStatus(HTMLCallback.STATUS_DISPLAYED);
+        }
     }
 
 
@@ -1280,29 +1538,58 @@ public class HTMLComponent extends Container implements ActionListener {
         }
     }
 
+    /**
+     * Builds the page from the document
+     */
     private void rebuildPage() {
+        // Get the HTML root tag and extract the HEAD and BODY (Note that the document tag is ROOT which contains HTML and so on.
+        Element html=document.getChildById(Element.TAG_HTML);
+        Element body=null;
+        Element head=null;
+        if (html!=null) {
+            body=html.getChildById(Element.TAG_BODY);
+            head=html.getChildById(Element.TAG_HEAD);
+        }
+
+        preparePage(document, html, head, body);
+
+        if (body!=null) {
+            processTag(body,Component.LEFT);
+            completeBody(body);
+        } else {
+            System.out.println("no BODY tag was found in page.");
+        }
+
+        if (!cancelled) {
+            checkRedirect(head);
+        }
+    }
+
+    /**
+     * Handles everything that precedes the BODY content: CSS links, the page direction, base URL and title and the BODY colors.
+     *
+     * @param root The ROOT element of the document
+     * @param html The HTML element or null if none
+     * @param head The HEAD element or null if none
+     * @param body The BODY element or null if none
+     */
+    private void preparePage(Element root,Element html,Element head,Element body) {
 
         // Scan for LINK tags directly under the ROOT element, these are in fact converted <?xml-stylesheet ... ?> processing instructions
         if ((SUPPORT_CSS) && (loadCSS)) {
-            for(int i=0;i<document.getNumChildren();i++) {
-                Element child=document.getChildAt(i);
+            for(int i=0;i<root.getNumChildren();i++) {
+                Element child=root.getChildAt(i);
                 if (child.getId()==Element.TAG_LINK) {
                     handleLinkTag(child);
                 }
             }
         }
 
-        // Get the HTML root tag and extract the HEAD and BODY (Note that the document tag is ROOT which contains HTML and so on.
-        Element html=document.getChildById(Element.TAG_HTML);
-        Element body=null;
-        Element head=null;
         if (html!=null) {
             String dir=html.getAttributeById(Element.ATTR_DIR);
 
             // TODO - Should be applyRTL, but it doesn't work, setRTL is problematic since it changes the direction of the whole application, and we only need to change the component
             UIManager.getInstance().getLookAndFeel().setRTL((dir!=null) && (dir.equals("rtl")));
-            body=html.getChildById(Element.TAG_BODY);
-            head=html.getChildById(Element.TAG_HEAD);
         }
 
         // Fetch the document's title
@@ -1357,22 +1644,22 @@ public class HTMLComponent extends Container implements ActionListener {
                 mainContainer.getSelectedStyle().setBgColor(DEFAULT_BGCOLOR);
                 mainContainer.getSelectedStyle().setBgTransparency(0);
             }
-            processTag(body,Component.LEFT);
-            newLine(Component.LEFT); //flush buffer
-            
-            if  ((SUPPORT_CSS) && (loadCSS)) {
-                body.setAssociatedComponents(mainContainer);
-                if (threadQueue.getCSSCount()==-1) { // If there are no pending external CSS, we can already process the CSS
-                    applyAllCSS(); // Note that this doesn't have to be on EDT as the main container is still not displayed
-                }
-            }
-            
-        } else {
-            System.out.println("no BODY tag was found in page.");
         }
+    }
 
-        if (!cancelled) {
-            checkRedirect(head);
+    /**
+     * Completes the page after all of the BODY content was processed - flushes the last line and applies the CSS
+     *
+     * @param body The BODY element
+     */
+    private void completeBody(Element body) {
+        newLine(Component.LEFT); //flush buffer
+            
+        if  ((SUPPORT_CSS) && (loadCSS)) {
+            body.setAssociatedComponents(mainContainer);
+            if (threadQueue.getCSSCount()==-1) { // If there are no pending external CSS, we can already process the CSS
+                applyAllCSS(); // Note that this doesn't have to be on EDT as the main container is still not displayed (Unless rendered progressively, in which case this is called on the EDT)
+            }
         }
     }
 
@@ -1535,32 +1822,22 @@ public class HTMLComponent extends Container implements ActionListener {
     }
 
     Vector getWords(String text,int align,boolean returnComps) {
+        if (!returnComps) { //break words that are longer than the component's width
+            return LineBreaker.breakWords(text, font.getFont(), width-leftIndent);
+        }
         Vector words=new Vector();
-        String word="";
+        int start=0;
         for(int c=0;c<text.length();c++) {
             char ch=text.charAt(c);
             if ((ch==' ') || (ch==10) || (ch==13) || (ch=='\t') || (ch=='\n')) {
-                if (!word.equals("")) {
-                    if (returnComps) {
-                        words.addElement(addString(word+' ', align));
-                    } else {
-                        words.addElement(word);
-                    }
-                    word="";
+                if (c>start) {
+                    words.addElement(addString(text.substring(start, c)+' ', align));
                 }
-            } else if ((!returnComps) && (font.stringWidth(word+ch)>width-leftIndent)) { //break words that are longer than the component's width
-                   words.addElement(word);
-                    word=""+ch;
-            } else {
-                word+=ch;
+                start=c+1;
             }
         }
-        if (!word.equals("")) {
-            if (returnComps) {
-                words.addElement(addString(word, align));
-            } else {
-                words.addElement(word);
-            }
+        if (start<text.length()) {
+            words.addElement(addString(text.substring(start), align));
         }
 
         return words;
@@ -1591,24 +1868,33 @@ public class HTMLComponent extends Container implements ActionListener {
 
             if (words.size()>0) {
                 int w=0;
+                Font f=font.getFont();
+                int blankW=LineBreaker.charWidth(f, ' ');
                 String wordStr="";
+                int wordStrW=0; // width of wordStr, kept as it grows instead of measuring it again for every word
                 if ((Parser.isWhiteSpace(text.charAt(0))) && (curLine.getComponentCount()!=0)) { //leading space is trimmed if it is in the first component of the line
                     wordStr=" "; //leading space
+                    wordStrW=blankW;
                 }
 
                 while (w<words.size()) {
                     String nextWord=(String)words.elementAt(w);
+                    int nextWordW=LineBreaker.stringWidth(f, nextWord);
                     String space="";
+                    int addW=nextWordW;
                     if ((!wordStr.equals("")) && (!wordStr.equals(" "))) {
                         space=" ";
+                        addW+=blankW;
                     }
-                    if (font.stringWidth(wordStr+space+nextWord)>spaceW-2) {
+                    if (wordStrW+addW>spaceW-2) {
                         comps.addElement(addString(wordStr,align));
                         newLineIfNotEmpty(align);
                         spaceW=width-x;
                         wordStr=nextWord;
+                        wordStrW=nextWordW;
                     } else {
                         wordStr+=space+nextWord;
+                        wordStrW+=addW;
                     }
                     w++;
                 }
@@ -2234,13 +2520,25 @@ public class HTMLComponent extends Container implements ActionListener {
      * @param align The current alignment 
      */
     private void processTag(Element element,int align) {
+        processTag(element, align, 0, element.getNumChildren());
+    }
+
+    /**
+     * Processes the children of the given tag in the given range, this allows laying out a tag whose children are still being parsed.
+     *
+     * @param element The element to process
+     * @param align The current alignment
+     * @param first The index of the first child to process
+     * @param last The index after the last child to process
+     */
+    private void processTag(Element element,int align,int first,int last) {
         if ((cancelled) && (!cancelledCaught)) {
             return;
         }
         int curAlign=align;
 
         HTMLFont oldFont=font;
-        for(int i=0;i<element.getNumChildren();i++) {
+        for(int i=first;i<last;i++) {
             if ((cancelled) && (!cancelledCaught)) {
                 break;
             }
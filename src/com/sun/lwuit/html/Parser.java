@@ -266,13 +266,16 @@ class Parser {
 
 
     /**
-     * Converts a char entity to the matching character.
+     * Converts the char entity collected at the end of the buffer to the matching character.
      * This handles both numbered and symbol char entities (The latter is done via getCharEntityCode)
+     * If the char entity couldn't be converted it is left in the buffer and closed with a ;
      *
-     * @param charEntity The char entity to convert
-     * @return A string containing a single char, or an empty string if the char entity couldn't be converted
+     * @param tokens The buffer holding the char entity
+     * @param entityStart The position of the & character that starts the char entity in the buffer
+     * @param callback The HTMLCallback to notify of unrecognized char entities
      */
-    private String convertCharEntity(String charEntity,HTMLCallback callback) {
+    private void convertCharEntity(TokenBuffer tokens,int entityStart,HTMLCallback callback) {
+        String charEntity=new String(tokens.buffer,entityStart+1,tokens.length-entityStart-1);
         int charCode=-1;
         if (charEntity.startsWith("#")) { //numbered char entity
             if (charEntity.startsWith("#x")) { //hex
@@ -293,10 +296,11 @@ class Parser {
         }
 
         if (charCode!=-1) {
-            return ""+(char)charCode;
+            tokens.length=entityStart;
+            tokens.append((char)charCode);
         } else {
             notifyError(callback, HTMLCallback.ERROR_UNRECOGNIZED_CHAR_ENTITY,null,null,null, "Unrecognized char entity: "+charEntity);
-            return "&"+charEntity+";"; // Another option is to return an empty string, but returning the entity will unravel bugs and will also allow ignoring common mistakes such as using the & char (instead of &apos;)
+            tokens.append(';'); // Another option is to drop the entity, but leaving it will unravel bugs and will also allow ignoring common mistakes such as using the & char (instead of &apos;)
         }
 
     }
@@ -310,7 +314,8 @@ class Parser {
     Element parse(InputStreamReader is,HTMLComponent htmlC) {
         Element rootElement=new Element("ROOT"); // ROOT is a "dummy" element that all other document elements are added to
         try {
-            parseTagContent(rootElement, is, htmlC);
+            // The buffer belongs to this document, so several documents can be parsed (and downloaded) at the same time
+            parseTagContent(rootElement, new ExtInputStreamReader(is,true), new TokenBuffer(), htmlC);
         } catch (IOException ioe) {
             ioe.printStackTrace();
         }
@@ -321,86 +326,94 @@ class Parser {
      * This method parses tags content. It accumulates text and adds it as a child element in the parent Element.
      * Upon bumping a start tag character it calls the parseTag method.
      * This method is called at first from the parse method, and later on from parseTag (which creates the recursion).
+     * The text is accumulated in the buffer which is only used by parseTag after the text was added.
      *
      * @param element The current parent element
-     * @param is The InputStream containing the XML
+     * @param is The reader containing the XML
      * @throws IOException
      */
-    private void parseTagContent(Element element,InputStreamReader is, HTMLComponent htmlC) throws IOException {
+    private void parseTagContent(Element element,ExtInputStreamReader is,TokenBuffer tokens,HTMLComponent htmlC) throws IOException {
         HTMLCallback callback=htmlC.getHTMLCallback();
         if ((HTMLComponent.SUPPORT_CSS) && (htmlC.loadCSS) && (element.getId() == Element.TAG_STYLE)) { // We aren't strict and don't require text/css in a style tag // && "text/css".equals(element.getAttributeById(Element.ATTR_TYPE)))) {
             CSSElement addTo = parseCSSSegment(is,null,htmlC,null);
             htmlC.addToEmebeddedCSS(addTo);
             return;
         }
-        String text=null;
+        if ((htmlC.progressiveParsing) && (element.getId()==Element.TAG_BODY)) {
+            htmlC.bodyStarted(element);
+        }
+        boolean inText=false;
         boolean leadingSpace=false;
-        char c=(char)is.read();
-        String charEntity=null;
+        char c=is.readCharFromReader();
+        int entityStart=-1; // The position of the & of the char entity currently collected, or -1 if none
 
         while((byte)c!=-1) {
             if (c=='<') {
-                if (text!=null) {
-                    if (charEntity!=null) { //Mistakenly "collected" something that is not a char entity, perhaps misuse of the & character (instead of using &apos;)
-
-                        text+="&"+charEntity;
-                        charEntity=null;
-                    }
-                    if (leadingSpace) {
-                        text=" "+text;
-                    }
+                if (inText) {
+                    // If we mistakenly "collected" something that is not a char entity, perhaps misuse of the & character (instead of using &apos;), it is already in the buffer as is
                     Element textElement=new Element("text");
-                    textElement.addAttribute("title", text);
+                    textElement.addAttribute("title", tokens.toString());
                     element.addChild(textElement);
-                    text=null;
+                    if (htmlC.progressiveParsing) {
+                        htmlC.elementParsed(element, textElement);
+                    }
+                    inText=false;
+                    entityStart=-1;
                     leadingSpace=false;
                     
                 }
 
 
-                Element childElement=parseTag(is,htmlC);
+                Element childElement=parseTag(element,is,tokens,htmlC);
                 if (childElement==null) { //was actually an ending tag
-                    String closingTag="";
-                    c=(char)is.read();
+                    tokens.length=0;
+                    c=is.readCharFromReader();
                     while ((c!='>')) {
-                        closingTag+=c;
-                        c=(char)is.read();
+                        tokens.append(c);
+                        c=is.readCharFromReader();
                     }
 
-                    if (closingTag.equalsIgnoreCase(element.getName())) {
+                    if (tokens.equalsIgnoreCase(element.getName())) {
                         return;
-                    } else if (isEmptyTag(closingTag)) {
+                    } else if (isEmptyTag(tokens.toString())) {
                         // do nothing, someone chose to close an empty tag i.e. <img ....></img> or <br></br>
                     } else {
                         notifyError(callback, HTMLCallback.ERROR_NO_CLOSE_TAG, element.getName(), null, null, "Malformed HTML - no appropriate closing tag for "+element.getName());
                     }
                 } else if (childElement.getId()!=-1) { //If tag unsupported don't add it
                     element.addChild(childElement);
+                    if (htmlC.progressiveParsing) {
+                        htmlC.elementParsed(element, childElement);
+                    }
                 }
-            } else if (text!=null) {
-                if (charEntity!=null) {
+            } else if (inText) {
+                if (entityStart!=-1) {
                     if (c==';') { //end
-                        text+=convertCharEntity(charEntity,callback);
-                        charEntity=null;
+                        convertCharEntity(tokens,entityStart,callback);
+                        entityStart=-1;
                     } else {
-                        charEntity+=c;
+                        tokens.append(c);
                     }
                 } else if (c=='&') { //start char entity
-                    charEntity=""; // The & is not included in the string we accumulate
+                    entityStart=tokens.length;
+                    tokens.append(c);
                 } else {
-                    text+=c;
+                    tokens.append(c);
                 }
             } else if (!isWhiteSpace(c)) {
+                inText=true;
+                tokens.length=0;
+                if (leadingSpace) {
+                    tokens.append(' ');
+                }
                 if (c=='&') { //text starts with a character entity (i.e. &nbsp;)
-                    charEntity=""; // The & is not included in the string we accumulate
-                    text=""; //Initalize text so it won't be null
-                } else {
-                    text=""+c;
+                    entityStart=tokens.length;
                 }
+                tokens.append(c);
             } else if (c==' ') {
                 leadingSpace=true;
             }
-            c=(char)is.read();
+            c=is.readCharFromReader();
         }
     }
 
@@ -420,23 +433,22 @@ class Parser {
      * For comments and XML declarations this will call the parseCommentOrXMLDeclaration method.
      * Note that this method returns an Element with a name/id and attrbutes, but not its content which will be done by parseTagContent
      * 
-     * @param is The InputStream containing the XML
+     * @param parent The element that contains this tag
+     * @param is The reader containing the XML
+     * @param tokens The buffer the tag name and attributes are collected in
      * @return The parsed element
      * @throws IOException
      */
-    private Element parseTag(InputStreamReader is,HTMLComponent htmlC) throws IOException {
-        String tagName="";
-        String curAttribute="";
-        String curValue="";
+    private Element parseTag(Element parent,ExtInputStreamReader is,TokenBuffer tokens,HTMLComponent htmlC) throws IOException {
         boolean procInst=false;
 
         HTMLCallback callback=htmlC.getHTMLCallback();
-        char c=(char)is.read();
+        char c=is.readCharFromReader();
         if (c=='/') {
             return null; //end tag
         } else if (c=='!') {
-            c=(char)is.read();
-            char c2=(char)is.read();
+            c=is.readCharFromReader();
+            char c2=is.readCharFromReader();
             if ((c=='-') && (c2=='-')) { //comment
                 return parseCommentOrXMLDeclaration(is,"-->");
             } else {
@@ -444,34 +456,35 @@ class Parser {
             }
         } else if (c=='?') {
             procInst=true;
-            c=(char)is.read();
+            c=is.readCharFromReader();
             //return parseCommentOrXMLDeclaration(is,">"); //parse XML declaration i.e. <?xml version="1.0" encoding="ISO-8859-1"?> as comments as well - i.e. ignore them
         }
 
          //read and ignore any whitespaces before tag name
         while (isWhiteSpace(c)) {
-            c=(char)is.read();
+            c=is.readCharFromReader();
         }
 
         //collect tag name
+        tokens.length=0;
         while ((!isWhiteSpace(c)) && (c!='>') && (c!='/')) {
-            tagName+=c;
-            c=(char)is.read();
+            tokens.append(c);
+            c=is.readCharFromReader();
         }
 
          //read and ignore any whitespaces after tag name
         while (isWhiteSpace(c)) {
-            c=(char)is.read();
+            c=is.readCharFromReader();
         }
 
-        tagName=tagName.toLowerCase();
+        String tagName=tokens.toLowerCaseString();
         if (procInst) {
             if (tagName.equals("xml-stylesheet")) { // The XML processing instruction <?xml-stylesheet ... ?> has the same parameters as <link .. > and behaves the same way
                 tagName="link";
             } else { // Processing instruction not supported - read till its end
-                c=(char)is.read();
+                c=is.readCharFromReader();
                 while (c!='>') {
-                    c=(char)is.read();
+                    c=is.readCharFromReader();
                 }
                 return new Element("unsupported");
             }
@@ -486,13 +499,13 @@ class Parser {
             char lastChar=c;
             while (c!='>') { // Read till the end of the tag
                 lastChar=c;
-                c=(char)is.read();
+                c=is.readCharFromReader();
             }
             if (lastChar!='/') { // If this is an empty tag, no need to search for its closing tag as there's none...
                 String endTag="</"+tagName+">";
                 int index=0;
                 while(index<endTag.length()) {
-                    c=(char)is.read();
+                    c=is.readCharFromReader();
 
                     if ((c>='A') && (c<='Z')) {
                         c=(char)(c-'A'+'a');
@@ -507,14 +520,16 @@ class Parser {
 
             return element;
         }
+        tagName=element.getName(); // The shared tag name constant rather than the one just read
+        element.setParent(parent); // Set already now so the ancestors are known while the content is parsed (Used by progressive rendering), addChild sets it again later
 
         if (c=='>') { //tag declartion ended, process content
             if (!isEmptyTag(tagName)) {
-                parseTagContent(element, is, htmlC);
+                parseTagContent(element, is, tokens, htmlC);
             }
             return element;
         } else if ((c=='/') || ((procInst) && (c=='?'))) { //closed tag - no content
-            c=(char)is.read();
+            c=is.readCharFromReader();
             if (c=='>') {
                 return element;
             } else {
@@ -524,31 +539,33 @@ class Parser {
 
 
         while(true) {
-            curAttribute=""+c;
-            c=(char)is.read();
+            tokens.length=0;
+            tokens.append(c);
+            c=is.readCharFromReader();
             while ((!isWhiteSpace(c)) && (c!='=') && (c!='>')) {
-                curAttribute+=c;
-                c=(char)is.read();
+                tokens.append(c);
+                c=is.readCharFromReader();
             }
+            String curAttribute=tokens.toString();
 
             if (c=='>') { // tag close char shouldn't be found here, but if the HTML is slightly malformed we return the element
                 notifyError(callback, HTMLCallback.ERROR_UNEXPECTED_TAG_CLOSING, tagName,curAttribute,null, "Unexpected tag closing in tag "+tagName+", attribute="+curAttribute);
                 if (!isEmptyTag(tagName)) {
-                    parseTagContent(element, is, htmlC);
+                    parseTagContent(element, is, tokens, htmlC);
                 }
                 return element;
             }
 
              //read and ignore any whitespaces after attribute name
             while (isWhiteSpace(c)) {
-                c=(char)is.read();
+                c=is.readCharFromReader();
             }
 
             if (c!='=') {
                 notifyError(callback, HTMLCallback.ERROR_UNEXPECTED_CHARACTER, tagName, curAttribute, null, "Unexpected character "+c+", expected '=' after attribute "+curAttribute+" in tag "+tagName);
                 if (c=='>') { // tag close char shouldn't be found here, but if the HTML is slightly malformed we return the element
                     if (!isEmptyTag(tagName)) {
-                        parseTagContent(element, is, htmlC);
+                        parseTagContent(element, is, tokens, htmlC);
                     }
                     return element;
                 }
@@ -557,53 +574,44 @@ class Parser {
                 continue; //if attribute is not followed by = then process the next attribute
             }
 
-            c=(char)is.read();
+            c=is.readCharFromReader();
              //read and ignore any whitespaces before attribute value
             while (isWhiteSpace(c)) {
-                c=(char)is.read();
+                c=is.readCharFromReader();
             }
 
             char quote=' ';
 
-
+            tokens.length=0;
             if ((c=='"') || (c=='\'')) {
                 quote=c;
             } else {
-                curValue+=c;
+                tokens.append(c);
             }
 
-            String charEntity=null;
+            int entityStart=-1; // The position of the & of the char entity currently collected, or -1 if none
             boolean ended=false;
             while (!ended) {
-                c=(char)is.read();
+                c=is.readCharFromReader();
                 if (c==quote) {
                     ended=true;
-                    c=(char)is.read();
+                    c=is.readCharFromReader();
                 } else if ((quote==' ') && ((c=='/') || (c=='>') || (isWhiteSpace(c)))) {
                     ended=true;
                 } else if (c=='&') {
-                    if (charEntity!=null) {
-                        curValue+="&"+charEntity; // Wasn't a char entit, probably a url as a parameter : i.e. param="/test?p=val&pw=val2&p3=val3
-                    }
-                    charEntity="";
+                    // If a char entity was already collected it wasn't one, probably a url as a parameter : i.e. param="/test?p=val&pw=val2&p3=val3 - it stays in the buffer as is
+                    entityStart=tokens.length;
+                    tokens.append(c);
+                } else if ((entityStart!=-1) && (c==';')) {
+                    convertCharEntity(tokens,entityStart,callback);
+                    entityStart=-1;
                 } else {
-                    if (charEntity!=null) {
-                        if (c==';') {
-                            curValue+=convertCharEntity(charEntity,callback);
-                            charEntity=null;
-                        } else {
-                            charEntity+=c;
-                        }
-                    } else {
-                        curValue+=c;
-                    }
+                    tokens.append(c);
                 }
             }
 
-            if (charEntity!=null) { // Mistaken something else for a char entity - for example an action which is action="http://domain/test.html?param1=val1&param2=val2"
-                curValue+="&"+charEntity;
-                charEntity=null;
-            }
+            // If we mistook something else for a char entity - for example an action which is action="http://domain/test.html?param1=val1&param2=val2" - it is already in the buffer as is
+            String curValue=tokens.toString();
 
             curAttribute=curAttribute.toLowerCase();
             int error=element.addAttribute(curAttribute, curValue);
@@ -616,16 +624,16 @@ class Parser {
 
              //read and ignore any whitespaces after attribute/value pair
             while (isWhiteSpace(c)) {
-                c=(char)is.read();
+                c=is.readCharFromReader();
             }
 
             if (c=='>') { //tag declartion ended, process content
                 if (!isEmptyTag(tagName)) {
-                    parseTagContent(element, is, htmlC);
+                    parseTagContent(element, is, tokens, htmlC);
                 }
                 return element;
             } else if ((c=='/') || ((procInst) && (c=='?'))) { //closed tag - no content
-                c=(char)is.read();
+                c=is.readCharFromReader();
                 if (c=='>') {
                     return element;
                 } else {
@@ -634,40 +642,31 @@ class Parser {
                 }
             }
 
-            curAttribute="";
-            curValue="";
-
         }
 
     }
 
     /**
-     * This utility method is used to parse comments and XML declarations in the HTML.
-     * The comment/declaration is returned as an Element.
-     * In the current implementation they will be ommitted from the final DOM (=the root element) as the tag name won't match supported tags.
+     * This utility method is used to skip comments and XML declarations in the HTML.
+     * The comment/declaration is returned as an Element without its content, since it will be ommitted from the final DOM (=the root element) anyway as the tag name won't match supported tags.
      *
-     * @param is The inputstream
+     * @param is The reader
      * @param endTag The endtag to look for
      * @return
      * @throws IOException
      */
-    private Element parseCommentOrXMLDeclaration(InputStreamReader is,String endTag) throws IOException {
+    private Element parseCommentOrXMLDeclaration(ExtInputStreamReader is,String endTag) throws IOException {
         int endTagPos=0;
-        String text="";
         boolean ended=false;
         while (!ended) {
-            char c=(char)is.read();
+            char c=is.readCharFromReader();
             if (c==endTag.charAt(endTagPos)) {
                 endTagPos++;
                 if (endTagPos==endTag.length()) {
                     ended=true;
                 }
             } else {
-                if (endTagPos!=0) { //add - or -- if it wasn't an end tag eventually
-                    text+=endTag.substring(0, endTagPos);
-                    endTagPos=0;
-                }
-                text+=c;
+                endTagPos=0;
             }
         }
 
@@ -678,9 +677,7 @@ class Parser {
             elementName="XML declaration";
         }
 
-        Element comment = new Element(elementName);
-        comment.addAttribute("content", text);
-        return comment;
+        return new Element(elementName);
     }
 
     /**
@@ -969,8 +966,21 @@ class Parser {
      * @throws IOException on input stream failure
      */
     CSSElement parseCSSSegment(InputStreamReader isr,InputStream is,HTMLComponent htmlC,String pageURL) throws IOException {
+        return parseCSSSegment(new ExtInputStreamReader(isr), is, htmlC, pageURL);
+    }
+
+    /**
+     * Reads a CSS segment from the given reader, see parseCSSSegment(InputStreamReader,InputStream,HTMLComponent,String)
+     *
+     * @param r The reader representing the stream, this is the document reader for embedded CSS segments
+     * @param is The InputStream representing the stream (We need it too, in case encoding changes and we need to create another InputStreamReader)
+     * @param htmlC The HTMLComponent
+     * @param  pageURL For external CSS the URL of the CSS, for embedded - null
+     * @return A CSSElement containing all selectors found in the stream as its children
+     * @throws IOException on input stream failure
+     */
+    private CSSElement parseCSSSegment(ExtInputStreamReader r,InputStream is,HTMLComponent htmlC,String pageURL) throws IOException {
         CSSElement addTo = new CSSElement("style");
-        ExtInputStreamReader r = new ExtInputStreamReader(isr);
         DocumentInfo docInfo=null;
         String encoding=htmlC.getDocumentInfo()!=null?htmlC.getDocumentInfo().getEncoding():null;
         String token = nextToken(r,true,false,true,false);
@@ -1296,10 +1306,31 @@ class ExtInputStreamReader  {
     char lastCharRead = (char)-1;
     InputStreamReader internalReader;
 
+    /**
+     * Characters read ahead from the reader, or null if the reader is read a character at a time
+     */
+    private char[] block;
+    private int blockPos;
+    private int blockCount;
+
     ExtInputStreamReader(InputStreamReader isr) {
         internalReader=isr;
     }
 
+    /**
+     * Creates a reader that can read ahead from the given reader in blocks, which is much faster than reading a character at a time.
+     * This should only be used when nothing else reads from the underlying stream, for example a CSS @charset directive creates another reader over it.
+     *
+     * @param isr The reader to read from
+     * @param blockReads true to read ahead in blocks, false to read a character at a time
+     */
+    ExtInputStreamReader(InputStreamReader isr,boolean blockReads) {
+        internalReader=isr;
+        if (blockReads) {
+            block=new char[1024];
+        }
+    }
+
     /**
      * "Unreads" a character from the stream by placing it in a member variable to be later retreived by readCharFromReader, used by the CSS Parser
      *
@@ -1310,10 +1341,9 @@ class ExtInputStreamReader  {
     }
 
     /**
-     * Reads the next character from the input stream, used by the CSS Parser
+     * Reads the next character from the input stream
      * If there's an "unread" character in teh buffer it is returned (and no reading is done to the actual stream)
      *
-     * @param r The stream reader
      * @return the next character
      * @throws IOException
      */
@@ -1323,9 +1353,85 @@ class ExtInputStreamReader  {
             lastCharRead = (char)-1;
             return c;
         }
-        return (char)internalReader.read();
+        if (block==null) {
+            return (char)internalReader.read();
+        }
+        while (blockPos==blockCount) {
+            blockCount=internalReader.read(block, 0, block.length);
+            blockPos=0;
+            if (blockCount<0) {
+                blockCount=0;
+                return (char)-1;
+            }
+        }
+        return block[blockPos++];
     }
+}
 
+/**
+ * Collects text, tag names and attributes while a document is parsed so they don't have to be built a character at a time.
+ * Char entities are collected in the buffer as well (from the & character) and replaced once complete.
+ * Each parsed document has its own buffer, so the Parser singleton holds no parsing state.
+ */
+class TokenBuffer {
 
+    char[] buffer=new char[256];
 
-}
\ No newline at end of file
+    /**
+     * The number of characters in the buffer
+     */
+    int length;
+
+    /**
+     * Appends the given character to the buffer, growing it if necessary
+     *
+     * @param c The character to append
+     */
+    void append(char c) {
+        if (length==buffer.length) {
+            char[] newBuffer=new char[buffer.length*2];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer=newBuffer;
+        }
+        buffer[length++]=c;
+    }
+
+    /**
+     * Converts the buffer content to lower case and returns it as a string
+     *
+     * @return The buffer content in lower case
+     */
+    String toLowerCaseString() {
+        for(int i=0;i<length;i++) {
+            buffer[i]=Character.toLowerCase(buffer[i]);
+        }
+        return new String(buffer,0,length);
+    }
+
+    /**
+     * Compares the buffer content to the given string ignoring case
+     *
+     * @param str The string to compare to
+     * @return true if the buffer holds the same characters as the string (case ignored), false otherwise
+     */
+    boolean equalsIgnoreCase(String str) {
+        if (str.length()!=length) {
+            return false;
+        }
+        for(int i=0;i<length;i++) {
+            if (Character.toLowerCase(buffer[i])!=Character.toLowerCase(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the buffer content as a string
+     *
+     * @return The buffer content
+     */
+    public String toString() {
+        return new String(buffer,0,length);
+    }
+}
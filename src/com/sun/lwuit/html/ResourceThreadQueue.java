@@ -133,7 +133,27 @@ class ResourceThreadQueue {
      * @param imageUrl The URL this image should be fetched from
      * @param styles A mask of CSSEngine.STYLE_* values indicating in which styles this background image should be displayed
      */
-    synchronized void downloadImageImmediately(Component imgComp,String imageUrl,int styles) {
+    synchronized void downloadImageImmediately(final Component imgComp,final String imageUrl,final int styles) {
+        if (Display.getInstance().isEdt()) { // Progressive rendering lays out the page on the EDT, so download on another thread to keep the UI responsive
+            Display.getInstance().invokeAndBlock(new Runnable() {
+                public void run() {
+                    downloadImage(imgComp, imageUrl, styles);
+                }
+            });
+        } else {
+            downloadImage(imgComp, imageUrl, styles);
+        }
+    }
+
+    /**
+     * Downloads the image and sets it to the component on the calling thread
+     * This is not synchronized since it may run on another thread while the EDT that holds the lock waits for it
+     *
+     * @param imgComp The component for which the image should be used after loaded
+     * @param imageUrl The URL this image should be fetched from
+     * @param styles A mask of CSSEngine.STYLE_* values indicating in which styles this background image should be displayed
+     */
+    private void downloadImage(Component imgComp,String imageUrl,int styles) {
         try {
             InputStream is = htmlC.getRequestHandler().resourceRequested(new DocumentInfo(imageUrl,DocumentInfo.TYPE_IMAGE));
             Image img = Image.createImage(is);
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl;
+
+/**
+ * The regions of the screen painted during a single paintDirty pass, kept as a
+ * short list of disjoint rectangles so each can be flushed on its own.
+ * Overlapping or touching rectangles are merged and once the limit is reached
+ * a new rectangle is merged with the region it enlarges the least.
+ */
+final class DirtyRegions {
+    private final int[] x1;
+    private final int[] y1;
+    private final int[] x2;
+    private final int[] y2;
+    private int count;
+    private int limit;
+    private int screenWidth;
+    private int screenHeight;
+
+    /**
+     * @param capacity the maximum number of regions ever kept
+     */
+    DirtyRegions(int capacity) {
+        x1 = new int[capacity];
+        y1 = new int[capacity];
+        x2 = new int[capacity];
+        y2 = new int[capacity];
+    }
+
+    /**
+     * Clears the regions for a new pass
+     *
+     * @param limit the number of regions the implementation is willing to flush
+     * @param screenWidth the width of the screen, regions are clipped to it
+     * @param screenHeight the height of the screen, regions are clipped to it
+     */
+    void reset(int limit, int screenWidth, int screenHeight) {
+        count = 0;
+        this.limit = Math.max(1, Math.min(limit, x1.length));
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+    }
+
+    /**
+     * Adds a painted rectangle
+     */
+    void add(int x, int y, int width, int height) {
+        int left = Math.max(0, x);
+        int top = Math.max(0, y);
+        int right = Math.min(screenWidth, x + width);
+        int bottom = Math.min(screenHeight, y + height);
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        int iter = 0;
+        while (iter < count) {
+            if (left <= x2[iter] && x1[iter] <= right && top <= y2[iter] && y1[iter] <= bottom) {
+                // absorb the region and start over since the union may now
+                // touch regions that were checked already
+                left = Math.min(left, x1[iter]);
+                top = Math.min(top, y1[iter]);
+                right = Math.max(right, x2[iter]);
+                bottom = Math.max(bottom, y2[iter]);
+                remove(iter);
+                iter = 0;
+                continue;
+            }
+            iter++;
+            if (iter == count && count == limit) {
+                int closest = closest(left, top, right, bottom);
+                left = Math.min(left, x1[closest]);
+                top = Math.min(top, y1[closest]);
+                right = Math.max(right, x2[closest]);
+                bottom = Math.max(bottom, y2[closest]);
+                remove(closest);
+                iter = 0;
+            }
+        }
+        x1[count] = left;
+        y1[count] = top;
+        x2[count] = right;
+        y2[count] = bottom;
+        count++;
+    }
+
+    /**
+     * Marks the whole screen as painted
+     */
+    void addAll() {
+        count = 0;
+        add(0, 0, screenWidth, screenHeight);
+    }
+
+    /**
+     * Returns the index of the region whose union with the given rectangle
+     * adds the least area
+     */
+    private int closest(int left, int top, int right, int bottom) {
+        int closest = 0;
+        long best = Long.MAX_VALUE;
+        for (int iter = 0; iter < count; iter++) {
+            long union = (long)(Math.max(right, x2[iter]) - Math.min(left, x1[iter])) *
+                    (Math.max(bottom, y2[iter]) - Math.min(top, y1[iter]));
+            long growth = union - (long)(x2[iter] - x1[iter]) * (y2[iter] - y1[iter]);
+            if (growth < best) {
+                best = growth;
+                closest = iter;
+            }
+        }
+        return closest;
+    }
+
+    private void remove(int index) {
+        count--;
+        x1[index] = x1[count];
+        y1[index] = y1[count];
+        x2[index] = x2[count];
+        y2[index] = y2[count];
+    }
+
+    int size() {
+        return count;
+    }
+
+    int getX(int index) {
+        return x1[index];
+    }
+
+    int getY(int index) {
+        return y1[index];
+    }
+
+    int getWidth(int index) {
+        return x2[index] - x1[index];
+    }
+
+    int getHeight(int index) {
+        return y2[index] - y1[index];
+    }
+}
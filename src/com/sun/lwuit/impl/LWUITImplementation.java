@@ -63,6 +63,8 @@ public abstract class LWUITImplementation {
     private Animation[] paintQueue = new Animation[50];
     private Animation[] paintQueueTemp = new Animation[50];
     private int paintQueueFill = 0;
+    private boolean paintQueueOverflow;
+    private DirtyRegions dirtyRegions = new DirtyRegions(8);
     private Graphics lwuitGraphics;
 
     private boolean bidi;
@@ -165,7 +167,7 @@ public abstract class LWUITImplementation {
      * @return false by default
      */
     public boolean hasPendingPaints() {
-        return paintQueueFill != 0;
+        return paintQueueFill != 0 || paintQueueOverflow;
     }
 
     /**
@@ -199,11 +201,28 @@ public abstract class LWUITImplementation {
 
     /**
      * Allows for painting an overlay on top of the implementation for notices during
-     * testing etc.
+     * testing etc. By default draws the statistics of the frame profiler when
+     * its overlay is turned on.
      * 
      * @param g graphics context on which to draw the overlay
      */
     protected void paintOverlay(Graphics g) {
+        FrameProfiler profiler = Display.getInstance().getProfiler();
+        if (profiler != null && profiler.isOverlayVisible()) {
+            profiler.paintOverlay(g);
+        }
+    }
+
+    /**
+     * Returns the number of separate regions paintDirty may flush in a single
+     * pass, painted regions beyond that are merged together. Implementations
+     * where a partial flush is expensive or flushes the whole screen anyway
+     * should return 1.
+     *
+     * @return 4 by default
+     */
+    protected int getMaxFlushRegions() {
+        return 4;
     }
 
     /**
@@ -211,51 +230,86 @@ public abstract class LWUITImplementation {
      */
     public void paintDirty() {
         int size = 0;
+        boolean overflow;
         synchronized (displayLock) {
             size = paintQueueFill;
             Animation[] array = paintQueue;
             paintQueue = paintQueueTemp;
             paintQueueTemp = array;
             paintQueueFill = 0;
+            overflow = paintQueueOverflow;
+            paintQueueOverflow = false;
         }
-        if (size > 0) {
+        if (size > 0 || overflow) {
+            FrameProfiler profiler = Display.getInstance().getProfiler();
+            if (profiler != null) {
+                profiler.paintQueueDepth(size);
+            }
             Graphics wrapper = getLWUITGraphics();
-            int topX = getDisplayWidth();
-            int topY = getDisplayHeight();
-            int bottomX = 0;
-            int bottomY = 0;
+            int width = getDisplayWidth();
+            int height = getDisplayHeight();
+            DirtyRegions regions = dirtyRegions;
+            regions.reset(getMaxFlushRegions(), width, height);
+
+            // repaints were lost when the queue overflowed, repaint the form
+            // which covers every component that was dropped
+            Form current = getCurrentForm();
+            boolean fullRepaint = overflow && current != null;
+            if (fullRepaint) {
+                wrapper.translate(-wrapper.getTranslateX(), -wrapper.getTranslateY());
+                wrapper.setClip(0, 0, width, height);
+                current.paintComponent(wrapper);
+                regions.addAll();
+            }
             for (int iter = 0; iter < size; iter++) {
                 Animation ani = paintQueueTemp[iter];
                 paintQueueTemp[iter] = null;
                 wrapper.translate(-wrapper.getTranslateX(), -wrapper.getTranslateY());
-                wrapper.setClip(0, 0, getDisplayWidth(), getDisplayHeight());
+                wrapper.setClip(0, 0, width, height);
                 if (ani instanceof Component) {
                     Component cmp = (Component) ani;
                     Rectangle dirty = cmp.getDirtyRegion();
                     if (dirty != null) {
-                        wrapper.setClip(dirty.getX(), dirty.getY(), dirty.getSize().getWidth(), dirty.getSize().getHeight());
                         cmp.setDirtyRegion(null);
                     }
-
-                    cmp.paintComponent(wrapper);
+                    if (fullRepaint) {
+                        continue;
+                    }
                     int cmpAbsX = cmp.getAbsoluteX() + cmp.getScrollX();
-                    topX = Math.min(cmpAbsX, topX);
-                    bottomX = Math.max(cmpAbsX + cmp.getWidth(), bottomX);
                     int cmpAbsY = cmp.getAbsoluteY() + cmp.getScrollY();
-                    topY = Math.min(cmpAbsY, topY);
-                    bottomY = Math.max(cmpAbsY + cmp.getHeight(), bottomY);
+                    int left = cmpAbsX;
+                    int top = cmpAbsY;
+                    int right = cmpAbsX + cmp.getWidth();
+                    int bottom = cmpAbsY + cmp.getHeight();
+                    if (dirty != null) {
+                        wrapper.setClip(dirty.getX(), dirty.getY(), dirty.getSize().getWidth(), dirty.getSize().getHeight());
+
+                        // nothing outside of the clip changes on the screen
+                        left = dirty.getX();
+                        top = dirty.getY();
+                        right = left + dirty.getSize().getWidth();
+                        bottom = top + dirty.getSize().getHeight();
+                    }
+
+                    cmp.paintComponent(wrapper);
+                    regions.add(left, top, right - left, bottom - top);
                 } else {
-                    bottomX = getDisplayWidth();
-                    bottomY = getDisplayHeight();
-                    topX = 0;
-                    topY = 0;
+                    regions.addAll();
                     ani.paint(wrapper);
                 }
             }
 
             paintOverlay(wrapper);
+            if (profiler != null && profiler.isOverlayVisible()) {
+                // the overlay is redrawn with every frame so flush it as well
+                Rectangle overlay = profiler.getOverlayBounds();
+                regions.add(overlay.getX(), overlay.getY(), overlay.getSize().getWidth(), overlay.getSize().getHeight());
+            }
 
-            flushGraphics(topX, topY, bottomX - topX, bottomY - topY);
+            int count = regions.size();
+            for (int iter = 0; iter < count; iter++) {
+                flushGraphics(regions.getX(iter), regions.getY(iter), regions.getWidth(iter), regions.getHeight(iter));
+            }
         }
     }
 
@@ -335,9 +389,11 @@ public abstract class LWUITImplementation {
                     return;
                 }
             }
-            // overcrowding the queue don't try to grow the array!
+            // overcrowding the queue don't try to grow the array, the next
+            // paintDirty repaints the whole form instead
             if (paintQueueFill >= paintQueue.length) {
-                System.out.println("Warning paint queue size exceeded, please watch the amount of repaint calls");
+                paintQueueOverflow = true;
+                displayLock.notify();
                 return;
             }
 
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.Font;
+
+/**
+ * Native font of the headless implementation: a fixed 6x10 pixel monospace
+ * bitmap font covering printable ASCII, so text renders to exactly the same
+ * pixels on every JVM. Characters outside that range are drawn as an empty
+ * box of the same width.
+ */
+class BitmapFont {
+    /**
+     * Width and height of a glyph cell before scaling
+     */
+    static final int CELL_WIDTH = 6;
+    static final int CELL_HEIGHT = 10;
+
+    /**
+     * Rows of the cell above the baseline
+     */
+    private static final int ASCENT = 8;
+
+    /**
+     * One entry per character from ' ' to '~', bit (row * 6 + column) is set
+     * for every lit pixel of the glyph
+     */
+    private static final long[] GLYPHS = {
+        0x000000000000000L, 0x000200208208200L, 0x000000000514500L, 0x00028a7caf94500L,
+        0x0087a8e0e2bc200L, 0x000e28e8c5c51c0L, 0x000b12caa304700L, 0x000000000208200L,
+        0x008104104104108L, 0x004108208208104L, 0x00000002a71ca80L, 0x00000823e208000L,
+        0x104100000000000L, 0x000000700000000L, 0x000100000000000L, 0x002104208410800L,
+        0x0007228aa8a2700L, 0x000f88208208380L, 0x000f84630822700L, 0x00072281c822700L,
+        0x000410f96518400L, 0x0007a0820782780L, 0x00072289e086f00L, 0x000108210430f80L,
+        0x00072289c8a2700L, 0x0007b083c8a2700L, 0x000100000100000L, 0x104100000100000L,
+        0x000020702720000L, 0x0000007c07c0000L, 0x000002720702000L, 0x000100104210780L,
+        0x604eaaaaaea4700L, 0x0008a2714508200L, 0x0007a289e8a2780L, 0x000f260820a6f00L,
+        0x0007b28a28b2780L, 0x000f820be082f80L, 0x0000820be082f80L, 0x000f268b20a6700L,
+        0x0008a28be8a2880L, 0x000f88208208f80L, 0x000312410410700L, 0x000892286292880L,
+        0x000f82082082080L, 0x0008a28aadb6880L, 0x0008b2caa9a6880L, 0x0007228a28a2700L,
+        0x00008209e8a2780L, 0x0307228a28a2700L, 0x0000a2c9e8a2780L, 0x00072281c0a2700L,
+        0x000208208208f80L, 0x0007228a28a2880L, 0x000208514522880L, 0x00049249eb6d840L,
+        0x000894508514880L, 0x000208208514880L, 0x000f84108410f80L, 0x00c10410410410cL,
+        0x020410208104080L, 0x00c20820820820cL, 0x00000000044a100L, 0xfc0000000000000L,
+        0x000000000000102L, 0x000fa2f20780000L, 0x0007a28a2782082L, 0x000702082700000L,
+        0x000f228a2f20820L, 0x000f02fa2700000L, 0x000104104784118L, 0x720f228a2f00000L,
+        0x0008a28a6682082L, 0x000f88208300008L, 0x188208208380008L, 0x00089238a482082L,
+        0x000604104104107L, 0x000aaaaaaf80000L, 0x0008a28a6680000L, 0x0007228a2700000L,
+        0x0827a28a2780000L, 0x820f228a2f00000L, 0x000104124f00000L, 0x0007a0f02f00000L,
+        0x000704104784100L, 0x000f228a2880000L, 0x000214514880000L, 0x00051452a880000L,
+        0x000d94214d80000L, 0x188208514880000L, 0x000f84210f80000L, 0x018208206208218L,
+        0x208208208208208L, 0x00c20823020820cL, 0x000000c0e000000L
+    };
+
+    /**
+     * Box drawn for characters the font does not cover
+     */
+    private static final long MISSING = 0x000792492492780L;
+
+    private final int face;
+    private final int style;
+    private final int size;
+    private final int scale;
+    private final int leading;
+    private final int advance;
+
+    BitmapFont(int face, int style, int size) {
+        this.face = face;
+        this.style = style;
+        this.size = size;
+        if (size == Font.SIZE_LARGE) {
+            scale = 2;
+            leading = 0;
+        } else {
+            scale = 1;
+            leading = size == Font.SIZE_SMALL ? 0 : 1;
+        }
+        int width = CELL_WIDTH * scale;
+        if ((style & Font.STYLE_BOLD) != 0) {
+            width++;
+        }
+        advance = width;
+    }
+
+    int getFace() {
+        return face;
+    }
+
+    int getStyle() {
+        return style;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getHeight() {
+        return CELL_HEIGHT * scale + 2 * leading;
+    }
+
+    int charWidth(char ch) {
+        return advance;
+    }
+
+    int charsWidth(char[] ch, int offset, int length) {
+        return advance * length;
+    }
+
+    int stringWidth(String str) {
+        return advance * str.length();
+    }
+
+    /**
+     * Draws str with its top left corner at x, y in the color and alpha of g
+     */
+    void drawString(BufferGraphics g, String str, int x, int y) {
+        int length = str.length();
+        int top = y + leading;
+        int rows = CELL_HEIGHT * scale;
+        if (top >= g.getClipBottom() || top + rows <= g.getClipTop()
+                || x >= g.getClipRight() || x + length * advance <= g.getClipLeft()) {
+            return;
+        }
+        boolean bold = (style & Font.STYLE_BOLD) != 0;
+        boolean italic = (style & Font.STYLE_ITALIC) != 0;
+        for (int iter = 0; iter < length; iter++) {
+            int cx = x + iter * advance;
+            if (cx >= g.getClipRight()) {
+                break;
+            }
+            if (cx + advance <= g.getClipLeft()) {
+                continue;
+            }
+            char c = str.charAt(iter);
+            long bits;
+            if (c >= ' ' && c <= '~') {
+                bits = GLYPHS[c - ' '];
+            } else if (c == '\t' || c == '\n' || c == '\r') {
+                continue;
+            } else {
+                bits = MISSING;
+            }
+            for (int row = 0; row < CELL_HEIGHT; row++) {
+                int line = (int) (bits >>> (row * CELL_WIDTH)) & 0x3f;
+                if (line == 0) {
+                    continue;
+                }
+                // italic leans the part above the baseline one pixel right
+                int shift = italic && row < ASCENT / 2 ? scale : 0;
+                for (int col = 0; col < CELL_WIDTH; col++) {
+                    if ((line & (1 << col)) != 0) {
+                        int px = cx + col * scale + shift;
+                        int py = top + row * scale;
+                        g.fillSpanBlock(px, py, scale + (bold ? 1 : 0), scale);
+                    }
+                }
+            }
+        }
+        if ((style & Font.STYLE_UNDERLINED) != 0) {
+            g.fillSpanBlock(x, top + (ASCENT + 1) * scale - 1, length * advance, 1);
+        }
+    }
+}
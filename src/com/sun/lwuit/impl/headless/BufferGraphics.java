@@ -0,0 +1,249 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+/**
+ * Native graphics of the headless implementation: the drawing state (color,
+ * alpha, clip and font) of a context drawing into an ImageBuffer, and the
+ * pixel level operations the primitives are built from.
+ */
+class BufferGraphics {
+    private final ImageBuffer target;
+    private int color;
+    private int alpha = 255;
+    private int clipX;
+    private int clipY;
+    private int clipWidth;
+    private int clipHeight;
+    private BitmapFont font;
+
+    BufferGraphics(ImageBuffer target, BitmapFont font) {
+        this.target = target;
+        this.font = font;
+        resetClip();
+    }
+
+    ImageBuffer getTarget() {
+        return target;
+    }
+
+    /**
+     * Sets the clip to the whole target, used after the target is resized
+     */
+    void resetClip() {
+        clipX = 0;
+        clipY = 0;
+        clipWidth = target.width;
+        clipHeight = target.height;
+    }
+
+    int getColor() {
+        return color;
+    }
+
+    void setColor(int rgb) {
+        color = rgb & 0xffffff;
+    }
+
+    int getAlpha() {
+        return alpha;
+    }
+
+    void setAlpha(int alpha) {
+        this.alpha = alpha & 0xff;
+    }
+
+    BitmapFont getFont() {
+        return font;
+    }
+
+    void setFont(BitmapFont font) {
+        this.font = font;
+    }
+
+    int getClipX() {
+        return clipX;
+    }
+
+    int getClipY() {
+        return clipY;
+    }
+
+    int getClipWidth() {
+        return clipWidth;
+    }
+
+    int getClipHeight() {
+        return clipHeight;
+    }
+
+    void setClip(int x, int y, int width, int height) {
+        clipX = x;
+        clipY = y;
+        clipWidth = Math.max(0, width);
+        clipHeight = Math.max(0, height);
+    }
+
+    void clipRect(int x, int y, int width, int height) {
+        int x2 = Math.min(clipX + clipWidth, x + width);
+        int y2 = Math.min(clipY + clipHeight, y + height);
+        clipX = Math.max(clipX, x);
+        clipY = Math.max(clipY, y);
+        clipWidth = Math.max(0, x2 - clipX);
+        clipHeight = Math.max(0, y2 - clipY);
+    }
+
+    /**
+     * Edges of the area that can actually be painted: the clip intersected
+     * with the target. Right and bottom are exclusive.
+     */
+    int getClipLeft() {
+        return Math.max(0, clipX);
+    }
+
+    int getClipTop() {
+        return Math.max(0, clipY);
+    }
+
+    int getClipRight() {
+        return Math.min(target.width, clipX + clipWidth);
+    }
+
+    int getClipBottom() {
+        return Math.min(target.height, clipY + clipHeight);
+    }
+
+    /**
+     * Fills a rectangle in the current color and alpha, respecting the clip
+     */
+    void fillSpanBlock(int x, int y, int width, int height) {
+        int left = Math.max(x, getClipLeft());
+        int top = Math.max(y, getClipTop());
+        int right = Math.min(x + width, getClipRight());
+        int bottom = Math.min(y + height, getClipBottom());
+        if (left >= right || top >= bottom || alpha == 0) {
+            return;
+        }
+        int[] rgb = target.rgb;
+        int stride = target.width;
+        if (alpha == 255) {
+            int pixel = 0xff000000 | color;
+            for (int row = top; row < bottom; row++) {
+                int end = row * stride + right;
+                for (int i = row * stride + left; i < end; i++) {
+                    rgb[i] = pixel;
+                }
+            }
+        } else {
+            for (int row = top; row < bottom; row++) {
+                int end = row * stride + right;
+                for (int i = row * stride + left; i < end; i++) {
+                    rgb[i] = blend(rgb[i], color, alpha);
+                }
+            }
+        }
+    }
+
+    /**
+     * Paints one pixel in the current color and alpha if it is in the clip
+     */
+    void plot(int x, int y) {
+        if (x < getClipLeft() || x >= getClipRight() || y < getClipTop() || y >= getClipBottom()) {
+            return;
+        }
+        int i = y * target.width + x;
+        target.rgb[i] = alpha == 255 ? 0xff000000 | color : blend(target.rgb[i], color, alpha);
+    }
+
+    /**
+     * Composites ARGB pixels onto the target at x, y. The pixel alpha is
+     * multiplied by the graphics alpha unless processAlpha is false, in which
+     * case the pixels are treated as opaque.
+     */
+    void drawPixels(int[] pixels, int offset, int scan, int x, int y, int width, int height, boolean processAlpha) {
+        int left = Math.max(x, getClipLeft());
+        int top = Math.max(y, getClipTop());
+        int right = Math.min(x + width, getClipRight());
+        int bottom = Math.min(y + height, getClipBottom());
+        if (left >= right || top >= bottom || alpha == 0) {
+            return;
+        }
+        int[] rgb = target.rgb;
+        int stride = target.width;
+        for (int row = top; row < bottom; row++) {
+            int src = offset + (row - y) * scan + (left - x);
+            int dst = row * stride + left;
+            int end = row * stride + right;
+            if (!processAlpha && alpha == 255) {
+                for (; dst < end; dst++, src++) {
+                    rgb[dst] = 0xff000000 | pixels[src];
+                }
+                continue;
+            }
+            for (; dst < end; dst++, src++) {
+                int pixel = pixels[src];
+                int a = processAlpha ? pixel >>> 24 : 255;
+                if (alpha != 255) {
+                    a = a * alpha / 255;
+                }
+                if (a == 255) {
+                    rgb[dst] = 0xff000000 | pixel;
+                } else if (a != 0) {
+                    rgb[dst] = blend(rgb[dst], pixel, a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Source over compositing of the RGB value src at the given alpha on top
+     * of the ARGB pixel dst
+     */
+    static int blend(int dst, int src, int a) {
+        int dstA = dst >>> 24;
+        int sr = (src >> 16) & 0xff;
+        int sg = (src >> 8) & 0xff;
+        int sb = src & 0xff;
+        int dr = (dst >> 16) & 0xff;
+        int dg = (dst >> 8) & 0xff;
+        int db = dst & 0xff;
+        if (dstA == 255) {
+            int inv = 255 - a;
+            return 0xff000000
+                    | ((sr * a + dr * inv) / 255) << 16
+                    | ((sg * a + dg * inv) / 255) << 8
+                    | ((sb * a + db * inv) / 255);
+        }
+        int dstWeight = dstA * (255 - a) / 255;
+        int outA = a + dstWeight;
+        if (outA == 0) {
+            return 0;
+        }
+        return outA << 24
+                | ((sr * a + dr * dstWeight) / outA) << 16
+                | ((sg * a + dg * dstWeight) / outA) << 8
+                | ((sb * a + db * dstWeight) / outA);
+    }
+}
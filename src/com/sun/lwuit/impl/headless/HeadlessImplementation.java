@@ -0,0 +1,889 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Font;
+import com.sun.lwuit.geom.Rectangle;
+import com.sun.lwuit.impl.LWUITImplementation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An implementation that needs no device: the screen is an ARGB int array
+ * that every primitive (text, clipping, images, drawRGB, arcs and, through
+ * them, gradients) draws into in plain Java. It makes the LWUIT render paths
+ * usable on a desktop JVM for frame timing, profiling and comparing
+ * screenshots pixel by pixel.
+ *
+ * <p>Text uses a built in bitmap font so it renders identically everywhere.
+ * Compressed images are decoded by an {@link ImageDecoder}; on a desktop JVM
+ * the ImageIO based decoder is picked up automatically when its class is on
+ * the classpath. Key and pointer events are injected with
+ * {@link #pressKey(int)}, {@link #pressPointer(int, int)} and friends; soft
+ * keys and game keys use the common MIDP key codes (-6/-7 soft keys, -1 to
+ * -5 for up, down, left, right and fire).
+ *
+ * <p>Install it with {@link HeadlessImplementationFactory#init(int, int)}.
+ */
+public class HeadlessImplementation extends LWUITImplementation {
+    /**
+     * Optional decoder using javax.imageio, it can't be referenced directly
+     * since the MIDP build has no such API
+     */
+    private static final String IMAGEIO_DECODER = "com.sun.lwuit.impl.headless.ImageIODecoder";
+
+    private static final int[] LEFT_SK = {-6};
+    private static final int[] RIGHT_SK = {-7};
+    private static final int BACK_SK = -11;
+    private static final int CLEAR_SK = -8;
+
+    /**
+     * Key codes of up, left, right, down and fire matching the order of
+     * GAME_ACTIONS
+     */
+    private static final int[] GAME_KEYS = {-1, -3, -4, -2, -5};
+    private static final int[] GAME_ACTIONS = {Display.GAME_UP, Display.GAME_LEFT,
+        Display.GAME_RIGHT, Display.GAME_DOWN, Display.GAME_FIRE};
+
+    private final ImageBuffer screen;
+    private final BitmapFont defaultFont;
+    private final BufferGraphics screenGraphics;
+    private ImageDecoder decoder;
+    private boolean decoderLookedUp;
+    private boolean touchDevice = true;
+    private int flushCount;
+    private final Rectangle lastFlush = new Rectangle();
+
+    /**
+     * Creates an implementation with a screen of the given size
+     *
+     * @param width width of the screen in pixels
+     * @param height height of the screen in pixels
+     */
+    public HeadlessImplementation(int width, int height) {
+        screen = new ImageBuffer(width, height);
+        defaultFont = new BitmapFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_MEDIUM);
+        screenGraphics = new BufferGraphics(screen, defaultFont);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void init(Object m) {
+        // nothing else competes for the CPU during transitions
+        Display.getInstance().setTransitionYield(-1);
+    }
+
+    /**
+     * Returns the pixels of the screen, row major 0xAARRGGBB values of
+     * getDisplayWidth() * getDisplayHeight() pixels. This is the live buffer
+     * the EDT paints into, read it from the EDT or once painting has settled.
+     *
+     * @return the framebuffer
+     */
+    public int[] getFramebuffer() {
+        return screen.rgb;
+    }
+
+    /**
+     * Returns the number of times the painted screen was flushed
+     *
+     * @return the number of frames completed so far
+     */
+    public synchronized int getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Returns the area of the screen updated by the last flush
+     *
+     * @return a copy of the last flushed region
+     */
+    public synchronized Rectangle getLastFlushRegion() {
+        return new Rectangle(lastFlush.getX(), lastFlush.getY(), lastFlush.getSize());
+    }
+
+    /**
+     * Blocks until the flush count exceeds the given value or the timeout
+     * elapses
+     *
+     * @param count a value previously returned by getFlushCount()
+     * @param timeout maximum time to wait in milliseconds
+     * @return true if a flush happened
+     */
+    public synchronized boolean waitForFlush(int count, long timeout) {
+        long end = System.currentTimeMillis() + timeout;
+        while (flushCount <= count) {
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Installs the decoder used for compressed images
+     *
+     * @param decoder the decoder or null to disable image decoding
+     */
+    public void setImageDecoder(ImageDecoder decoder) {
+        this.decoder = decoder;
+        decoderLookedUp = true;
+    }
+
+    /**
+     * Indicates whether LWUIT should treat the screen as a touch screen,
+     * true by default
+     *
+     * @param touchDevice true for a touch screen
+     */
+    public void setTouchDevice(boolean touchDevice) {
+        this.touchDevice = touchDevice;
+    }
+
+    /**
+     * Injects a key press as if it came from the device
+     *
+     * @param keyCode the key code
+     */
+    public void pressKey(int keyCode) {
+        keyPressed(keyCode);
+    }
+
+    /**
+     * Injects a key release as if it came from the device
+     *
+     * @param keyCode the key code
+     */
+    public void releaseKey(int keyCode) {
+        keyReleased(keyCode);
+    }
+
+    /**
+     * Injects a pointer press as if it came from the device
+     *
+     * @param x x coordinate on the screen
+     * @param y y coordinate on the screen
+     */
+    public void pressPointer(int x, int y) {
+        pointerPressed(x, y);
+    }
+
+    /**
+     * Injects a pointer drag as if it came from the device
+     *
+     * @param x x coordinate on the screen
+     * @param y y coordinate on the screen
+     */
+    public void dragPointer(int x, int y) {
+        pointerDragged(x, y);
+    }
+
+    /**
+     * Injects a pointer release as if it came from the device
+     *
+     * @param x x coordinate on the screen
+     * @param y y coordinate on the screen
+     */
+    public void releasePointer(int x, int y) {
+        pointerReleased(x, y);
+    }
+
+    /**
+     * Changes the screen size as a rotation of the device would, the
+     * framebuffer is replaced by a cleared one
+     *
+     * @param width new width in pixels
+     * @param height new height in pixels
+     */
+    public void resize(int width, int height) {
+        synchronized (getDisplayLock()) {
+            screen.resize(width, height);
+            screenGraphics.resetClip();
+        }
+        sizeChanged(width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getDisplayWidth() {
+        return screen.width;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getDisplayHeight() {
+        return screen.height;
+    }
+
+    /**
+     * There is no native editor, editing completes at once leaving the
+     * text unchanged.
+     *
+     * @inheritDoc
+     */
+    public void editString(Component cmp, int maxSize, int constraint, String text) {
+        Display.getInstance().onEditingComplete(cmp, text);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int numColors() {
+        return 16777216;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public synchronized void flushGraphics(int x, int y, int width, int height) {
+        flushCount++;
+        lastFlush.setX(x);
+        lastFlush.setY(y);
+        lastFlush.getSize().setWidth(width);
+        lastFlush.getSize().setHeight(height);
+        notifyAll();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void flushGraphics() {
+        flushGraphics(0, 0, screen.width, screen.height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void getRGB(Object nativeImage, int[] arr, int offset, int x, int y, int width, int height) {
+        ImageBuffer image = (ImageBuffer) nativeImage;
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(image.rgb, (y + row) * image.width + x, arr, offset + row * width, width);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(int[] rgb, int width, int height) {
+        int[] copy = new int[width * height];
+        System.arraycopy(rgb, 0, copy, 0, copy.length);
+        return new ImageBuffer(copy, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(String path) throws IOException {
+        InputStream i = getResourceAsStream(getClass(), path);
+        if (i == null) {
+            throw new IOException("Resource not found: " + path);
+        }
+        try {
+            return createImage(i);
+        } finally {
+            i.close();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createImage(InputStream i) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int size = i.read(buffer);
+        while (size > -1) {
+            out.write(buffer, 0, size);
+            size = i.read(buffer);
+        }
+        byte[] data = out.toByteArray();
+        Object image = createImage(data, 0, data.length);
+        if (image == null) {
+            throw new IOException("Can't decode image");
+        }
+        return image;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createMutableImage(int width, int height, int fillColor) {
+        ImageBuffer image = new ImageBuffer(width, height);
+        int[] rgb = image.rgb;
+        for (int iter = 0; iter < rgb.length; iter++) {
+            rgb[iter] = fillColor;
+        }
+        return image;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public boolean isAlphaMutableImageSupported() {
+        return true;
+    }
+
+    /**
+     * Decodes the image through the installed {@link ImageDecoder}, returns
+     * null if there is none or it can't decode the data.
+     *
+     * @inheritDoc
+     */
+    public Object createImage(byte[] bytes, int offset, int len) {
+        ImageDecoder d = getImageDecoder();
+        if (d == null) {
+            System.out.println("No image decoder installed, can't create image");
+            return null;
+        }
+        int[] size = new int[2];
+        int[] rgb = d.decode(bytes, offset, len, size);
+        if (rgb == null) {
+            return null;
+        }
+        return new ImageBuffer(rgb, size[0], size[1]);
+    }
+
+    private ImageDecoder getImageDecoder() {
+        if (!decoderLookedUp) {
+            decoderLookedUp = true;
+            try {
+                decoder = (ImageDecoder) Class.forName(IMAGEIO_DECODER).newInstance();
+            } catch (Throwable t) {
+                // not on a desktop JVM
+                decoder = null;
+            }
+        }
+        return decoder;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getImageWidth(Object i) {
+        return ((ImageBuffer) i).width;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getImageHeight(Object i) {
+        return ((ImageBuffer) i).height;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object scale(Object nativeImage, int width, int height) {
+        ImageBuffer image = (ImageBuffer) nativeImage;
+        if (image.width == width && image.height == height) {
+            return image;
+        }
+        int[] dest = new int[width * height];
+        int xRatio = (image.width << 16) / width;
+        int yRatio = (image.height << 16) / height;
+        int yPos = yRatio / 2;
+        for (int y = 0; y < height; y++) {
+            int srcRow = (yPos >> 16) * image.width;
+            int xPos = xRatio / 2;
+            for (int x = 0; x < width; x++) {
+                dest[y * width + x] = image.rgb[srcRow + (xPos >> 16)];
+                xPos += xRatio;
+            }
+            yPos += yRatio;
+        }
+        return new ImageBuffer(dest, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSoftkeyCount() {
+        return 2;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int[] getSoftkeyCode(int index) {
+        if (index == 0) {
+            return LEFT_SK;
+        }
+        if (index == 1) {
+            return RIGHT_SK;
+        }
+        return null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClearKeyCode() {
+        return CLEAR_SK;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getBackspaceKeyCode() {
+        return CLEAR_SK;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getBackKeyCode() {
+        return BACK_SK;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getGameAction(int keyCode) {
+        for (int iter = 0; iter < GAME_KEYS.length; iter++) {
+            if (GAME_KEYS[iter] == keyCode) {
+                return GAME_ACTIONS[iter];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getKeyCode(int gameAction) {
+        for (int iter = 0; iter < GAME_ACTIONS.length; iter++) {
+            if (GAME_ACTIONS[iter] == gameAction) {
+                return GAME_KEYS[iter];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public boolean isTouchDevice() {
+        return touchDevice;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getColor(Object graphics) {
+        return ((BufferGraphics) graphics).getColor();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setColor(Object graphics, int RGB) {
+        ((BufferGraphics) graphics).setColor(RGB);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setAlpha(Object graphics, int alpha) {
+        ((BufferGraphics) graphics).setAlpha(alpha);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getAlpha(Object graphics) {
+        return ((BufferGraphics) graphics).getAlpha();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public boolean isAlphaGlobal() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setNativeFont(Object graphics, Object font) {
+        ((BufferGraphics) graphics).setFont(font(font));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipX(Object graphics) {
+        return ((BufferGraphics) graphics).getClipX();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipY(Object graphics) {
+        return ((BufferGraphics) graphics).getClipY();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipWidth(Object graphics) {
+        return ((BufferGraphics) graphics).getClipWidth();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getClipHeight(Object graphics) {
+        return ((BufferGraphics) graphics).getClipHeight();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void setClip(Object graphics, int x, int y, int width, int height) {
+        ((BufferGraphics) graphics).setClip(x, y, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void clipRect(Object graphics, int x, int y, int width, int height) {
+        ((BufferGraphics) graphics).clipRect(x, y, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawLine(Object graphics, int x1, int y1, int x2, int y2) {
+        BufferGraphics g = (BufferGraphics) graphics;
+        if (y1 == y2) {
+            g.fillSpanBlock(Math.min(x1, x2), y1, Math.abs(x2 - x1) + 1, 1);
+            return;
+        }
+        if (x1 == x2) {
+            g.fillSpanBlock(x1, Math.min(y1, y2), 1, Math.abs(y2 - y1) + 1);
+            return;
+        }
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int err = dx + dy;
+        while (true) {
+            g.plot(x1, y1);
+            if (x1 == x2 && y1 == y2) {
+                return;
+            }
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x1 += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y1 += sy;
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void fillRect(Object graphics, int x, int y, int width, int height) {
+        ((BufferGraphics) graphics).fillSpanBlock(x, y, width, height);
+    }
+
+    /**
+     * Outlines the rectangle covering width + 1 by height + 1 pixels like
+     * MIDP does.
+     *
+     * @inheritDoc
+     */
+    public void drawRect(Object graphics, int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            return;
+        }
+        BufferGraphics g = (BufferGraphics) graphics;
+        if (width == 0 || height == 0) {
+            g.fillSpanBlock(x, y, width + 1, height + 1);
+            return;
+        }
+        g.fillSpanBlock(x, y, width + 1, 1);
+        g.fillSpanBlock(x, y + height, width + 1, 1);
+        g.fillSpanBlock(x, y + 1, 1, height - 1);
+        g.fillSpanBlock(x + width, y + 1, 1, height - 1);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawRoundRect(Object graphics, int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        if (width < 0 || height < 0) {
+            return;
+        }
+        arcWidth = Math.min(Math.abs(arcWidth), width);
+        arcHeight = Math.min(Math.abs(arcHeight), height);
+        BufferGraphics g = (BufferGraphics) graphics;
+        int halfW = arcWidth / 2;
+        int halfH = arcHeight / 2;
+        g.fillSpanBlock(x + halfW, y, width - 2 * halfW + 1, 1);
+        g.fillSpanBlock(x + halfW, y + height, width - 2 * halfW + 1, 1);
+        g.fillSpanBlock(x, y + halfH, 1, height - 2 * halfH + 1);
+        g.fillSpanBlock(x + width, y + halfH, 1, height - 2 * halfH + 1);
+        if (arcWidth > 0 && arcHeight > 0) {
+            arc(g, x, y, arcWidth, arcHeight, 90, 90, false);
+            arc(g, x + width - arcWidth, y, arcWidth, arcHeight, 0, 90, false);
+            arc(g, x, y + height - arcHeight, arcWidth, arcHeight, 180, 90, false);
+            arc(g, x + width - arcWidth, y + height - arcHeight, arcWidth, arcHeight, 270, 90, false);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void fillRoundRect(Object graphics, int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        BufferGraphics g = (BufferGraphics) graphics;
+        double rx = Math.min(Math.abs(arcWidth), width) / 2.0;
+        double ry = Math.min(Math.abs(arcHeight), height) / 2.0;
+        for (int row = 0; row < height; row++) {
+            // one span per row, so translucent fills don't overlap themselves
+            double center = row + 0.5;
+            double dy = 0;
+            if (center < ry) {
+                dy = (ry - center) / ry;
+            } else if (center > height - ry) {
+                dy = (center - (height - ry)) / ry;
+            }
+            int inset = 0;
+            if (dy > 0) {
+                inset = (int) (rx * (1 - Math.sqrt(1 - dy * dy)) + 0.5);
+            }
+            g.fillSpanBlock(x + inset, y + row, width - 2 * inset, 1);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void fillArc(Object graphics, int x, int y, int width, int height, int startAngle, int arcAngle) {
+        arc((BufferGraphics) graphics, x, y, width, height, startAngle, arcAngle, true);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawArc(Object graphics, int x, int y, int width, int height, int startAngle, int arcAngle) {
+        arc((BufferGraphics) graphics, x, y, width, height, startAngle, arcAngle, false);
+    }
+
+    /**
+     * Draws or fills an arc with the MIDP semantics: angles are in degrees
+     * counter clockwise from three o'clock, relative to the bounding box so
+     * 45 degrees always points at its top right corner. A filled arc covers
+     * width by height pixels, an outline width + 1 by height + 1.
+     */
+    private static void arc(BufferGraphics g, int x, int y, int width, int height, int startAngle, int arcAngle, boolean fill) {
+        if (width < 0 || height < 0 || arcAngle == 0) {
+            return;
+        }
+        if (arcAngle < 0) {
+            startAngle += arcAngle;
+            arcAngle = -arcAngle;
+        }
+        boolean full = arcAngle >= 360;
+        double sx = Math.cos(Math.toRadians(startAngle));
+        double sy = Math.sin(Math.toRadians(startAngle));
+        double ex = Math.cos(Math.toRadians(startAngle + arcAngle));
+        double ey = Math.sin(Math.toRadians(startAngle + arcAngle));
+
+        int boxWidth = fill ? width : width + 1;
+        int boxHeight = fill ? height : height + 1;
+        double rx = boxWidth / 2.0;
+        double ry = boxHeight / 2.0;
+        // outlines are a one pixel band inside the ellipse
+        double innerX = rx - 1;
+        double innerY = ry - 1;
+        int left = Math.max(x, g.getClipLeft());
+        int top = Math.max(y, g.getClipTop());
+        int right = Math.min(x + boxWidth, g.getClipRight());
+        int bottom = Math.min(y + boxHeight, g.getClipBottom());
+        for (int py = top; py < bottom; py++) {
+            double dy = py + 0.5 - y - ry;
+            for (int px = left; px < right; px++) {
+                double dx = px + 0.5 - x - rx;
+                double nx = dx / rx;
+                double ny = dy / ry;
+                if (nx * nx + ny * ny > 1) {
+                    continue;
+                }
+                if (!fill && innerX > 0 && innerY > 0) {
+                    double ix = dx / innerX;
+                    double iy = dy / innerY;
+                    if (ix * ix + iy * iy <= 1) {
+                        continue;
+                    }
+                }
+                if (!full && !inSweep(nx, -ny, sx, sy, ex, ey, arcAngle)) {
+                    continue;
+                }
+                g.plot(px, py);
+            }
+        }
+    }
+
+    /**
+     * Whether the direction (ux, uy) lies between the start and end
+     * directions going counter clockwise, without trigonometry per pixel
+     */
+    private static boolean inSweep(double ux, double uy, double sx, double sy, double ex, double ey, int arcAngle) {
+        double fromStart = sx * uy - sy * ux;
+        double toEnd = ux * ey - uy * ex;
+        if (arcAngle <= 180) {
+            return fromStart >= 0 && toEnd >= 0;
+        }
+        return fromStart >= 0 || toEnd >= 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawString(Object graphics, String str, int x, int y) {
+        BufferGraphics g = (BufferGraphics) graphics;
+        g.getFont().drawString(g, str, x, y);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawImage(Object graphics, Object img, int x, int y) {
+        ImageBuffer image = (ImageBuffer) img;
+        ((BufferGraphics) graphics).drawPixels(image.rgb, 0, image.width, x, y, image.width, image.height, true);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawRGB(Object graphics, int[] rgbData, int offset, int x, int y, int w, int h, boolean processAlpha) {
+        ((BufferGraphics) graphics).drawPixels(rgbData, offset, w, x, y, w, h, processAlpha);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getNativeGraphics() {
+        return screenGraphics;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getNativeGraphics(Object image) {
+        return new BufferGraphics((ImageBuffer) image, defaultFont);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int charsWidth(Object nativeFont, char[] ch, int offset, int length) {
+        return font(nativeFont).charsWidth(ch, offset, length);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int stringWidth(Object nativeFont, String str) {
+        return font(nativeFont).stringWidth(str);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int charWidth(Object nativeFont, char ch) {
+        return font(nativeFont).charWidth(ch);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getHeight(Object nativeFont) {
+        return font(nativeFont).getHeight();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object getDefaultFont() {
+        return defaultFont;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getFace(Object nativeFont) {
+        return font(nativeFont).getFace();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getSize(Object nativeFont) {
+        return font(nativeFont).getSize();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getStyle(Object nativeFont) {
+        return font(nativeFont).getStyle();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object createFont(int face, int style, int size) {
+        return new BitmapFont(face, style, size);
+    }
+
+    private BitmapFont font(Object nativeFont) {
+        if (nativeFont == null) {
+            return defaultFont;
+        }
+        return (BitmapFont) nativeFont;
+    }
+}
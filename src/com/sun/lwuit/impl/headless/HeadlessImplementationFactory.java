@@ -0,0 +1,82 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl.headless;
+
+import com.sun.lwuit.impl.ImplementationFactory;
+import com.sun.lwuit.impl.LWUITImplementation;
+
+/**
+ * Installs the {@link HeadlessImplementation} in place of the MIDP one, so
+ * LWUIT renders into an in-memory framebuffer on a plain JVM:
+ * <pre>
+ * HeadlessImplementationFactory.init(240, 320);
+ * Display.init(null);
+ * HeadlessImplementation screen = HeadlessImplementationFactory.getImplementation();
+ * </pre>
+ */
+public class HeadlessImplementationFactory extends ImplementationFactory {
+    private final int width;
+    private final int height;
+    private HeadlessImplementation implementation;
+
+    private HeadlessImplementationFactory(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Installs the headless implementation with a screen of the given size,
+     * this method must be invoked <strong>before</strong> the first call to
+     * Display.init().
+     *
+     * @param width width of the screen in pixels
+     * @param height height of the screen in pixels
+     */
+    public static void init(int width, int height) {
+        ImplementationFactory.setInstance(new HeadlessImplementationFactory(width, height));
+    }
+
+    /**
+     * Returns the implementation created by Display.init(), allowing access to
+     * the framebuffer and event injection
+     *
+     * @return the headless implementation or null if it wasn't created yet
+     */
+    public static HeadlessImplementation getImplementation() {
+        ImplementationFactory factory = ImplementationFactory.getInstance();
+        if (factory instanceof HeadlessImplementationFactory) {
+            return ((HeadlessImplementationFactory) factory).implementation;
+        }
+        return null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public LWUITImplementation createImplementation() {
+        implementation = new HeadlessImplementation(width, height);
+        return implementation;
+    }
+}
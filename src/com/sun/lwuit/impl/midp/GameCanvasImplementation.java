@@ -578,6 +578,20 @@ public class GameCanvasImplementation extends LWUITImplementation {
         ((C) canvas).flushGraphics();
     }
 
+    /**
+     * When the flush graphics bug is active every flush covers the whole screen
+     * so painted regions are flushed together
+     *
+     * @inheritDoc
+     */
+    protected int getMaxFlushRegions() {
+        Form current = getCurrentForm();
+        if (flushGraphicsBug && (current == null || !current.hasMedia())) {
+            return 1;
+        }
+        return super.getMaxFlushRegions();
+    }
+
     /**
      * @inheritDoc
      */
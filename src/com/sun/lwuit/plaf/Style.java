@@ -195,8 +195,8 @@ public class Style {
     private int bgColor = 0xFFFFFF;
     private Font font = Font.getDefaultFont();
     private Image bgImage;
-    private int[] padding = new int[4];
-    private int[] margin = new int[4];
+    private int[] padding;
+    private int[] margin;
     private byte transparency = (byte) 0xFF; //no transparency
     private Painter bgPainter;
 
@@ -206,6 +206,12 @@ public class Style {
 
     private Border border = null;
 
+    /**
+     * True while the padding, margin and gradient arrays may be shared with
+     * another style, they are copied before the first write
+     */
+    private boolean copyOnWrite;
+
     /**
      * The modified flag indicates which portions of the style have changed using
      * bitmask values
@@ -268,6 +274,8 @@ public class Style {
      * The Default values for each Component can be changed by using the UIManager class
      */
     public Style() {
+        padding = new int[4];
+        margin = new int[4];
         setPadding(3, 3, 3, 3);
         setMargin(2, 2, 2, 2);
         modifiedFlag = 0;
@@ -277,28 +285,25 @@ public class Style {
      * Creates a full copy of the given style. Notice that if the original style was modified 
      * manually (by invoking setters on it) it would not chnage when changing a theme/look and feel,
      * however this newly created style would change in such a case.
+     * <p>The copy is cheap, the padding, margin and gradient values are shared
+     * by both styles until either of them changes.
      * 
      * @param style the style to copy
      */
     public Style(Style style) {
-        this(style.getFgColor(), style.getBgColor(), 0, 0, style.getFont(), style.getBgTransparency(),
-                style.getBgImage(), true);
-        setPadding(style.padding[Component.TOP],
-                style.padding[Component.BOTTOM],
-                style.padding[Component.LEFT],
-                style.padding[Component.RIGHT]);
-        setMargin(style.margin[Component.TOP],
-                style.margin[Component.BOTTOM],
-                style.margin[Component.LEFT],
-                style.margin[Component.RIGHT]);
-        setBorder(style.getBorder());
-        modifiedFlag = 0;
+        fgColor = style.fgColor;
+        bgColor = style.bgColor;
+        font = style.font;
+        transparency = style.transparency;
+        bgImage = style.bgImage;
+        border = style.border;
         backgroundType = style.backgroundType;
         backgroundAlignment = style.backgroundAlignment;
-        if(style.backgroundGradient != null) {
-            backgroundGradient = new Object[style.backgroundGradient.length];
-            System.arraycopy(style.backgroundGradient, 0, backgroundGradient, 0, backgroundGradient.length);
-        }
+        padding = style.padding;
+        margin = style.margin;
+        backgroundGradient = style.backgroundGradient;
+        copyOnWrite = true;
+        style.copyOnWrite = true;
     }
 
     /**
@@ -722,6 +727,7 @@ public class Style {
                 padding[Component.BOTTOM] != bottom ||
                 padding[Component.LEFT] != left ||
                 padding[Component.RIGHT] != right) {
+            ownArrays();
             padding[Component.TOP] = top;
             padding[Component.BOTTOM] = bottom;
             padding[Component.LEFT] = left;
@@ -758,6 +764,7 @@ public class Style {
                 margin[Component.BOTTOM] != bottom ||
                 margin[Component.LEFT] != left ||
                 margin[Component.RIGHT] != right) {
+            ownArrays();
             margin[Component.TOP] = top;
             margin[Component.BOTTOM] = bottom;
             margin[Component.LEFT] = left;
@@ -940,10 +947,40 @@ public class Style {
     }
 
     /**
-     * Internal use background gradient setter
+     * Returns the background gradient array after making sure it isn't shared
+     * with another style
+     */
+    private Object[] writableBackgroundGradient() {
+        ownArrays();
+        return getBackgroundGradient();
+    }
+
+    /**
+     * Internal use background gradient setter, the array is treated as shared
      */
     void setBackgroundGradient(Object[] backgroundGradient) {
         this.backgroundGradient = backgroundGradient;
+        copyOnWrite = true;
+    }
+
+    /**
+     * Gives this style its own copy of the arrays it shares with other styles
+     */
+    private void ownArrays() {
+        if (copyOnWrite) {
+            copyOnWrite = false;
+            int[] arr = new int[4];
+            System.arraycopy(padding, 0, arr, 0, 4);
+            padding = arr;
+            arr = new int[4];
+            System.arraycopy(margin, 0, arr, 0, 4);
+            margin = arr;
+            if (backgroundGradient != null) {
+                Object[] gradient = new Object[backgroundGradient.length];
+                System.arraycopy(backgroundGradient, 0, gradient, 0, gradient.length);
+                backgroundGradient = gradient;
+            }
+        }
     }
 
     /**
@@ -955,7 +992,7 @@ public class Style {
      */
     public void setBackgroundGradientStartColor(int backgroundGradientStartColor, boolean override) {
         if (((Integer) getBackgroundGradient()[0]).intValue() != backgroundGradientStartColor) {
-            getBackgroundGradient()[0] = new Integer(backgroundGradientStartColor);
+            writableBackgroundGradient()[0] = new Integer(backgroundGradientStartColor);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -972,7 +1009,7 @@ public class Style {
      */
     public void setBackgroundGradientEndColor(int backgroundGradientEndColor, boolean override) {
         if (((Integer) getBackgroundGradient()[1]).intValue() != backgroundGradientEndColor) {
-            getBackgroundGradient()[1] = new Integer(backgroundGradientEndColor);
+            writableBackgroundGradient()[1] = new Integer(backgroundGradientEndColor);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -990,7 +1027,7 @@ public class Style {
      */
     public void setBackgroundGradientRelativeX(float backgroundGradientRelativeX, boolean override) {
         if (((Float) getBackgroundGradient()[2]).floatValue() != backgroundGradientRelativeX) {
-            getBackgroundGradient()[2] = new Float(backgroundGradientRelativeX);
+            writableBackgroundGradient()[2] = new Float(backgroundGradientRelativeX);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1007,7 +1044,7 @@ public class Style {
      */
     public void setBackgroundGradientRelativeY(float backgroundGradientRelativeY, boolean override) {
         if (((Float) getBackgroundGradient()[3]).floatValue() != backgroundGradientRelativeY) {
-            getBackgroundGradient()[3] = new Float(backgroundGradientRelativeY);
+            writableBackgroundGradient()[3] = new Float(backgroundGradientRelativeY);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1025,7 +1062,7 @@ public class Style {
      */
     public void setBackgroundGradientRelativeSize(float backgroundGradientRelativeSize, boolean override) {
         if (((Float) getBackgroundGradient()[4]).floatValue() != backgroundGradientRelativeSize) {
-            getBackgroundGradient()[4] = new Float(backgroundGradientRelativeSize);
+            writableBackgroundGradient()[4] = new Float(backgroundGradientRelativeSize);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1108,6 +1145,7 @@ public class Style {
             throw new IllegalArgumentException("padding cannot be negative");
         }
         if (padding[orientation] != gap) {
+            ownArrays();
             padding[orientation] = gap;
 
             if (!override) {
@@ -1134,6 +1172,7 @@ public class Style {
             throw new IllegalArgumentException("margin cannot be negative");
         }
         if (margin[orientation] != gap) {
+            ownArrays();
             margin[orientation] = gap;
             if (!override) {
                 modifiedFlag |= MARGIN_MODIFIED;
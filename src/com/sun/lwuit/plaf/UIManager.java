@@ -44,8 +44,38 @@ public class UIManager {
     
     private Hashtable styles = new Hashtable();
     private Hashtable selectedStyles = new Hashtable();
+    private Hashtable customStyles = new Hashtable();
     
     private Hashtable themeProps;
+
+    /**
+     * The theme properties grouped by style, built once by buildTheme. Maps the
+     * id followed by "." and the optional "sel#" or custom prefix (the empty
+     * string for the default style) to an array indexed by the ATTR constants
+     * with the colors, transparency, margin and padding already parsed.
+     */
+    private Hashtable compiledTheme = new Hashtable();
+
+    private static final int ATTR_BG_COLOR = 0;
+    private static final int ATTR_FG_COLOR = 1;
+    private static final int ATTR_BORDER = 2;
+    private static final int ATTR_BG_IMAGE = 3;
+    private static final int ATTR_TRANSPARENCY = 4;
+    private static final int ATTR_MARGIN = 5;
+    private static final int ATTR_PADDING = 6;
+    private static final int ATTR_FONT = 7;
+    private static final int ATTR_BACKGROUND_TYPE = 8;
+    private static final int ATTR_BACKGROUND_ALIGNMENT = 9;
+    private static final int ATTR_BACKGROUND_GRADIENT = 10;
+
+    /**
+     * The style attribute names in the order of the ATTR constants
+     */
+    private static final String[] ATTRIBUTES = {
+        Style.BG_COLOR, Style.FG_COLOR, Style.BORDER, Style.BG_IMAGE, Style.TRANSPARENCY,
+        Style.MARGIN, Style.PADDING, Style.FONT, Style.BACKGROUND_TYPE,
+        Style.BACKGROUND_ALIGNMENT, Style.BACKGROUND_GRADIENT
+    };
     
     private static UIManager instance = new UIManager();
     
@@ -79,6 +109,7 @@ public class UIManager {
     
     private UIManager(){
         resetThemeProps();
+        compileTheme();
     }
     
     /**
@@ -147,7 +178,8 @@ public class UIManager {
      * Returns the style of the component with the given id or a <b>new instance</b> of the default
      * style.
      * This method will always return a new style instance to prevent modification of the global
-     * style object.
+     * style object. The instance shares its values with the theme until it is modified so this
+     * is cheap even for many components of the same id.
      * 
      * @param id the component id whose style we want
      * @return the appropriate style (this method never returns null)
@@ -209,7 +241,13 @@ public class UIManager {
                     styles.put(id, style);
                 }
             } else {
-                return createStyle(id, prefix, false);
+                String key = id + prefix;
+                style = (Style)customStyles.get(key);
+
+                if(style == null) {
+                    style = createStyle(id, prefix, false);
+                    customStyles.put(key, style);
+                }
             }
         }
 
@@ -366,6 +404,7 @@ public class UIManager {
         resetThemeProps();
         styles.clear();
         selectedStyles.clear();
+        customStyles.clear();
         imageCache.clear();
         if(themelisteners != null){
             themelisteners.fireActionEvent(new ActionEvent(themeProps));
@@ -380,6 +419,7 @@ public class UIManager {
             Object key = e.nextElement();
             this.themeProps.put(key, themeProps.get(key));
         }
+        compileTheme();
         
         // necessary to clear up the style so we don't get resedue from the previous UI
         defaultStyle = new Style();
@@ -390,6 +430,68 @@ public class UIManager {
         defaultSelectedStyle = createStyle("", "sel#", true);    
     }
 
+    /**
+     * Groups the theme properties by style and parses their values so creating
+     * a style is a single lookup
+     */
+    private void compileTheme() {
+        compiledTheme.clear();
+        Enumeration e = themeProps.keys();
+        while(e.hasMoreElements()) {
+            Object k = e.nextElement();
+            if(!(k instanceof String)) {
+                continue;
+            }
+            String key = (String)k;
+            int split = Math.max(key.lastIndexOf('.'), key.lastIndexOf('#')) + 1;
+            int attribute = attributeIndex(key, split);
+            if(attribute < 0) {
+                continue;
+            }
+            Object value = themeProps.get(key);
+            try {
+                switch(attribute) {
+                    case ATTR_BG_COLOR:
+                    case ATTR_FG_COLOR:
+                        value = Integer.valueOf((String)value, 16);
+                        break;
+                    case ATTR_TRANSPARENCY:
+                        value = Integer.valueOf((String)value);
+                        break;
+                    case ATTR_MARGIN:
+                    case ATTR_PADDING:
+                        value = toIntArray(((String)value).trim());
+                        break;
+                }
+            } catch(RuntimeException err) {
+                System.out.println("failed to parse theme value for " + key + ": " + err);
+                continue;
+            }
+            String styleKey = key.substring(0, split);
+            Object[] entry = (Object[])compiledTheme.get(styleKey);
+            if(entry == null) {
+                entry = new Object[ATTRIBUTES.length];
+                compiledTheme.put(styleKey, entry);
+            }
+            entry[attribute] = value;
+        }
+    }
+
+    /**
+     * Returns the ATTR constant of the attribute name starting at the given
+     * offset of the key or -1 if it isn't a style attribute
+     */
+    private static int attributeIndex(String key, int offset) {
+        int length = key.length() - offset;
+        for(int iter = 0 ; iter < ATTRIBUTES.length ; iter++) {
+            String attribute = ATTRIBUTES[iter];
+            if(attribute.length() == length && key.startsWith(attribute, offset)) {
+                return iter;
+            }
+        }
+        return -1;
+    }
+
     private Style createStyle(String id, String prefix, boolean selected) {
         Style style;
         String originalId = id;
@@ -402,45 +504,53 @@ public class UIManager {
             id += prefix;
         }
         if(themeProps != null){
-            String bgColor;
-            String fgColor;
-            Object border;
-            
-            bgColor = (String)themeProps.get(id + Style.BG_COLOR);
-            fgColor = (String)themeProps.get(id + Style.FG_COLOR);
-            border = themeProps.get(id + Style.BORDER);
-            Object bgImage = themeProps.get(id + Style.BG_IMAGE);
-            String transperency = (String)themeProps.get(id + Style.TRANSPARENCY);
-            String margin = (String)themeProps.get(id + Style.MARGIN);
-            String padding = (String)themeProps.get(id + Style.PADDING);
-            Object font = themeProps.get(id + Style.FONT);
+            Object[] entry = (Object[])compiledTheme.get(id);
+            if(entry == null) {
+                // nothing themed for this id, only the selected transparency
+                // falls back to the unselected one
+                if(selected) {
+                    entry = (Object[])compiledTheme.get(originalId);
+                    if(entry != null && entry[ATTR_TRANSPARENCY] != null) {
+                        style.setBgTransparency(((Integer)entry[ATTR_TRANSPARENCY]).intValue());
+                    }
+                }
+                style.setBorder(null);
+                style.resetModifiedFlag();
+                return style;
+            }
+            Integer bgColor = (Integer)entry[ATTR_BG_COLOR];
+            Integer fgColor = (Integer)entry[ATTR_FG_COLOR];
+            Object border = entry[ATTR_BORDER];
+            Object bgImage = entry[ATTR_BG_IMAGE];
+            Integer transperency = (Integer)entry[ATTR_TRANSPARENCY];
+            int[] margin = (int[])entry[ATTR_MARGIN];
+            int[] padding = (int[])entry[ATTR_PADDING];
+            Object font = entry[ATTR_FONT];
             
-            Byte backgroundType = (Byte)themeProps.get(id + Style.BACKGROUND_TYPE);
-            Byte backgroundAlignment = (Byte)themeProps.get(id + Style.BACKGROUND_ALIGNMENT);
-            Object[] backgroundGradient = (Object[])themeProps.get(id + Style.BACKGROUND_GRADIENT);
+            Byte backgroundType = (Byte)entry[ATTR_BACKGROUND_TYPE];
+            Byte backgroundAlignment = (Byte)entry[ATTR_BACKGROUND_ALIGNMENT];
+            Object[] backgroundGradient = (Object[])entry[ATTR_BACKGROUND_GRADIENT];
             if(bgColor != null){
-                style.setBgColor(Integer.valueOf(bgColor, 16).intValue());
+                style.setBgColor(bgColor.intValue());
             }
             if(fgColor != null){
-                style.setFgColor(Integer.valueOf(fgColor, 16).intValue());
+                style.setFgColor(fgColor.intValue());
             }
             if(transperency != null){
-                style.setBgTransparency(Integer.valueOf(transperency).intValue());
+                style.setBgTransparency(transperency.intValue());
             } else {
                 if(selected) {
-                    transperency = (String)themeProps.get(originalId + Style.TRANSPARENCY);
-                    if(transperency != null){
-                        style.setBgTransparency(Integer.valueOf(transperency).intValue());
+                    Object[] unselected = (Object[])compiledTheme.get(originalId);
+                    if(unselected != null && unselected[ATTR_TRANSPARENCY] != null){
+                        style.setBgTransparency(((Integer)unselected[ATTR_TRANSPARENCY]).intValue());
                     }
                 }
             }
             if(margin != null){
-                int [] marginArr = toIntArray(margin.trim());
-                style.setMargin(marginArr[0], marginArr[1], marginArr[2], marginArr[3]);
+                style.setMargin(margin[0], margin[1], margin[2], margin[3]);
             } 
             if(padding != null){
-                int [] paddingArr = toIntArray(padding.trim());
-                style.setPadding(paddingArr[0], paddingArr[1], paddingArr[2], paddingArr[3]);
+                style.setPadding(padding[0], padding[1], padding[2], padding[3]);
             }
             if(backgroundType != null) {
                 style.setBackgroundType(backgroundType.byteValue());
@@ -454,6 +564,7 @@ public class UIManager {
                     System.arraycopy(backgroundGradient, 0, a, 0, backgroundGradient.length);
                     backgroundGradient = a;
                     backgroundGradient[4] = new Float(1);
+                    entry[ATTR_BACKGROUND_GRADIENT] = a;
                 }
                 style.setBackgroundGradient(backgroundGradient);
             }
@@ -473,6 +584,7 @@ public class UIManager {
                             imageCache.put(bgImageStr, im);
                         }
                         themeProps.put(id + Style.BG_IMAGE, im);
+                        entry[ATTR_BG_IMAGE] = im;
                     } catch (IOException ex) {
                         System.out.println("failed to parse image for id = "+id + Style.BG_IMAGE);
                     }
@@ -492,7 +604,9 @@ public class UIManager {
             }
             if(font != null){
                 if(font instanceof String){
-                    style.setFont(parseFont((String)font));
+                    com.sun.lwuit.Font f = parseFont((String)font);
+                    entry[ATTR_FONT] = f;
+                    style.setFont(f);
                 }else{
                     style.setFont((com.sun.lwuit.Font)font);
                 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.table;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.plaf.Style;
+
+/**
+ * The default cell renderer of the virtual table, renders the header using a
+ * label with the "TableHeader" UIID and all other cells using a label with the
+ * "TableCell" UIID just like the cells created by {@link Table}.
+ */
+public class DefaultTableCellRenderer implements TableCellRenderer {
+    private Label header = new CellLabel("TableHeader");
+    private Label cell = new CellLabel("TableCell");
+
+    /**
+     * Creates a renderer with centered column names and left aligned cells
+     */
+    public DefaultTableCellRenderer() {
+        header.setAlignment(Label.CENTER);
+        cell.setAlignment(Label.LEFT);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Component getTableCellRendererComponent(VirtualTable table, Object value, boolean isSelected, int row, int column) {
+        Label l;
+        if(row == -1) {
+            l = header;
+        } else {
+            l = cell;
+        }
+        l.setFocus(isSelected);
+        if(value != null) {
+            l.setText(value.toString());
+        } else {
+            l.setText("");
+        }
+        return l;
+    }
+
+    /**
+     * Refreshes the styles of the renderer components after a theme change
+     */
+    public void refreshTheme() {
+        header.refreshTheme();
+        cell.refreshTheme();
+        initCellStyle(header);
+        initCellStyle(cell);
+    }
+
+    /**
+     * Indicates the alignment of the title see label alignment for details
+     *
+     * @return the title alignment
+     * @see com.sun.lwuit.Label#setAlignment(int)
+     */
+    public int getTitleAlignment() {
+        return header.getAlignment();
+    }
+
+    /**
+     * Indicates the alignment of the title see label alignment for details
+     *
+     * @param titleAlignment the title alignment
+     * @see com.sun.lwuit.Label#setAlignment(int)
+     */
+    public void setTitleAlignment(int titleAlignment) {
+        header.setAlignment(titleAlignment);
+    }
+
+    /**
+     * Indicates the alignment of the cells see label alignment for details
+     *
+     * @return the cell alignment
+     * @see com.sun.lwuit.Label#setAlignment(int)
+     */
+    public int getCellAlignment() {
+        return cell.getAlignment();
+    }
+
+    /**
+     * Indicates the alignment of the cells see label alignment for details
+     *
+     * @param cellAlignment the table cell alignment
+     * @see com.sun.lwuit.Label#setAlignment(int)
+     */
+    public void setCellAlignment(int cellAlignment) {
+        cell.setAlignment(cellAlignment);
+    }
+
+    /**
+     * The table draws the borders and background between the cells, only the
+     * selected cell paints its own background
+     */
+    static void initCellStyle(Component c) {
+        Style s = c.getSelectedStyle();
+        s.setMargin(0, 0, 0, 0);
+        s.setBorder(null);
+        s = c.getUnselectedStyle();
+        s.setMargin(0, 0, 0, 0);
+        s.setBorder(null);
+        s.setBgTransparency(0);
+    }
+
+    /**
+     * A label that doesn't repaint itself since it is only drawn by the table
+     */
+    static class CellLabel extends Label {
+        CellLabel(String uiid) {
+            super("");
+            setUIID(uiid);
+            setCellRenderer(true);
+            setEndsWith3Points(false);
+            initCellStyle(this);
+        }
+
+        /**
+         * Overriden to do nothing and remove a performance issue where renderer changes
+         * perform needless repaint calls
+         */
+        public void repaint() {
+        }
+    }
+}
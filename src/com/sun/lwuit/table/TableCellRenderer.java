@@ -0,0 +1,53 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.table;
+
+import com.sun.lwuit.Component;
+
+/**
+ * A "rubber stamp" for the cells of a {@link VirtualTable} in the same spirit as
+ * the list cell renderer: the component returned is initialized to the value
+ * of the cell, drawn in the cell bounds and then reused for the next cell. No
+ * state of the component is kept between invocations.
+ *
+ * <p>Renderers should return the same few component instances for all cells and
+ * should override repaint() in those components with an empty implementation.
+ *
+ * @see com.sun.lwuit.list.ListCellRenderer
+ */
+public interface TableCellRenderer {
+    /**
+     * Returns a component instance that is already set to render "value".
+     *
+     * @param table the table component
+     * @param value the value to render, this is the column name for the header
+     * row and might be null for empty cells
+     * @param isSelected whether the cell is the selected cell of a focused table
+     * @param row row number, -1 for the header row
+     * @param column column number
+     * @return a component to paint within the cell
+     */
+    public Component getTableCellRendererComponent(VirtualTable table, Object value, boolean isSelected, int row, int column);
+}
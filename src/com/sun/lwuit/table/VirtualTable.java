@@ -0,0 +1,662 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.table;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Container;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Graphics;
+import com.sun.lwuit.events.ActionEvent;
+import com.sun.lwuit.events.ActionListener;
+import com.sun.lwuit.events.DataChangedListener;
+import com.sun.lwuit.geom.Dimension;
+import com.sun.lwuit.geom.Rectangle;
+import com.sun.lwuit.plaf.Border;
+import com.sun.lwuit.plaf.Style;
+import com.sun.lwuit.util.EventDispatcher;
+
+/**
+ * A table that draws its cells using a renderer in the same way a list draws its
+ * entries rather than creating a component for every cell like {@link Table}.
+ * Only the cells within the clip are rendered and a change to a single cell
+ * repaints that cell alone unless it no longer fits within its row or column.
+ *
+ * <p>The table is a single focusable component, the arrow keys move the selected
+ * cell and fire or a click on a cell triggers an action event. Column widths and
+ * row heights fit the widest and tallest cell, they grow as the model changes
+ * but never shrink until the table is measured again. Editing and cell spanning
+ * aren't supported, null values render as empty cells.
+ *
+ * <p>A data change event with a negative row or column (or a change to the
+ * number of rows) remeasures the whole table.
+ */
+public class VirtualTable extends Component {
+    private TableModel model;
+    private TableCellRenderer renderer = new DefaultTableCellRenderer();
+    private Listener listener = new Listener();
+    private EventDispatcher dispatcher = new EventDispatcher();
+    private boolean drawBorder = true;
+    private boolean includeHeader = true;
+    private int selectedRow;
+    private int selectedColumn;
+
+    /**
+     * Edges of the columns relative to the left padding, there is one more entry
+     * than there are columns. Null when the table needs to be measured
+     */
+    private int[] columnPositions;
+
+    /**
+     * Edges of the rows relative to the top padding, the header is the first
+     * row when included
+     */
+    private int[] rowPositions;
+    private int measuredRows;
+    private int measuredColumns;
+
+    /**
+     * Set while the model listener is unbound
+     */
+    private boolean potentiallyDirtyModel;
+
+    /**
+     * Reused for the background painter of every cell
+     */
+    private Rectangle cellBounds = new Rectangle(0, 0, new Dimension());
+    private int pressedRow = -1;
+    private int pressedColumn = -1;
+
+    /**
+     * Create a table with a new model
+     *
+     * @param model the model underlying this table
+     */
+    public VirtualTable(TableModel model) {
+        this(model, true);
+    }
+
+    /**
+     * Create a table with a new model
+     *
+     * @param model the model underlying this table
+     * @param includeHeader Indicates whether the table should render a table header as the first row
+     */
+    public VirtualTable(TableModel model, boolean includeHeader) {
+        setUIID("Table");
+        setFocusable(true);
+        this.model = model;
+        this.includeHeader = includeHeader;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void initComponent() {
+        // the model might have changed while the listener wasn't bound
+        if(potentiallyDirtyModel) {
+            columnPositions = null;
+            rowPositions = null;
+            setShouldCalcPreferredSize(true);
+            potentiallyDirtyModel = false;
+        }
+        model.addDataChangeListener(listener);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void deinitialize() {
+        // we unbind the listener to prevent a memory leak for the use case of keeping
+        // the model while discarding the component
+        potentiallyDirtyModel = true;
+        model.removeDataChangeListener(listener);
+    }
+
+    /**
+     * Replaces the underlying model
+     *
+     * @param model the new model
+     */
+    public void setModel(TableModel model) {
+        if(isInitialized()) {
+            this.model.removeDataChangeListener(listener);
+            model.addDataChangeListener(listener);
+        }
+        this.model = model;
+        selectedRow = 0;
+        selectedColumn = 0;
+        invalidateCells();
+    }
+
+    /**
+     * Returns the model instance
+     *
+     * @return the model instance
+     */
+    public TableModel getModel() {
+        return model;
+    }
+
+    /**
+     * Sets the renderer used to draw the cells of the table
+     *
+     * @param renderer the cell renderer
+     */
+    public void setRenderer(TableCellRenderer renderer) {
+        this.renderer = renderer;
+        invalidateCells();
+    }
+
+    /**
+     * Returns the renderer used to draw the cells of the table
+     *
+     * @return the cell renderer
+     */
+    public TableCellRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Returns the selected row in the table
+     *
+     * @return the offset of the selected row in the table if a selection exists
+     */
+    public int getSelectedRow() {
+        if(selectedRow < model.getRowCount() && selectedColumn < model.getColumnCount()) {
+            return selectedRow;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the selected column in the table
+     *
+     * @return the offset of the selected column in the table if a selection exists
+     */
+    public int getSelectedColumn() {
+        if(selectedRow < model.getRowCount() && selectedColumn < model.getColumnCount()) {
+            return selectedColumn;
+        }
+        return -1;
+    }
+
+    /**
+     * Selects the given cell and scrolls it into view
+     *
+     * @param row the cell row
+     * @param column the cell column
+     */
+    public void setSelectedCell(int row, int column) {
+        if(row < 0 || column < 0 || row >= model.getRowCount() || column >= model.getColumnCount()) {
+            throw new IllegalArgumentException("No cell at " + row + ", " + column);
+        }
+        if(row == selectedRow && column == selectedColumn) {
+            return;
+        }
+        int oldRow = selectedRow;
+        int oldColumn = selectedColumn;
+        selectedRow = row;
+        selectedColumn = column;
+        if(columnPositions != null) {
+            repaintCell(oldRow, oldColumn);
+            repaintCell(row, column);
+            int r = row + getHeaderRows();
+            Style s = getStyle();
+            scrollRectToVisible(s.getPadding(LEFT) + columnPositions[column],
+                    s.getPadding(TOP) + rowPositions[r],
+                    columnPositions[column + 1] - columnPositions[column],
+                    rowPositions[r + 1] - rowPositions[r], this);
+        }
+    }
+
+    /**
+     * Indicates whether the table border should be drawn
+     *
+     * @return the drawBorder
+     */
+    public boolean isDrawBorder() {
+        return drawBorder;
+    }
+
+    /**
+     * Indicates whether the table border should be drawn
+     *
+     * @param drawBorder the drawBorder to set
+     */
+    public void setDrawBorder(boolean drawBorder) {
+        this.drawBorder = drawBorder;
+        repaint();
+    }
+
+    /**
+     * Indicates whether the table should render a table header as the first row
+     *
+     * @return the includeHeader
+     */
+    public boolean isIncludeHeader() {
+        return includeHeader;
+    }
+
+    /**
+     * Indicates whether the table should render a table header as the first row
+     *
+     * @param includeHeader the includeHeader to set
+     */
+    public void setIncludeHeader(boolean includeHeader) {
+        this.includeHeader = includeHeader;
+        invalidateCells();
+    }
+
+    /**
+     * Adds a listener that is invoked when a cell is clicked or fire is pressed
+     * on the selected cell
+     *
+     * @param l the action listener
+     */
+    public void addActionListener(ActionListener l) {
+        dispatcher.addListener(l);
+    }
+
+    /**
+     * Removes an action listener
+     *
+     * @param l the action listener
+     */
+    public void removeActionListener(ActionListener l) {
+        dispatcher.removeListener(l);
+    }
+
+    /**
+     * Fires an action event for the selected cell
+     */
+    protected void fireActionEvent() {
+        dispatcher.fireActionEvent(new ActionEvent(this));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void refreshTheme() {
+        super.refreshTheme();
+        if(renderer instanceof DefaultTableCellRenderer) {
+            ((DefaultTableCellRenderer)renderer).refreshTheme();
+        }
+        invalidateCells();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected Dimension calcPreferredSize() {
+        measure();
+        Style s = getStyle();
+        return new Dimension(columnPositions[measuredColumns] + s.getPadding(LEFT) + s.getPadding(RIGHT),
+                rowPositions[rowPositions.length - 1] + s.getPadding(TOP) + s.getPadding(BOTTOM));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void paint(Graphics g) {
+        measure();
+        int columns = measuredColumns;
+        int rows = rowPositions.length - 1;
+        if(columns == 0 || rows == 0) {
+            return;
+        }
+        Style s = getStyle();
+        int x = getX() + s.getPadding(LEFT);
+        int y = getY() + s.getPadding(TOP);
+        int clipX = g.getClipX();
+        int clipY = g.getClipY();
+        int clipWidth = g.getClipWidth();
+        int clipHeight = g.getClipHeight();
+
+        // only the cells intersecting the clip are rendered
+        int firstColumn = indexAt(columnPositions, columns, clipX - x);
+        int lastColumn = indexAt(columnPositions, columns, clipX + clipWidth - 1 - x);
+        int firstRow = indexAt(rowPositions, rows, clipY - y);
+        int lastRow = indexAt(rowPositions, rows, clipY + clipHeight - 1 - y);
+        int headerRows = getHeaderRows();
+        boolean focused = hasFocus();
+        for(int r = firstRow ; r <= lastRow ; r++) {
+            int row = r - headerRows;
+            for(int column = firstColumn ; column <= lastColumn ; column++) {
+                boolean selected = focused && row == selectedRow && column == selectedColumn;
+                Component cmp = rendererFor(row, column, selected);
+                paintCell(g, cmp, x + columnPositions[column], y + rowPositions[r],
+                        columnPositions[column + 1] - columnPositions[column],
+                        rowPositions[r + 1] - rowPositions[r]);
+                g.setClip(clipX, clipY, clipWidth, clipHeight);
+            }
+        }
+
+        if(drawBorder) {
+            g.setColor(s.getFgColor());
+            int width = columnPositions[columns];
+            int height = rowPositions[rows];
+            for(int r = Math.max(firstRow, 1) ; r <= lastRow ; r++) {
+                g.drawLine(x, y + rowPositions[r], x + width, y + rowPositions[r]);
+            }
+            for(int column = Math.max(firstColumn, 1) ; column <= lastColumn ; column++) {
+                g.drawLine(x + columnPositions[column], y, x + columnPositions[column], y + height);
+            }
+        }
+    }
+
+    private void paintCell(Graphics g, Component cmp, int x, int y, int width, int height) {
+        Style s = cmp.getStyle();
+        int left = s.getMargin(LEFT);
+        int top = s.getMargin(TOP);
+        cmp.setX(x + left);
+        cmp.setY(y + top);
+        cmp.setWidth(width - left - s.getMargin(RIGHT));
+        cmp.setHeight(height - top - s.getMargin(BOTTOM));
+        g.clipRect(cmp.getX(), cmp.getY(), cmp.getWidth(), cmp.getHeight());
+
+        Border b = s.getBorder();
+        if(b != null && b.isBackgroundPainter()) {
+            b.paintBorderBackground(g, cmp);
+        } else if(s.getBgPainter() != null) {
+            cellBounds.setX(cmp.getX());
+            cellBounds.setY(cmp.getY());
+            cellBounds.getSize().setWidth(cmp.getWidth());
+            cellBounds.getSize().setHeight(cmp.getHeight());
+            s.getBgPainter().paint(g, cellBounds);
+        }
+        cmp.paint(g);
+        if(b != null) {
+            g.setColor(s.getFgColor());
+            b.paint(g, cmp);
+        }
+    }
+
+    /**
+     * Returns the index of the entry containing the given position clamped to
+     * the valid entries
+     */
+    private static int indexAt(int[] positions, int count, int position) {
+        int low = 0;
+        int high = count - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >> 1;
+            if(positions[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int getHeaderRows() {
+        if(includeHeader) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private Component rendererFor(int row, int column, boolean selected) {
+        Object value;
+        if(row < 0) {
+            value = model.getColumnName(column);
+        } else {
+            value = model.getValueAt(row, column);
+        }
+        return renderer.getTableCellRendererComponent(this, value, selected, row, column);
+    }
+
+    /**
+     * Measures the column widths and row heights unless they are known
+     */
+    private void measure() {
+        int rows = model.getRowCount();
+        int columns = model.getColumnCount();
+        if(columnPositions != null && rows == measuredRows && columns == measuredColumns) {
+            return;
+        }
+        int headerRows = getHeaderRows();
+        int[] widths = new int[columns + 1];
+        int[] heights = new int[rows + headerRows + 1];
+        for(int row = -headerRows ; row < rows ; row++) {
+            for(int column = 0 ; column < columns ; column++) {
+                Component cmp = rendererFor(row, column, false);
+                Style s = cmp.getStyle();
+                widths[column] = Math.max(widths[column], cmp.getPreferredW() + s.getMargin(LEFT) + s.getMargin(RIGHT));
+                heights[row + headerRows] = Math.max(heights[row + headerRows], cmp.getPreferredH() + s.getMargin(TOP) + s.getMargin(BOTTOM));
+            }
+        }
+        toPositions(widths);
+        toPositions(heights);
+        columnPositions = widths;
+        rowPositions = heights;
+        measuredRows = rows;
+        measuredColumns = columns;
+    }
+
+    /**
+     * Converts sizes to the edges between them in place
+     */
+    private static void toPositions(int[] sizes) {
+        int position = 0;
+        for(int iter = 0 ; iter < sizes.length ; iter++) {
+            int size = sizes[iter];
+            sizes[iter] = position;
+            position += size;
+        }
+    }
+
+    private static void grow(int[] positions, int index, int size) {
+        int delta = size - (positions[index + 1] - positions[index]);
+        for(int iter = index + 1 ; iter < positions.length ; iter++) {
+            positions[iter] += delta;
+        }
+    }
+
+    /**
+     * Discards the measurements and lays out the table again
+     */
+    private void invalidateCells() {
+        columnPositions = null;
+        rowPositions = null;
+        relayout();
+    }
+
+    private void relayout() {
+        setShouldCalcPreferredSize(true);
+        Container parent = getParent();
+        if(parent != null) {
+            parent.revalidate();
+        } else {
+            repaint();
+        }
+    }
+
+    private void repaintCell(int row, int column) {
+        if(row >= measuredRows || column >= measuredColumns) {
+            return;
+        }
+        int r = row + getHeaderRows();
+        Style s = getStyle();
+        repaint(getAbsoluteX() + getScrollX() + s.getPadding(LEFT) + columnPositions[column],
+                getAbsoluteY() + getScrollY() + s.getPadding(TOP) + rowPositions[r],
+                columnPositions[column + 1] - columnPositions[column],
+                rowPositions[r + 1] - rowPositions[r]);
+    }
+
+    /**
+     * Updates the given cell, the row or column only grow if the new value
+     * doesn't fit
+     */
+    private void cellChanged(int row, int column) {
+        if(columnPositions == null) {
+            // measured lazily on the next layout
+            return;
+        }
+        if(row < 0 || column < 0 || row >= measuredRows || column >= measuredColumns ||
+                model.getRowCount() != measuredRows || model.getColumnCount() != measuredColumns) {
+            invalidateCells();
+            return;
+        }
+        int r = row + getHeaderRows();
+        Component cmp = rendererFor(row, column, false);
+        Style s = cmp.getStyle();
+        int width = cmp.getPreferredW() + s.getMargin(LEFT) + s.getMargin(RIGHT);
+        int height = cmp.getPreferredH() + s.getMargin(TOP) + s.getMargin(BOTTOM);
+        boolean grown = false;
+        if(width > columnPositions[column + 1] - columnPositions[column]) {
+            grow(columnPositions, column, width);
+            grown = true;
+        }
+        if(height > rowPositions[r + 1] - rowPositions[r]) {
+            grow(rowPositions, r, height);
+            grown = true;
+        }
+        if(grown) {
+            relayout();
+        } else {
+            repaintCell(row, column);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void focusGained() {
+        setHandlesInput(true);
+        if(columnPositions != null) {
+            repaintCell(selectedRow, selectedColumn);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void focusLost() {
+        super.focusLost();
+        if(columnPositions != null) {
+            repaintCell(selectedRow, selectedColumn);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void keyPressed(int keyCode) {
+        if(!handlesInput()) {
+            return;
+        }
+        int row = selectedRow;
+        int column = selectedColumn;
+        switch(Display.getInstance().getGameAction(keyCode)) {
+            case Display.GAME_UP:
+                row--;
+                break;
+            case Display.GAME_DOWN:
+                row++;
+                break;
+            case Display.GAME_LEFT:
+                column--;
+                break;
+            case Display.GAME_RIGHT:
+                column++;
+                break;
+            default:
+                return;
+        }
+        if(row < 0 || column < 0 || row >= model.getRowCount() || column >= model.getColumnCount()) {
+            // let the form move the focus out of the table
+            setHandlesInput(false);
+            return;
+        }
+        setSelectedCell(row, column);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void keyReleased(int keyCode) {
+        if(Display.getInstance().getGameAction(keyCode) == Display.GAME_FIRE && getSelectedRow() > -1) {
+            fireActionEvent();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void fireClicked() {
+        if(getSelectedRow() > -1) {
+            fireActionEvent();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected boolean isSelectableInteraction() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void pointerPressed(int x, int y) {
+        pressedRow = -1;
+        pressedColumn = -1;
+        if(columnPositions != null && measuredColumns > 0) {
+            Style s = getStyle();
+            int column = indexAt(columnPositions, measuredColumns, x - getAbsoluteX() - s.getPadding(LEFT));
+            int row = indexAt(rowPositions, rowPositions.length - 1, y - getAbsoluteY() - s.getPadding(TOP)) - getHeaderRows();
+            if(row > -1 && row < measuredRows) {
+                pressedRow = row;
+                pressedColumn = column;
+                setSelectedCell(row, column);
+            }
+        }
+        super.pointerPressed(x, y);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void pointerReleased(int x, int y) {
+        if(isDragActivated()) {
+            super.pointerReleased(x, y);
+            return;
+        }
+        if(pressedRow > -1 && pressedRow == selectedRow && pressedColumn == selectedColumn) {
+            fireActionEvent();
+        }
+    }
+
+    class Listener implements DataChangedListener {
+        /**
+         * @inheritDoc
+         */
+        public final void dataChanged(int row, int column) {
+            cellChanged(row, column);
+        }
+    }
+}
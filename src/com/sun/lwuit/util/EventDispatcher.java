@@ -33,13 +33,47 @@ import java.util.Vector;
  * Handles event dispatching while guaranteeing that all events would
  * be fired properly on the EDT regardless of their source. This class handles listener
  * registration/removal in a safe and uniform way. 
+ * <p>Events are fired to an array snapshot of the listeners which is only rebuilt
+ * after a listener is added or removed, so firing doesn't allocate.
  * 
  * @author Shai Almog
  */
 public class EventDispatcher {
+    private static final DataChangedListener[] NO_DATA_CHANGED_LISTENERS = new DataChangedListener[0];
+    private static final StyleListener[] NO_STYLE_LISTENERS = new StyleListener[0];
+    private static final ActionListener[] NO_ACTION_LISTENERS = new ActionListener[0];
+    private static final SelectionListener[] NO_SELECTION_LISTENERS = new SelectionListener[0];
+    private static final FocusListener[] NO_FOCUS_LISTENERS = new FocusListener[0];
+
     private Vector listeners;
+
+    /**
+     * Typed copy of the listeners, replaced rather than modified when the
+     * listeners change so arrays handed to a dispatch stay intact
+     */
+    private Object[] snapshot;
     private Object[] pending;
     private Object pendingEvent;
+    private final int[] pendingArgs = new int[2];
+
+    private boolean blocking = true;
+
+    /**
+     * Data change events fired off the EDT in non blocking mode as type/index
+     * pairs waiting for delivery
+     */
+    private int[] queuedDataChanges;
+    private int queuedDataChangesSize;
+
+    /**
+     * Offset of the first queued data change not yet taken for delivery
+     */
+    private int queuedDataChangesOffset;
+    private final Runnable dataChangeCallback = new Runnable() {
+        public final void run() {
+            deliverDataChanges();
+        }
+    };
     private final Runnable callback = new Runnable() {
         /**
          * Do not invoke this method it handles the dispatching internally and serves
@@ -90,6 +124,7 @@ public class EventDispatcher {
             listeners = new Vector();
         }
         listeners.addElement(listener);
+        snapshot = null;
     }
     
     /**
@@ -109,9 +144,65 @@ public class EventDispatcher {
     public synchronized void removeListener(Object listener) {
         if(listeners != null) {
             listeners.removeElement(listener);
+            snapshot = null;
         }
     }
 
+    /**
+     * Indicates whether data change events fired off the EDT block the calling
+     * thread until the listeners have processed them. When false the events are
+     * queued in order and delivered on the EDT together which is useful for models
+     * updated by a background thread.
+     *
+     * @param blocking false to deliver data change events asynchronously
+     */
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    /**
+     * Indicates whether data change events fired off the EDT block the calling
+     * thread until the listeners have processed them
+     *
+     * @return true by default
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Returns the listener snapshot, copying the listeners into a new array of
+     * the given type if they changed since the last snapshot
+     */
+    private synchronized Object[] getSnapshot(Object[] empty) {
+        if(snapshot == null || snapshot.getClass() != empty.getClass()) {
+            Object[] arr = empty;
+            if(listeners != null && listeners.size() > 0) {
+                arr = createArray(empty, listeners.size());
+                listeners.copyInto(arr);
+            }
+            snapshot = arr;
+        }
+        return snapshot;
+    }
+
+    private static Object[] createArray(Object[] type, int size) {
+        if(type instanceof DataChangedListener[]) {
+            return new DataChangedListener[size];
+        }
+        if(type instanceof StyleListener[]) {
+            return new StyleListener[size];
+        }
+        if(type instanceof ActionListener[]) {
+            return new ActionListener[size];
+        }
+        if(type instanceof SelectionListener[]) {
+            return new SelectionListener[size];
+        }
+        return new FocusListener[size];
+    }
+
+
     /**
      * Fires the event safely on the EDT without risk of concurrency errors
      * 
@@ -121,22 +212,90 @@ public class EventDispatcher {
         if(listeners == null || listeners.size() == 0) {
             return;
         }
-        DataChangedListener[] array;
-        synchronized(this) {
-            array = new DataChangedListener[listeners.size()];
-            for(int iter = 0 ; iter < array.length ; iter++) {
-                array[iter] = (DataChangedListener)listeners.elementAt(iter);
-            }
-        }
+        DataChangedListener[] array = (DataChangedListener[])getSnapshot(NO_DATA_CHANGED_LISTENERS);
         // if we already are on the EDT just fire the event
         if(Display.getInstance().isEdt()) {
             fireDataChangeSync(array, type, index);
         } else {
-            pending = array;
-            pendingEvent = new int[] {type, index};
-            Display.getInstance().callSeriallyAndWait(callback);
-            pending = null;
-            pendingEvent = null;
+            if(!blocking) {
+                queueDataChange(type, index);
+                return;
+            }
+            synchronized(callback) {
+                pending = array;
+                pendingArgs[0] = type;
+                pendingArgs[1] = index;
+                pendingEvent = pendingArgs;
+                Display.getInstance().callSeriallyAndWait(callback);
+                pending = null;
+                pendingEvent = null;
+            }
+        }
+    }
+
+    /**
+     * Queues a data change event fired off the EDT in non blocking mode, a burst
+     * of events is delivered by a single serial call
+     */
+    private synchronized void queueDataChange(int type, int index) {
+        int size = queuedDataChangesSize;
+        if(size - 2 >= queuedDataChangesOffset && type == DataChangedListener.CHANGED &&
+                queuedDataChanges[size - 2] == type && queuedDataChanges[size - 1] == index) {
+            // the same element changed again before the listeners saw it, events
+            // already taken for delivery might have been read so they are never merged
+            return;
+        }
+        if(queuedDataChanges == null) {
+            queuedDataChanges = new int[16];
+        } else if(size == queuedDataChanges.length) {
+            int[] arr = new int[size * 2];
+            System.arraycopy(queuedDataChanges, 0, arr, 0, size);
+            queuedDataChanges = arr;
+        }
+        queuedDataChanges[size] = type;
+        queuedDataChanges[size + 1] = index;
+        queuedDataChangesSize = size + 2;
+        if(size == 0) {
+            Display.getInstance().callSerially(dataChangeCallback);
+        }
+    }
+
+    /**
+     * Delivers the queued data change events in order on the EDT, if a listener
+     * throws the remaining events are delivered by another serial call so the
+     * queue never stays stuck
+     */
+    private void deliverDataChanges() {
+        boolean done = false;
+        try {
+            while(true) {
+                int type;
+                int index;
+                synchronized(this) {
+                    int offset = queuedDataChangesOffset;
+                    if(offset >= queuedDataChangesSize) {
+                        queuedDataChangesSize = 0;
+                        queuedDataChangesOffset = 0;
+                        done = true;
+                        return;
+                    }
+                    type = queuedDataChanges[offset];
+                    index = queuedDataChanges[offset + 1];
+                    queuedDataChangesOffset = offset + 2;
+                }
+                fireDataChangeSync((DataChangedListener[])getSnapshot(NO_DATA_CHANGED_LISTENERS), type, index);
+            }
+        } finally {
+            if(!done) {
+                synchronized(this) {
+                    if(queuedDataChangesOffset >= queuedDataChangesSize) {
+                        queuedDataChangesSize = 0;
+                        queuedDataChangesOffset = 0;
+                    } else {
+                        Display.getInstance().callSerially(dataChangeCallback);
+                    }
+                }
+            }
         }
     }
     
@@ -150,13 +309,7 @@ public class EventDispatcher {
         if(listeners == null || listeners.size() == 0) {
             return;
         }
-        StyleListener[] array;
-        synchronized(this) {
-            array = new StyleListener[listeners.size()];
-            for(int iter = 0 ; iter < array.length ; iter++) {
-                array[iter] = (StyleListener)listeners.elementAt(iter);
-            }
-        }
+        StyleListener[] array = (StyleListener[])getSnapshot(NO_STYLE_LISTENERS);
         // if we already are on the EDT just fire the event
         if(Display.getInstance().isEdt()) {
             fireStyleChangeSync(array, property, source);
@@ -203,23 +356,18 @@ public class EventDispatcher {
         if(listeners == null || listeners.size() == 0) {
             return;
         }
-        ActionListener[] array;
-        synchronized(this) {
-            array = new ActionListener[listeners.size()];
-            for(int iter = 0 ; iter < array.length ; iter++) {
-                array[iter] = (ActionListener)listeners.elementAt(iter);
-            }
-        }
+        ActionListener[] array = (ActionListener[])getSnapshot(NO_ACTION_LISTENERS);
         // if we already are on the EDT just fire the event
         if(Display.getInstance().isEdt()) {
             fireActionSync(array, ev);
         } else {
-            pending = array;
-            pendingEvent = ev;
-            Display.getInstance().callSeriallyAndWait(callback);
-            pending = null;
-            pendingEvent = null;
-            
+            synchronized(callback) {
+                pending = array;
+                pendingEvent = ev;
+                Display.getInstance().callSeriallyAndWait(callback);
+                pending = null;
+                pendingEvent = null;
+            }
         }
     }
 
@@ -234,22 +382,20 @@ public class EventDispatcher {
         if(listeners == null || listeners.size() == 0) {
             return;
         }
-        SelectionListener[] array;
-        synchronized(this) {
-            array = new SelectionListener[listeners.size()];
-            for(int iter = 0 ; iter < array.length ; iter++) {
-                array[iter] = (SelectionListener)listeners.elementAt(iter);
-            }
-        }
+        SelectionListener[] array = (SelectionListener[])getSnapshot(NO_SELECTION_LISTENERS);
         // if we already are on the EDT just fire the event
         if(Display.getInstance().isEdt()) {
             fireSelectionSync(array, oldSelection, newSelection);
         } else {
-            pending = array;
-            pendingEvent = new int[] {oldSelection, newSelection};
-            Display.getInstance().callSeriallyAndWait(callback);
-            pending = null;
-            pendingEvent = null;            
+            synchronized(callback) {
+                pending = array;
+                pendingArgs[0] = oldSelection;
+                pendingArgs[1] = newSelection;
+                pendingEvent = pendingArgs;
+                Display.getInstance().callSeriallyAndWait(callback);
+                pending = null;
+                pendingEvent = null;
+            }
         }
     }
     
@@ -273,22 +419,18 @@ public class EventDispatcher {
         if(listeners == null || listeners.size() == 0) {
             return;
         }
-        FocusListener[] array;
-        synchronized(this) {
-            array = new FocusListener[listeners.size()];
-            for(int iter = 0 ; iter < array.length ; iter++) {
-                array[iter] = (FocusListener)listeners.elementAt(iter);
-            }
-        }
+        FocusListener[] array = (FocusListener[])getSnapshot(NO_FOCUS_LISTENERS);
         // if we already are on the EDT just fire the event
         if(Display.getInstance().isEdt()) {
             fireFocusSync(array, c);
         } else {
-            pending = array;
-            pendingEvent = c;
-            Display.getInstance().callSeriallyAndWait(callback);
-            pending = null;
-            pendingEvent = null;            
+            synchronized(callback) {
+                pending = array;
+                pendingEvent = c;
+                Display.getInstance().callSeriallyAndWait(callback);
+                pending = null;
+                pendingEvent = null;
+            }
         }
     }
     
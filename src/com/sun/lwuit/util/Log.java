@@ -39,8 +39,8 @@ import java.io.Writer;
 import javax.microedition.io.Connector;
 import javax.microedition.io.file.FileConnection;
 import javax.microedition.io.file.FileSystemRegistry;
+import javax.microedition.rms.InvalidRecordIDException;
 import javax.microedition.rms.RecordStore;
-import javax.microedition.rms.RecordStoreException;
 
 
 /**
@@ -48,6 +48,9 @@ import javax.microedition.rms.RecordStoreException;
  * using the file connector API. It is highly recommended to use this 
  * class coupled with Netbeans preprocessing tags to reduce its overhead
  * completely in runtime.
+ * <p>Lines are printed to the console right away and collected in a bounded
+ * in memory buffer, a background thread writes them to storage in batches.
+ * When the storage exceeds its limit the oldest part of the log is discarded.
  *
  * @author Shai Almog
  */
@@ -83,6 +86,21 @@ public class Log {
     private Writer output;
     private boolean fileWriteEnabled = false;//System.getProperty("microedition.io.file.FileConnection.version") != null;
     private String fileURL = null;
+
+    /**
+     * Lines waiting to be written to storage, oldest lines are dropped when
+     * the writer can't keep up
+     */
+    private final String[] pending = new String[128];
+    private int pendingStart;
+    private int pendingCount;
+    private int droppedLines;
+    private boolean urgent;
+    private Thread writerThread;
+    private final Object writeLock = new Object();
+    private int firstRecord = 1;
+    private int flushInterval = 2000;
+    private int storageLimit = 32 * 1024;
     
     /**
      * Installs a log subclass that can replace the logging destination/behavior
@@ -111,6 +129,24 @@ public class Log {
     public static void p(String text, int level) {
         instance.print(text, level);
     }
+
+    /**
+     * Returns true if text logged at the given level would be printed, allows
+     * skipping the construction of an expensive log message
+     *
+     * @param level one of DEBUG, INFO, WARNING, ERROR
+     * @return true if the level is logged
+     */
+    public static boolean isLoggable(int level) {
+        return instance.level <= level;
+    }
+
+    /**
+     * Writes all the lines logged so far to storage before returning
+     */
+    public static void flush() {
+        instance.flushPending();
+    }
     
     /**
      * Default log implementation prints to the console and the file connector
@@ -125,27 +161,153 @@ public class Log {
         }
         text = getThreadAndTimeStamp() + " - " + text;
         System.out.println(text);
-        if(isFileWriteEnabled()) {
-            try {
-                synchronized(this) {
+        synchronized(pending) {
+            if(pendingCount == pending.length) {
+                pendingStart = (pendingStart + 1) % pending.length;
+                pendingCount--;
+                droppedLines++;
+            }
+            pending[(pendingStart + pendingCount) % pending.length] = text;
+            pendingCount++;
+
+            // errors are written right away in case the application is about to die
+            if(level >= ERROR || pendingCount > pending.length / 2) {
+                urgent = true;
+            }
+            if(writerThread == null) {
+                writerThread = new Thread(new Runnable() {
+                    public void run() {
+                        writeLoop();
+                    }
+                }, "Log");
+                writerThread.start();
+            } else if(urgent || pendingCount == 1) {
+                // otherwise the writer is already waiting to batch more lines
+                pending.notify();
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread, waits for lines and writes them in batches of
+     * at most one every flush interval
+     */
+    private void writeLoop() {
+        while(true) {
+            synchronized(pending) {
+                try {
+                    while(pendingCount == 0) {
+                        pending.wait();
+                    }
+                    if(!urgent) {
+                        pending.wait(flushInterval);
+                    }
+                } catch(InterruptedException err) {
+                }
+            }
+            flushPending();
+        }
+    }
+
+    /**
+     * Removes the pending lines from the buffer and returns them as a single
+     * string or null if there are none, must be called with the buffer locked
+     */
+    private String takePending() {
+        urgent = false;
+        if(pendingCount == 0 && droppedLines == 0) {
+            return null;
+        }
+        StringBuffer batch = new StringBuffer();
+        if(droppedLines > 0) {
+            batch.append("... ");
+            batch.append(droppedLines);
+            batch.append(" lines dropped\n");
+            droppedLines = 0;
+        }
+        for(int iter = 0 ; iter < pendingCount ; iter++) {
+            int index = (pendingStart + iter) % pending.length;
+            batch.append(pending[index]);
+            batch.append('\n');
+            pending[index] = null;
+        }
+        pendingStart = 0;
+        pendingCount = 0;
+        return batch.toString();
+    }
+
+    /**
+     * Appends the pending lines to the file or record store and discards the
+     * oldest data if the storage limit is exceeded
+     */
+    private void flushPending() {
+        // batches are taken and written under one lock to keep them in order
+        synchronized(writeLock) {
+            String batch;
+            synchronized(pending) {
+                batch = takePending();
+            }
+            if(batch == null) {
+                return;
+            }
+            if(isFileWriteEnabled()) {
+                try {
                     Writer w = getWriter();
-                    w.write(text + "\n");
+                    w.write(batch);
                     w.close();
                     output = null;
+                    rotateFile();
+                } catch(Throwable err) {
+                    err.printStackTrace();
+                    setFileWriteEnabled(false);
+                }
+            } else {
+                try {
+                    RecordStore outputStore = RecordStore.openRecordStore("log", true);
+                    try {
+                        byte[] bytes = batch.getBytes();
+                        outputStore.addRecord(bytes, 0, bytes.length);
+                        while(outputStore.getSize() > storageLimit && outputStore.getNumRecords() > 1) {
+                            try {
+                                outputStore.deleteRecord(firstRecord);
+                            } catch(InvalidRecordIDException deleted) {
+                            }
+                            firstRecord++;
+                        }
+                    } finally {
+                        outputStore.closeRecordStore();
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
                 }
-            } catch(Throwable err) {
-                err.printStackTrace();
-                setFileWriteEnabled(false);
             }
-        } else {
-            try {
-                RecordStore outputStore = RecordStore.openRecordStore("log", true);
-                byte[] bytes = text.getBytes();
-                outputStore.addRecord(bytes, 0, bytes.length);
-                outputStore.closeRecordStore();
-            } catch (RecordStoreException ex) {
-                ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Moves the log file aside once it grows beyond the storage limit, the
+     * previous log file is discarded
+     */
+    private void rotateFile() throws IOException {
+        String url = getFileURL();
+        if(url == null) {
+            return;
+        }
+        FileConnection con = (FileConnection)Connector.open(url, Connector.READ_WRITE);
+        try {
+            if(con.exists() && con.fileSize() > storageLimit) {
+                FileConnection old = (FileConnection)Connector.open(url + ".1", Connector.READ_WRITE);
+                try {
+                    if(old.exists()) {
+                        old.delete();
+                    }
+                } finally {
+                    old.close();
+                }
+                con.rename(url.substring(url.lastIndexOf('/') + 1) + ".1");
             }
+        } finally {
+            con.close();
         }
     }
     
@@ -226,35 +388,55 @@ public class Log {
      * @return string containing the whole log
      */
     public static String getLogContent() {
+        flush();
         try {
-            String text = "";
+            StringBuffer text = new StringBuffer();
             if(instance.isFileWriteEnabled()) {
                 if(instance.getFileURL() == null) {
                     instance.setFileURL("file:///" + FileSystemRegistry.listRoots().nextElement() + "/lwuit.log");
                 }
-                FileConnection con = (FileConnection) Connector.open(instance.getFileURL(),Connector.READ);
-                Reader r = new InputStreamReader(con.openInputStream());
-                char[] buffer = new char[1024];
-                int size = r.read(buffer);
-                while(size > -1) {
-                    text += new String(buffer, 0, size);
-                    size = r.read(buffer);
-                }
-                r.close();
+                readFile(instance.getFileURL() + ".1", text);
+                readFile(instance.getFileURL(), text);
             } else {
                 RecordStore store = RecordStore.openRecordStore("log", true);
-                int size = store.getNumRecords();
-                for(int iter = 1 ; iter <= size ; iter++) {
-                    text += new String(store.getRecord(iter));
+                try {
+                    // the oldest records are deleted so ids are not contiguous
+                    int next = store.getNextRecordID();
+                    for(int iter = 1 ; iter < next ; iter++) {
+                        try {
+                            text.append(new String(store.getRecord(iter)));
+                        } catch(InvalidRecordIDException deleted) {
+                        }
+                    }
+                } finally {
+                    store.closeRecordStore();
                 }
-                store.closeRecordStore();
             }
-            return text;
+            return text.toString();
         } catch (Exception ex) {
             ex.printStackTrace();
             return "";
         }
     }
+
+    private static void readFile(String url, StringBuffer text) throws IOException {
+        FileConnection con = (FileConnection) Connector.open(url, Connector.READ);
+        try {
+            if(!con.exists()) {
+                return;
+            }
+            Reader r = new InputStreamReader(con.openInputStream());
+            char[] buffer = new char[1024];
+            int size = r.read(buffer);
+            while(size > -1) {
+                text.append(buffer, 0, size);
+                size = r.read(buffer);
+            }
+            r.close();
+        } finally {
+            con.close();
+        }
+    }
     
     /**
      * Places a form with the log as a TextArea on the screen, this method can
@@ -327,4 +509,44 @@ public class Log {
     public void setFileURL(String fileURL) {
         this.fileURL = fileURL;
     }
+
+    /**
+     * Indicates the maximum time in milliseconds a logged line waits in memory
+     * before it is written to storage, lines are written in batches
+     *
+     * @return the flush interval
+     */
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Indicates the maximum time in milliseconds a logged line waits in memory
+     * before it is written to storage, lines are written in batches
+     *
+     * @param flushInterval the flush interval to set
+     */
+    public void setFlushInterval(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Indicates the approximate number of bytes the log may occupy in storage, the
+     * oldest records are deleted or the log file is rotated once it grows beyond
+     *
+     * @return the storage limit in bytes
+     */
+    public int getStorageLimit() {
+        return storageLimit;
+    }
+
+    /**
+     * Indicates the approximate number of bytes the log may occupy in storage, the
+     * oldest records are deleted or the log file is rotated once it grows beyond
+     *
+     * @param storageLimit the storage limit in bytes
+     */
+    public void setStorageLimit(int storageLimit) {
+        this.storageLimit = storageLimit;
+    }
 }
@@ -35,6 +35,7 @@ import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.plaf.Border;
 import com.sun.lwuit.plaf.Style;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -47,6 +48,10 @@ import java.util.Vector;
  * A resource is loaded entirely into memory since random file access is not supported
  * in Java ME, any other approach would be inefficient. This means that memory must
  * be made available to accommodate the resource file. 
+ * <p>A resource opened in lazy mode only indexes the entries of the file, images,
+ * fonts, data and localization bundles are created when they are first requested
+ * and can be released to be created again later. The raw file is kept in memory
+ * for as long as the resource object is referenced.
  * 
  * @author Shai Almog
  */
@@ -110,6 +115,17 @@ public class Resources {
     private Hashtable resources = new Hashtable();
     
     private DataInputStream input; 
+
+    /**
+     * The content of a resource file opened in lazy mode
+     */
+    private byte[] lazyBuffer;
+
+    /**
+     * Maps the resource id to its offset within the lazy buffer and its magic
+     * number, null unless the resource was opened in lazy mode
+     */
+    private Hashtable lazyEntries;
     
     // for internal use by the resource editor, creates an empty resource
     Resources() {
@@ -118,6 +134,14 @@ public class Resources {
     Resources(InputStream input) throws IOException {
         openFile(input);
     }
+
+    Resources(InputStream input, boolean lazy) throws IOException {
+        if(lazy) {
+            openFileLazy(input);
+        } else {
+            openFile(input);
+        }
+    }
     
     void clear() {
         majorVersion = 0;
@@ -125,6 +149,8 @@ public class Resources {
         resourceTypes.clear();
         resources.clear();
         input = null;
+        lazyBuffer = null;
+        lazyEntries = null;
     }
     
     /**
@@ -144,49 +170,281 @@ public class Resources {
             byte magic = this.input.readByte();
             String id = this.input.readUTF();
             startingEntry(id, magic);
-            switch(magic) {
-                case MAGIC_HEADER:
-                    readHeader();
-                    continue;
-                case MAGIC_THEME:
-                    setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
-                    continue;
-                case MAGIC_IMAGE:
-                    setResource(id, magic, createImage());
-                    continue;
-                case MAGIC_FONT:
-                    setResource(id, magic, loadFont(this.input, id, false));
-                    continue;
-                case MAGIC_DATA:
-                    setResource(id, magic, createData());
-                    continue;
-                case MAGIC_L10N:
-                    setResource(id, magic, loadL10N());
-                    continue;
+            if(magic == MAGIC_HEADER) {
+                readHeader();
+                continue;
+            }
+            setResource(id, getEntryType(magic), readEntry(id, magic));
+        }
+    }
 
-                // legacy file support to be removed
-                case MAGIC_IMAGE_LEGACY:
-                    setResource(id, MAGIC_IMAGE, createImage());
-                    continue;
-                case MAGIC_INDEXED_IMAGE_LEGACY:
-                    setResource(id, MAGIC_IMAGE, createPackedImage8());
-                    continue;
-                case MAGIC_THEME_LEGACY:
-                    setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
-                    continue;
-                case MAGIC_FONT_LEGACY:
-                    setResource(id, MAGIC_FONT, loadFont(this.input, id, false));
-                    continue;
-                case MAGIC_INDEXED_FONT_LEGACY:
-                    setResource(id, MAGIC_FONT, loadFont(this.input, id, true));
-                    continue;
-                case MAGIC_ANIMATION_LEGACY:
-                    setResource(id, MAGIC_IMAGE, loadAnimation(this.input));
-                    continue;
-                default:
-                    throw new IOException("Corrupt theme file unrecognized magic number: " + Integer.toHexString(magic & 0xff));
+    /**
+     * Reads the file into memory and indexes the entries, entries whose size can
+     * only be determined by reading them (themes and animations) are loaded
+     * immediately while the rest are skipped
+     */
+    void openFileLazy(InputStream input) throws IOException {
+        clear();
+        lazyBuffer = readAll(input);
+        lazyEntries = new Hashtable();
+        ByteArrayInputStream bi = new ByteArrayInputStream(lazyBuffer);
+        this.input = new DataInputStream(bi);
+        int resourceCount = this.input.readShort();
+        if(resourceCount < 0) {
+            throw new IOException("Invalid resource file!");
+        }
+        for(int iter = 0 ; iter < resourceCount ; iter++) {
+            byte magic = this.input.readByte();
+            String id = this.input.readUTF();
+            startingEntry(id, magic);
+            if(magic == MAGIC_HEADER) {
+                readHeader();
+                continue;
             }
+            lazyEntries.put(id, new int[] {lazyBuffer.length - bi.available(), magic});
+            resourceTypes.put(id, new Byte(getEntryType(magic)));
+            if(!skipEntry(magic)) {
+                resources.put(id, readEntry(id, magic));
+            }
+        }
+        this.input = null;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(input.available(), 4096));
+        byte[] chunk = new byte[4096];
+        int size = input.read(chunk);
+        while(size > -1) {
+            out.write(chunk, 0, size);
+            size = input.read(chunk);
         }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the type under which an entry with the given magic number is listed,
+     * legacy entries are listed as their current counterparts
+     */
+    private static byte getEntryType(byte magic) {
+        switch(magic) {
+            case MAGIC_THEME_LEGACY:
+                return MAGIC_THEME;
+            case MAGIC_IMAGE_LEGACY:
+            case MAGIC_INDEXED_IMAGE_LEGACY:
+            case MAGIC_ANIMATION_LEGACY:
+                return MAGIC_IMAGE;
+            case MAGIC_FONT_LEGACY:
+            case MAGIC_INDEXED_FONT_LEGACY:
+                return MAGIC_FONT;
+        }
+        return magic;
+    }
+
+    /**
+     * Creates the object for the entry at the current position of the input
+     */
+    private Object readEntry(String id, byte magic) throws IOException {
+        switch(magic) {
+            case MAGIC_THEME:
+                return loadTheme(id, true);
+            case MAGIC_IMAGE:
+                return createImage();
+            case MAGIC_FONT:
+                return loadFont(this.input, id, false);
+            case MAGIC_DATA:
+                return createData();
+            case MAGIC_L10N:
+                return loadL10N();
+
+            // legacy file support to be removed
+            case MAGIC_IMAGE_LEGACY:
+                return createImage();
+            case MAGIC_INDEXED_IMAGE_LEGACY:
+                return createPackedImage8();
+            case MAGIC_THEME_LEGACY:
+                return loadTheme(id, false);
+            case MAGIC_FONT_LEGACY:
+                return loadFont(this.input, id, false);
+            case MAGIC_INDEXED_FONT_LEGACY:
+                return loadFont(this.input, id, true);
+            case MAGIC_ANIMATION_LEGACY:
+                return loadAnimation(this.input);
+            default:
+                throw new IOException("Corrupt theme file unrecognized magic number: " + Integer.toHexString(magic & 0xff));
+        }
+    }
+
+    /**
+     * Skips the entry at the current position of the input
+     *
+     * @return false if the entry can't be skipped and must be read, in which case
+     * the input is left at the start of the entry
+     */
+    private boolean skipEntry(byte magic) throws IOException {
+        switch(magic) {
+            case MAGIC_IMAGE:
+            case MAGIC_IMAGE_LEGACY:
+                return skipImage();
+            case MAGIC_INDEXED_IMAGE_LEGACY:
+                skipPackedImage8();
+                return true;
+            case MAGIC_FONT:
+            case MAGIC_FONT_LEGACY:
+                skipFont(false);
+                return true;
+            case MAGIC_INDEXED_FONT_LEGACY:
+                skipFont(true);
+                return true;
+            case MAGIC_DATA:
+                input.skipBytes(input.readInt());
+                return true;
+            case MAGIC_L10N:
+                skipL10N();
+                return true;
+        }
+        return false;
+    }
+
+    private boolean skipImage() throws IOException {
+        if(majorVersion == 0 && minorVersion == 0) {
+            input.skipBytes(input.readInt());
+            return true;
+        }
+        input.mark(1);
+        int type = input.readByte() & 0xff;
+        switch(type) {
+            // PNG file
+            case 0xf1:
+
+            // JPEG File
+            case 0xf2:
+                input.skipBytes(input.readInt());
+                return true;
+
+            // Indexed image
+            case 0xF3:
+                skipPackedImage8();
+                return true;
+
+            // SVG
+            case 0xF5:
+                input.skipBytes(input.readInt());
+                skipUTF();
+                input.readBoolean();
+                input.skipBytes(8);
+                input.skipBytes(input.readInt());
+                return true;
+        }
+
+        // animations and timelines
+        input.reset();
+        return false;
+    }
+
+    private void skipPackedImage8() throws IOException {
+        int size = input.readByte() & 0xff;
+        if(size == 0) {
+            size = 256;
+        }
+        input.skipBytes(size * 4);
+        int width = input.readShort();
+        int height = input.readShort();
+        input.skipBytes(width * height);
+    }
+
+    private void skipFont(boolean packed) throws IOException {
+        if(majorVersion == 0 && minorVersion == 0) {
+            if(packed) {
+                skipPackedImage8();
+            } else {
+                skipImage();
+            }
+            input.skipBytes(input.readShort() * 3);
+            skipUTF();
+            return;
+        }
+        input.readByte();
+        if(input.readBoolean()) {
+            input.skipBytes(input.readInt());
+        }
+        if(input.readBoolean()) {
+            skipUTF();
+        }
+        if(input.readBoolean()) {
+            if(!skipImage()) {
+                throw new IOException("Illegal font bitmap");
+            }
+            input.skipBytes(input.readShort() * 3);
+            skipUTF();
+            readRenderingHint(input);
+        }
+    }
+
+    private void skipL10N() throws IOException {
+        int keys = input.readShort();
+        int languages = input.readShort();
+        for(int iter = 0 ; iter < keys ; iter++) {
+            skipUTF();
+        }
+        for(int iter = 0 ; iter < languages ; iter++) {
+            skipUTF();
+            for(int valueIter = 0 ; valueIter < keys ; valueIter++) {
+                skipUTF();
+            }
+        }
+    }
+
+    private void skipUTF() throws IOException {
+        input.skipBytes(input.readUnsignedShort());
+    }
+
+    /**
+     * Returns the object of the given resource creating it if the resource was
+     * opened in lazy mode and the object wasn't created yet
+     */
+    private Object getResource(String id) {
+        Object o = resources.get(id);
+        if(o == null && lazyEntries != null) {
+            return loadLazyEntry(id);
+        }
+        return o;
+    }
+
+    private synchronized Object loadLazyEntry(String id) {
+        Object o = resources.get(id);
+        int[] entry = (int[])lazyEntries.get(id);
+        if(o != null || entry == null) {
+            return o;
+        }
+
+        // entries may refer to other entries e.g. a timeline to its images
+        DataInputStream previous = input;
+        input = new DataInputStream(new ByteArrayInputStream(lazyBuffer, entry[0], lazyBuffer.length - entry[0]));
+        try {
+            o = readEntry(id, (byte)entry[1]);
+            resources.put(id, o);
+            return o;
+        } catch(IOException err) {
+            err.printStackTrace();
+            return null;
+        } finally {
+            input = previous;
+        }
+    }
+
+    /**
+     * Releases the object created for the given resource of a resource file opened
+     * in lazy mode, the object is created again when it is next requested. This
+     * has no effect on resources that weren't opened in lazy mode
+     *
+     * @param id the name of the resource
+     * @return true if an object was released
+     */
+    public synchronized boolean release(String id) {
+        if(lazyEntries == null || !lazyEntries.containsKey(id)) {
+            return false;
+        }
+        return resources.remove(id) != null;
     }
     
     /**
@@ -451,12 +709,25 @@ public class Resources {
      * @throws java.io.IOException if opening/reading the resource fails
      */
     public static Resources open(String resource) throws IOException {
+        return open(resource, false);
+    }
+
+    /**
+     * Creates a resource object from the local JAR resource identifier
+     * 
+     * @param resource a local reference to a resource using the syntax of Class.getResourceAsStream(String)
+     * @param lazy true to create images, fonts, data and localization bundles only
+     * when they are first requested
+     * @return a resource object
+     * @throws java.io.IOException if opening/reading the resource fails
+     */
+    public static Resources open(String resource, boolean lazy) throws IOException {
         try {
             InputStream is = Display.getInstance().getResourceAsStream(classLoader, resource);
             if(is == null) {
                 throw new IOException(resource + " not found");
             }
-            Resources r = new Resources(is);
+            Resources r = new Resources(is, lazy);
             is.close();
             return r;
         } catch(RuntimeException err) {
@@ -481,6 +752,19 @@ public class Resources {
         return new Resources(resource);
     }
 
+    /**
+     * Creates a resource object from the given input stream
+     * 
+     * @param resource stream from which to read the resource
+     * @param lazy true to create images, fonts, data and localization bundles only
+     * when they are first requested
+     * @return a resource object
+     * @throws java.io.IOException if opening/reading the resource fails
+     */
+    public static Resources open(InputStream resource, boolean lazy) throws IOException {
+        return new Resources(resource, lazy);
+    }
+
     /**
      * Returns the image resource from the file
      * 
@@ -488,7 +772,7 @@ public class Resources {
      * @return cached image instance
      */
     public Image getImage(String id) {
-        return (Image)resources.get(id);
+        return (Image)getResource(id);
     }
 
     /**
@@ -499,7 +783,7 @@ public class Resources {
      * @deprecated use getImage(String) instead
      */
     public StaticAnimation getAnimation(String id) {
-        return (StaticAnimation)resources.get(id);
+        return (StaticAnimation)getResource(id);
     }
     
     /**
@@ -509,7 +793,7 @@ public class Resources {
      * @return newly created input stream that allows reading the data of the resource
      */
     public InputStream getData(String id) {
-        return new ByteArrayInputStream((byte[])resources.get(id));
+        return new ByteArrayInputStream((byte[])getResource(id));
     }
     
     /**
@@ -520,7 +804,7 @@ public class Resources {
      * @return Hashtable containing key value pairs for localized data
      */
     public Hashtable getL10N(String id, String locale) {
-        return (Hashtable)((Hashtable)resources.get(id)).get(locale);
+        return (Hashtable)((Hashtable)getResource(id)).get(locale);
     }
 
     /**
@@ -530,7 +814,7 @@ public class Resources {
      * @return enumeration of strings containing bundle names
      */
     public Enumeration listL10NLocales(String id) {
-        return ((Hashtable)resources.get(id)).keys();
+        return ((Hashtable)getResource(id)).keys();
     }
 
     /**
@@ -540,7 +824,7 @@ public class Resources {
      * @return cached font instance
      */
     public Font getFont(String id) {
-        return (Font)resources.get(id);
+        return (Font)getResource(id);
     }
     
     /**
@@ -550,7 +834,7 @@ public class Resources {
      * @return cached theme instance
      */
     public Hashtable getTheme(String id) {
-        Hashtable h = (Hashtable)resources.get(id);
+        Hashtable h = (Hashtable)getResource(id);
         
         // theme can be null in valid use cases such as the resource editor
         if(h != null && h.containsKey("uninitialized")) {
@@ -566,7 +850,7 @@ public class Resources {
                     // the resource was not already loaded when we loaded the theme
                     // it must be loaded now so we can resolve the temporary name
                     if(value instanceof String) {
-                        Object o = resources.get(value);
+                        Object o = getResource((String)value);
                         if(o == null) {
                             throw new IllegalArgumentException("Theme entry for " + key + " could not be found: " + value);
                         }
@@ -614,7 +898,7 @@ public class Resources {
     private Border createImageBorder(String[] value) {
         Image[] images = new Image[value.length];
         for(int iter = 0 ; iter < value.length ; iter++) {
-            images[iter] = (Image)resources.get(value[iter]);
+            images[iter] = (Image)getResource(value[iter]);
         }
         switch(images.length) {
             case 2:
@@ -631,7 +915,7 @@ public class Resources {
     }
     
     Object getResourceObject(String res) {
-        return resources.get(res);
+        return getResource(res);
     }
     
     Image createImage() throws IOException {
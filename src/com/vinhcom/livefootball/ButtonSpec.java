@@ -0,0 +1,26 @@
+package com.vinhcom.livefootball;
+
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+
+/**
+ * A soft key as configured by the server: its action type (Settings.SELECT,
+ * EXIT, RELOAD or HYPERLINK), its label and, for hyperlinks, the url.
+ */
+public class ButtonSpec {
+
+  public final String type;
+  public final String name;
+  /**
+   * Only set for Settings.HYPERLINK buttons
+   */
+  public final String url;
+
+  public ButtonSpec(JSONObject json) throws JSONException {
+    type = json.getString(Settings.BUTTON_TYPE);
+    name = json.getString(Settings.BUTTON_NAME);
+    url = type.equals(Settings.HYPERLINK)
+          ? json.getString(Settings.BUTTON_URL) : null;
+  }
+}
@@ -0,0 +1,36 @@
+package com.vinhcom.livefootball;
+
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+
+/**
+ * One row of a list screen. The name and the absolute href are read from
+ * the JSON item the first time they are asked for.
+ */
+public class ListItem {
+
+  private final JSONObject json;
+  private String name, href;
+
+  public ListItem(JSONObject json) {
+    this.json = json;
+  }
+
+  public String get_name() throws JSONException {
+    if (name == null) {
+      name = json.getString(Settings.ITEM_NAME);
+    }
+    return name;
+  }
+
+  /**
+   * The url this row opens, already prefixed with Settings.ROOT_URL
+   */
+  public String get_href() throws JSONException {
+    if (href == null) {
+      href = Settings.ROOT_URL + "/" + json.getString(Settings.ITEM_HREF);
+    }
+    return href;
+  }
+}
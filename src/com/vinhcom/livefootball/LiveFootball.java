@@ -24,36 +24,38 @@ import com.sun.lwuit.html.DocumentRequestHandler;
 import com.sun.lwuit.html.HTMLComponent;
 import com.sun.lwuit.layouts.BorderLayout;
 import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.list.DefaultListModel;
 import com.sun.lwuit.plaf.UIManager;
+import com.sun.lwuit.util.Log;
 import com.sun.lwuit.util.Resources;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.io.IOException;
-import java.util.Hashtable;
-import java.util.Vector;
-import org.json.me.JSONArray;
 import org.json.me.JSONException;
 import org.json.me.JSONObject;
 
 
 public class LiveFootball
         extends MIDlet
-        implements ActionListener {
+        implements ActionListener, Loader.Listener {
 
   /**
    * Global Paramenters
    */
   private int status;
-  private String url, recent_url, auto_refresh, button_url;
+  private String url, recent_url, button_url;
   private Timer timer;
   private RefreshTimerTask reload;
   private Command hyperlink_command, select_command, exit_command, reload_command;
-  private Thread thread;
-  private Vector href_list;
+  private ListItem[] items;
+  private String list_url; // url của màn hình list đang dùng form/list hiện tại
   private Form form;
   private List list;
-  private JSONObject json;
-  private Hashtable cache = new Hashtable();
+  private ScreenModel screen;
+  private Validators validators; // ETag/Last-Modified của màn hình đang hiển thị
+  private ScreenCache cache = new ScreenCache(Settings.CACHE_BUDGET);
+  private Loader loader = new Loader(cache, this);
+  private Prefetcher prefetcher = new Prefetcher(loader, cache);
 
   /**
    * Display Elements:
@@ -67,23 +69,18 @@ public class LiveFootball
   public void list_display() {
     try {
 
-      String form_title = json.getString(Settings.FORM_TITLE);
+      String form_title = screen.get_title();
       // font.drawString(form_title, status, status, status, null);
       form = new Form(form_title) {
 
         public void keyPressed(int key_code) {
           System.out.println("Pressed keycode: " + key_code);
 
-          if (key_code == -5) { // Thực hiện hành động SELECT
-            if (timer != null) { // dừng tự động refresh (nếu có)
+          if (key_code == -5) { // Thực hiện hành động SELECT
+            if (timer != null) { // dừng tự động refresh (nếu có)
               timer.cancel();
             }
-            /* lấy id của đối tượng được chọn (id bắt đầu từ 0) */
-            int index = list.getSelectedIndex();
-
-            /* lấy url tương ứng với đối tượng được chọn */
-            url = (String) href_list.elementAt(index);
-            progress_controller(url);
+            open_selected();
           }
           else {
             super.keyPressed(key_code);
@@ -93,20 +90,14 @@ public class LiveFootball
 
       form.setTransitionInAnimator(Transition3D.createCube(200, true));
       form.setLayout(new BorderLayout());
-      href_list = new Vector();
+      items = screen.get_items();
 
 
       list = new List();
+      list.addSelectionListener(prefetcher);
 
-      JSONArray items = json.getJSONArray(Settings.ITEMS);
-      for (int i = 0; i < items.length(); i++) {
-        JSONObject item = items.getJSONObject(i);
-        String item_name = item.getString(Settings.ITEM_NAME);
-        list.addItem(item_name);
-        list.isSmoothScrolling();
-        String href = Settings.ROOT_URL + "/" + item.getString(
-                Settings.ITEM_HREF);
-        href_list.addElement(href);
+      for (int i = 0; i < items.length; i++) {
+        list.addItem(items[i].get_name());
       }
 
 
@@ -121,15 +112,77 @@ public class LiveFootball
 
   }
 
+  /**
+   * Open the screen behind the selected row of the list
+   */
+  private void open_selected() {
+    /* lấy id của đối tượng được chọn (id bắt đầu từ 0) */
+    int index = list.getSelectedIndex();
+    if (index < 0 || index >= items.length) {
+      return;
+    }
+    try {
+      /* lấy url tương ứng với đối tượng được chọn */
+      url = items[index].get_href();
+      progress_controller(url);
+    }
+    catch (JSONException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Refresh of the list screen that is already showing: mutate the rows that
+   * changed through the list model instead of building a new Form and List,
+   * so selection, scroll position and the Form itself survive the refresh.
+   *
+   * @return false if there is no list for url on screen and it must be built
+   */
+  private boolean update_list(String url) throws JSONException {
+    if (list == null || form == null || !url.equals(list_url) ||
+        Display.getInstance().getCurrent() != form) {
+      return false;
+    }
+    String form_title = screen.get_title();
+    if (!form_title.equals(form.getTitle())) {
+      form.setTitle(form_title);
+    }
+
+    DefaultListModel model = (DefaultListModel) list.getModel();
+    int selected = list.getSelectedIndex();
+    ListItem[] fresh = screen.get_items();
+    int count = fresh.length;
+    int old_count = model.getSize();
+    for (int i = 0; i < count; i++) {
+      String item_name = fresh[i].get_name();
+      if (i >= old_count) {
+        model.addItem(item_name);
+      }
+      else if (!item_name.equals(model.getItemAt(i))) {
+        model.setItem(i, item_name);
+      }
+    }
+    for (int i = old_count - 1; i >= count; i--) {
+      model.removeItem(i);
+    }
+    items = fresh;
+
+    /* removeItem() dời vùng chọn, đặt lại vị trí cũ mà không cuộn */
+    if (count > 0 && list.getSelectedIndex() != Math.min(selected, count - 1)) {
+      list.setSelectedIndex(Math.min(selected, count - 1), false);
+    }
+    return true;
+  }
+
   private void richtext_display() {
     try {
-      String form_title = json.getString(Settings.FORM_TITLE);
+      String form_title = screen.get_title();
       form = new Form(form_title);
       form.setLayout(new BoxLayout(BoxLayout.Y_AXIS));
       DocumentRequestHandler handler;
       handler = new HttpRequestHandler();
       HTMLComponent html = new HTMLComponent(handler);
-      html.setBodyText(json.getString(Settings.INFO));
+      html.setBodyText(screen.get_info());
       form.addComponent(html);
       form.show();
     }
@@ -140,15 +193,16 @@ public class LiveFootball
 
   private void html_display() {
     try {
-      String form_title = json.getString(Settings.FORM_TITLE);
+      String form_title = screen.get_title();
       System.out.println(form_title);
       form = new Form(form_title);
       form.setLayout(new BoxLayout(BoxLayout.Y_AXIS));
       DocumentRequestHandler handler;
       handler = new HttpRequestHandler();
       HTMLComponent html = new HTMLComponent(handler);
-      html.setPage(json.getString(Settings.CONTENT_URL));
-      System.out.println(json.getString(Settings.CONTENT_URL));
+      html.setProgressiveRendering(true); // hiện dần trang trong khi đang tải
+      html.setPage(screen.get_content_url());
+      System.out.println(screen.get_content_url());
       form.addComponent(html);
       form.show();
     }
@@ -190,7 +244,11 @@ public class LiveFootball
 
     public final void run() {
 //      System.out.println("Reload with: " + url);
-      display(url);
+      if (!Display.getInstance().isEdt()) {
+        Display.getInstance().callSerially(this); // chạy tiếp trên EDT
+        return;
+      }
+      refresh(url);
     }
   }
 
@@ -199,64 +257,20 @@ public class LiveFootball
    */
   private void display_bottom_commands() {
     try {
-      /**
-       * Button Properties
-       */
-      JSONObject left_button = json.getJSONObject(Settings.LEFT_BUTTON);
-      String left_button_type = left_button.getString(Settings.BUTTON_TYPE);
-      String left_button_name = left_button.getString(Settings.BUTTON_NAME);
-
-      JSONObject right_button = json.getJSONObject(Settings.RIGHT_BUTTON);
-      String right_button_type = right_button.getString(Settings.BUTTON_TYPE);
-      String right_button_name = right_button.getString(Settings.BUTTON_NAME);
-
-
       /**
        * Left Command
        */
-      if (left_button_type.equals(Settings.SELECT)) {
-        select_command = new Command(left_button_name);
-        form.addCommand(select_command);
-      }
-      else if (left_button_type.equals(Settings.EXIT)) {
-        exit_command = new Command(left_button_name);
-        form.addCommand(exit_command);
-      }
-      else if (left_button_type.equals(Settings.RELOAD)) {
-        reload_command = new Command(left_button_name);
-        form.addCommand(reload_command);
-      }
-      else if (left_button_type.equals(Settings.HYPERLINK)) {
-        hyperlink_command = new Command(left_button_name);
-        form.addCommand(hyperlink_command);
-        button_url = left_button.getString(Settings.BUTTON_URL);
-      }
+      add_command(screen.get_left_button());
 
       /**
        * Right Command
        */
-      if (right_button_type.equals(Settings.SELECT)) {
-        select_command = new Command(right_button_name);
-        form.addCommand(select_command);
-      }
-      else if (right_button_type.equals(Settings.EXIT)) {
-        exit_command = new Command(right_button_name);
-        form.addCommand(exit_command);
-      }
-      else if (right_button_type.equals(Settings.RELOAD)) {
-        reload_command = new Command(right_button_name);
-        form.addCommand(reload_command);
-      }
-      else if (right_button_type.equals(Settings.HYPERLINK)) {
-        hyperlink_command = new Command(right_button_name);
-        form.addCommand(hyperlink_command);
-        button_url = right_button.getString(Settings.BUTTON_URL);
-      }
+      add_command(screen.get_right_button());
 
       /**
        * Command Listener
        */
-      form.setCommandListener(this); // Chờ đến khi có một nút được bấm
+      form.setCommandListener(this); // Chờ đến khi có một nút được bấm
     }
     catch (JSONException ex) {
       /**
@@ -266,100 +280,208 @@ public class LiveFootball
     }
   }
 
+  private void add_command(ButtonSpec button) {
+    if (button.type.equals(Settings.SELECT)) {
+      select_command = new Command(button.name);
+      form.addCommand(select_command);
+    }
+    else if (button.type.equals(Settings.EXIT)) {
+      exit_command = new Command(button.name);
+      form.addCommand(exit_command);
+    }
+    else if (button.type.equals(Settings.RELOAD)) {
+      reload_command = new Command(button.name);
+      form.addCommand(reload_command);
+    }
+    else if (button.type.equals(Settings.HYPERLINK)) {
+      hyperlink_command = new Command(button.name);
+      form.addCommand(hyperlink_command);
+      button_url = button.url;
+    }
+  }
+
   private void display(final String url) {
+    /**
+     * NOTE: Data from server must is UTF-8 without BOM
+     * Get Data From Cache. If not exist, get it from Server.
+     */
+    JSONObject content;
+    content = cache.get(url);
+    if (content == null) {
+      loader.load(url); // kết quả trả về qua loaded()/failed() trên EDT
+      return;
+    }
     try {
-      /**
-       * NOTE: Data from server must is UTF-8 without BOM
-       * Get Data From Cache. If not exist, get it from Server.
-       */
-      String content;
-      content = (String) cache.get(url);
-      System.out.println(content);
-      if (content != null) {
+      validators = cache.validators(url);
+      if (cache.set_persisted(url)) {
+        /* tải trước chỉ giữ trong bộ nhớ; lưu vào RMS ở luồng tải khi được mở */
+        loader.persist(url, content, cache.validators(url));
       }
-      if (content == null) {
-        content = Models.urlopen(url);
+      show(url, content);
+    }
+    catch (Exception e) {
+      display_error();
+    }
+  }
 
+  /**
+   * Auto refresh: ask the server whether the screen changed and rebuild it
+   * only if it did. On 304 Not Modified the current model and Form are kept
+   * and just the next refresh is scheduled.
+   */
+  private void refresh(final String url) {
+    try {
+      if (!url.equals(recent_url)) {
+        display(url);
+        return;
       }
-      json = new JSONObject(content);
-
-      String cache_status = null;
-      cache_status = json.getString("cache");
-      if (cache_status.equals("yes")) {
-        cache.put(url, content); //save to cache
+      if (cache.contains(url)) {
+        schedule_refresh(); // bản trong cache vẫn còn mới
+        return;
       }
-
-      /**
-       * Get Display Type
-       */
-      String type = null;
-      type = json.getString(Settings.TYPE);
-      System.out.println(type);
-
-      /**
-       * Diplay Type Parser
-       */
-      if (type.equals(Settings.LIST)) {
-        list_display();
-        display_bottom_commands();
+      Validators conditional = validators;
+      if (conditional == null) {
+        conditional = OfflineStore.validators(url);
       }
-      else if (type.equals(Settings.HTML)) {
-        html_display();
-        display_bottom_commands();
+      else {
+        conditional = new Validators(conditional.etag,
+                                     conditional.last_modified);
       }
-      else if (type.equals(Settings.RICHTEXT)) {
-        richtext_display();
-        display_bottom_commands();
+      loader.refresh(url, conditional);
+    }
+    catch (Exception e) {
+      display_error();
+    }
+  }
 
+  /**
+   * A screen requested through the loader has arrived (on the EDT)
+   */
+  public void loaded(Loader.Request request, JSONObject content) {
+    Prefetcher prefetcher = this.prefetcher;
+    if (prefetcher == null) {
+      return; // destroyApp() đã chạy
+    }
+    if (request.kind == Loader.PREFETCH) {
+      prefetcher.prefetched(request, content);
+      return;
+    }
+    if (request.kind != Loader.LOAD && !request.url.equals(recent_url)) {
+      return; // người dùng đã chuyển sang màn hình khác
+    }
+    try {
+      if (content == Models.NOT_MODIFIED) {
+        if (request.kind == Loader.REFRESH) {
+          schedule_refresh();
+        }
+        return;
       }
-      /**
-       * nếu tham số auto_refresh được thiết lập thì tự động refresh mỗi xxx ms
-       * định sẵn
-       */
-      auto_refresh = json.getString(Settings.AUTO_REFRESH);
-      if (auto_refresh.equals("0") || (auto_refresh == null)) {
+      validators = request.validators;
+      show(request.url, content);
+    }
+    catch (Exception e) {
+      display_error();
+    }
+  }
+
+  public void failed(Loader.Request request) {
+    Prefetcher prefetcher = this.prefetcher;
+    if (prefetcher == null) {
+      return; // destroyApp() đã chạy
+    }
+    if (request.kind == Loader.PREFETCH) {
+      prefetcher.failed(request);
+      return;
+    }
+    if (request.kind == Loader.REVALIDATE) {
+      return; // offline: keep showing the saved copy
+    }
+    display_error();
+  }
+
+  /**
+   * Build and show the Form for a parsed screen
+   */
+  private void show(String url, JSONObject content) throws JSONException {
+    screen = new ScreenModel(content);
+
+    /**
+     * Get Display Type
+     */
+    String type = null;
+    type = screen.get_type();
+    System.out.println(type);
+
+    /**
+     * Diplay Type Parser
+     */
+    if (type.equals(Settings.LIST)) {
+      if (update_list(url)) {
+        prefetcher.update(items, list.getSelectedIndex());
       }
       else {
-        if (timer != null) {
-          timer.cancel(); // dừng tự động refresh (nếu có)
-        }
-        timer = new Timer();
-        reload = new RefreshTimerTask();
-        timer.schedule(reload, Integer.parseInt(auto_refresh));
+        list_display();
+        display_bottom_commands();
+        list_url = url;
+        prefetcher.start(items, list.getSelectedIndex());
       }
+    }
+    else if (type.equals(Settings.HTML)) {
+      prefetcher.stop();
+      html_display();
+      display_bottom_commands();
+    }
+    else if (type.equals(Settings.RICHTEXT)) {
+      prefetcher.stop();
+      richtext_display();
+      display_bottom_commands();
 
-      recent_url = url;
+    }
+    recent_url = url;
+    schedule_refresh();
 
-      status = 1;
+    status = 1;
+  }
 
+  /**
+   * nếu tham số auto_refresh được thiết lập thì tự động refresh mỗi xxx ms
+   * định sẵn
+   */
+  private void schedule_refresh() throws JSONException {
+    int auto_refresh = screen.get_auto_refresh();
+    if (auto_refresh == 0) {
     }
-    catch (Exception e) {
-      alert("Lỗi kết nối",
-            "Không thể khởi tạo kết nối đến server.");
-      System.out.println("Status Code: " + status);
-      if (status != 1) {  // status = 1 tương ứng với chương trình đang chạy
-        destroyApp(true);
-        notifyDestroyed();
-      }
-      else {
-        display(recent_url);
+    else {
+      if (timer != null) {
+        timer.cancel(); // dừng tự động refresh (nếu có)
       }
+      timer = new Timer();
+      reload = new RefreshTimerTask();
+      timer.schedule(reload, auto_refresh);
     }
   }
 
-  private void progress_controller(final String url) {
-    if (cache.get(url) == null) {
-      loading("Đang tải dữ liệu...");
-      thread = new Thread() {
-
-        public void run() {
-          display(url);
-        }
-      };
-      thread.start();
+  private void display_error() {
+    alert("Lỗi kết nối",
+          "Không thể khởi tạo kết nối đến server.");
+    System.out.println("Status Code: " + status);
+    if (status != 1) {  // status = 1 tương ứng với chương trình đang chạy
+      destroyApp(true);
+      notifyDestroyed();
+    }
+    else {
+      display(recent_url);
+    }
+  }
 
+  private void progress_controller(final String url) {
+    prefetcher.stop();
+    if (!cache.contains(url)) {
+      loading("Đang tải dữ liệu...");
+      loader.load(url);
     }
     else {
+      loader.cancel_all(); // bỏ các yêu cầu tải cũ
       display(url);
     }
   }
@@ -383,7 +505,7 @@ public class LiveFootball
         timer.cancel();
       }
       if (button_url.equals("/")) {
-        url = Settings.ROOT_URL + "/index.html";
+        url = Settings.INDEX_URL;
         progress_controller(url);
       }
       else {
@@ -395,12 +517,7 @@ public class LiveFootball
       if (timer != null) { // dừng tự động refresh (nếu có)
         timer.cancel();
       }
-      /* lấy id của đối tượng được chọn (id bắt đầu từ 0) */
-      int index = list.getSelectedIndex();
-
-      /* lấy url tương ứng với đối tượng được chọn */
-      url = (String) href_list.elementAt(index);
-      progress_controller(url);
+      open_selected();
     }
     else if (ae.getCommand() == reload_command) {
       if (timer != null) { // dừng tự động refresh (nếu có)
@@ -416,13 +533,36 @@ public class LiveFootball
     Display.init(this);
     Resources r = null;
     try {
-      r = Resources.open(Settings.THEME_PATH);
+      r = Resources.open(Settings.THEME_PATH, true); // chỉ nạp những gì theme dùng
     }
     catch (IOException ex) {
       ex.printStackTrace();
     }
     UIManager.getInstance().setThemeProps(r.getTheme(Settings.THEME));
-    progress_controller(Settings.ROOT_URL + "/index.html");
+    url = Settings.INDEX_URL;
+    JSONObject saved = OfflineStore.load(url);
+    if (saved != null) {
+      /* hiển thị ngay bản đã lưu, kiểm tra lại với server ở chế độ nền */
+      try {
+        cache.put(url, saved, saved.optLong(Settings.CACHE_TTL, 0),
+                  OfflineStore.validators(url), true);
+        show(url, saved);
+        revalidate(url);
+        return;
+      }
+      catch (Exception ex) {
+        ex.printStackTrace(); // bản lưu hỏng, tải lại từ server
+      }
+    }
+    progress_controller(url);
+  }
+
+  /**
+   * Ask the server in the background whether the saved copy of url is still
+   * current. A newer copy replaces the screen if the user has not moved on.
+   */
+  private void revalidate(final String url) {
+    loader.revalidate(url, OfflineStore.validators(url));
   }
 
   public void pauseApp() {
@@ -431,14 +571,22 @@ public class LiveFootball
   public void destroyApp(boolean unconditional) {
     url = null;
     recent_url = null;
-    auto_refresh = null;
     button_url = null;
     timer = null;
     reload = null;
     list = null;
+    prefetcher.shutdown();
+    prefetcher = null;
+    loader.stop();
+    loader = null;
+    OfflineStore.flush(); // ghi lại thời điểm của các màn hình được 304
+    Log.flush(); // ghi nốt các dòng log còn chờ trước khi thoát
+    cache.clear();
     cache = null;
-    href_list = null;
-    json = null;
+    items = null;
+    list_url = null;
+    screen = null;
+    validators = null;
     list = null;
     status = 0;
 
@@ -0,0 +1,433 @@
+package com.vinhcom.livefootball;
+
+import com.sun.lwuit.Display;
+import java.util.Vector;
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+
+/**
+ * Downloads screens on a single background thread.
+ *
+ * Requests are queued and handled one at a time, so there is never more than
+ * one connection open. A navigation (load) supersedes everything before it:
+ * queued requests are dropped and the result of the one in flight is thrown
+ * away. Refreshes of a url that is already queued are coalesced. Prefetches
+ * wait behind every other kind of request. Screens are also written to the
+ * RMS on this thread, never on the EDT. Results are handed to the
+ * Listener on the EDT through Display.callSerially().
+ */
+public class Loader
+        implements Runnable {
+
+  /**
+   * User navigation; shows the screen or an error
+   */
+  public static final int LOAD = 0;
+  /**
+   * Auto refresh of the screen on display; conditional GET
+   */
+  public static final int REFRESH = 1;
+  /**
+   * Background check of a screen shown from the RMS; failures are silent
+   */
+  public static final int REVALIDATE = 2;
+  /**
+   * Idle-time download of a screen the user is likely to open next; only
+   * kept if the server marks it cacheable
+   */
+  public static final int PREFETCH = 3;
+  /**
+   * Save a screen that is already downloaded to the RMS; nothing is
+   * reported to the Listener and navigation does not cancel it
+   */
+  public static final int PERSIST = 4;
+
+  public interface Listener {
+
+    /**
+     * Called on the EDT with the parsed screen, or Models.NOT_MODIFIED when
+     * a conditional request got a 304.
+     */
+    void loaded(Request request, JSONObject content);
+
+    /**
+     * Called on the EDT when the screen could not be downloaded or parsed.
+     */
+    void failed(Request request);
+  }
+
+  public static class Request {
+
+    public final String url;
+    /**
+     * Not final: a prefetch in flight becomes a LOAD when the user opens it
+     */
+    public volatile int kind;
+    /**
+     * Sent as If-None-Match/If-Modified-Since, replaced by the response's
+     */
+    public final Validators validators;
+    /**
+     * Bytes downloaded for this request, set once it completed
+     */
+    public long bytes;
+    /**
+     * The screen to save, for PERSIST
+     */
+    JSONObject content;
+    private volatile boolean cancelled;
+
+    Request(String url, int kind, Validators validators) {
+      this.url = url;
+      this.kind = kind;
+      this.validators = validators == null ? new Validators() : validators;
+    }
+
+    public boolean is_cancelled() {
+      return cancelled;
+    }
+  }
+
+  private final ScreenCache cache;
+  private final Listener listener;
+  private final Vector queue = new Vector();
+  private Request current;
+  private Thread worker;
+  private boolean running = true;
+
+  public Loader(ScreenCache cache, Listener listener) {
+    this.cache = cache;
+    this.listener = listener;
+  }
+
+  /**
+   * Navigate to url: cancel everything pending and download it next.
+   */
+  public void load(String url) {
+    synchronized (queue) {
+      if (current != null && current.kind == PREFETCH &&
+          !current.cancelled && current.url.equals(url)) {
+        /* đang tải trước đúng màn hình này: dùng luôn kết quả */
+        Request promoted = current;
+        current = null;
+        cancel_all();
+        promoted.kind = LOAD;
+        current = promoted;
+        return;
+      }
+      cancel_all();
+      enqueue(new Request(url, LOAD, null));
+    }
+  }
+
+  /**
+   * Conditionally re-download url unless a request for it is already
+   * pending.
+   */
+  public void refresh(String url, Validators validators) {
+    enqueue_once(new Request(url, REFRESH, validators));
+  }
+
+  /**
+   * Like refresh(), but failures are not reported.
+   */
+  public void revalidate(String url, Validators validators) {
+    enqueue_once(new Request(url, REVALIDATE, validators));
+  }
+
+  /**
+   * Download url when nothing else is pending, unless it is already
+   * pending.
+   *
+   * @return false if a request for url was already pending
+   */
+  public boolean prefetch(String url) {
+    return enqueue_once(new Request(url, PREFETCH, null));
+  }
+
+  /**
+   * Save a screen that was only kept in memory (a prefetch) to the RMS once
+   * it is shown, on the worker thread.
+   */
+  public void persist(String url, JSONObject content, Validators validators) {
+    Request request = new Request(url, PERSIST, validators);
+    request.content = content;
+    enqueue(request);
+  }
+
+  /**
+   * The url of the prefetch being downloaded, or null
+   */
+  public String prefetching() {
+    synchronized (queue) {
+      if (current != null && current.kind == PREFETCH && !current.cancelled) {
+        return current.url;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Drop the queued prefetches. One already downloading is left to finish.
+   */
+  public void cancel_prefetch() {
+    synchronized (queue) {
+      for (int i = queue.size() - 1; i >= 0; i--) {
+        Request request = (Request) queue.elementAt(i);
+        if (request.kind == PREFETCH) {
+          request.cancelled = true;
+          queue.removeElementAt(i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop every queued download and discard the result of the one in flight.
+   * Pending RMS saves are kept.
+   */
+  public void cancel_all() {
+    synchronized (queue) {
+      for (int i = queue.size() - 1; i >= 0; i--) {
+        Request request = (Request) queue.elementAt(i);
+        if (request.kind != PERSIST) {
+          request.cancelled = true;
+          queue.removeElementAt(i);
+        }
+      }
+      if (current != null) {
+        current.cancelled = true;
+      }
+    }
+  }
+
+  /**
+   * Cancel everything and let the worker thread end once the pending RMS
+   * saves are written. Results not yet delivered are dropped.
+   */
+  public void stop() {
+    synchronized (queue) {
+      cancel_all();
+      running = false;
+      queue.notify();
+    }
+  }
+
+  private boolean enqueue_once(Request request) {
+    synchronized (queue) {
+      if (current != null && !current.cancelled && current.kind != PERSIST &&
+          current.url.equals(request.url)) {
+        return false;
+      }
+      for (int i = 0; i < queue.size(); i++) {
+        Request queued = (Request) queue.elementAt(i);
+        if (queued.kind != PERSIST && queued.url.equals(request.url)) {
+          return false;
+        }
+      }
+      enqueue(request);
+      return true;
+    }
+  }
+
+  private void enqueue(Request request) {
+    synchronized (queue) {
+      if (!running) {
+        return;
+      }
+      int position = queue.size();
+      if (request.kind != PREFETCH) {
+        /* go ahead of the queued prefetches */
+        for (int i = 0; i < queue.size(); i++) {
+          if (((Request) queue.elementAt(i)).kind == PREFETCH) {
+            position = i;
+            break;
+          }
+        }
+      }
+      queue.insertElementAt(request, position);
+      if (worker == null) {
+        worker = new Thread(this);
+        worker.start();
+      }
+      queue.notify();
+    }
+  }
+
+  public void run() {
+    try {
+      for (;;) {
+        Request request;
+        synchronized (queue) {
+          current = null;
+          while (running && queue.isEmpty()) {
+            try {
+              queue.wait();
+            }
+            catch (InterruptedException ex) {
+            }
+          }
+          if (!running) {
+            break;
+          }
+          request = (Request) queue.elementAt(0);
+          queue.removeElementAt(0);
+          current = request;
+        }
+        JSONObject content;
+        try {
+          content = handle(request);
+        }
+        catch (Throwable ex) {
+          /* OutOfMemoryError on a big screen must not kill the worker */
+          ex.printStackTrace();
+          content = null;
+        }
+        synchronized (queue) {
+          current = null; // no longer promotable by load()
+        }
+        if (request.kind == LOAD && content != null &&
+            content != Models.NOT_MODIFIED) {
+          persist_promoted(request, content);
+        }
+        report(request, content);
+      }
+      save_pending();
+    }
+    finally {
+      synchronized (queue) {
+        current = null;
+        worker = null;
+        if (running && !queue.isEmpty()) {
+          /* died unexpectedly: hand the queue to a new worker */
+          worker = new Thread(this);
+          worker.start();
+        }
+      }
+    }
+  }
+
+  /**
+   * Download (or save) one request.
+   *
+   * @return the screen, Models.NOT_MODIFIED, or null on failure
+   */
+  private JSONObject handle(Request request) {
+    if (request.kind == PERSIST) {
+      OfflineStore.save(request.url, request.content, request.validators);
+      return null;
+    }
+    JSONObject content = Models.urlopen_json(request.url,
+                                             request.validators);
+    if (content != null && content != Models.NOT_MODIFIED) {
+      request.bytes = Models.last_transfer_bytes();
+    }
+    if (content == Models.NOT_MODIFIED) {
+      OfflineStore.touch(request.url);
+    }
+    else if (content != null) {
+      try {
+        remember(request, content);
+      }
+      catch (JSONException ex) {
+        ex.printStackTrace();
+        content = null;
+      }
+    }
+    return content;
+  }
+
+  /**
+   * A prefetch promoted to a LOAD after remember() ran was only kept in the
+   * memory cache; save it to the RMS like any screen the user opened.
+   */
+  private void persist_promoted(Request request, JSONObject content) {
+    if (!cache.set_persisted(request.url)) {
+      return; // remembered as a LOAD, or not cacheable
+    }
+    try {
+      OfflineStore.save(request.url, content, request.validators);
+    }
+    catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Hand the result of a download to the Listener on the EDT, unless it was
+   * superseded or the loader was stopped in the meantime.
+   */
+  private void report(final Request request, final JSONObject result) {
+    if (request.kind == PERSIST || request.cancelled) {
+      return;
+    }
+    Display.getInstance().callSerially(new Runnable() {
+
+      public void run() {
+        if (request.cancelled || is_stopped()) {
+          return;
+        }
+        if (result == null) {
+          listener.failed(request);
+        }
+        else {
+          listener.loaded(request, result);
+        }
+      }
+    });
+  }
+
+  private boolean is_stopped() {
+    synchronized (queue) {
+      return !running;
+    }
+  }
+
+  /**
+   * Write the screens still waiting to be saved once stop() was called;
+   * cancel_all() keeps them in the queue for this.
+   */
+  private void save_pending() {
+    for (;;) {
+      Request request;
+      synchronized (queue) {
+        if (queue.isEmpty()) {
+          return;
+        }
+        request = (Request) queue.elementAt(0);
+        queue.removeElementAt(0);
+      }
+      if (request.kind != PERSIST) {
+        continue;
+      }
+      try {
+        OfflineStore.save(request.url, request.content, request.validators);
+      }
+      catch (Throwable ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Keep a freshly downloaded screen and its validators in the memory cache
+   * and the RMS if the server marked it cacheable. Prefetched screens only go
+   * to the memory cache: the RMS keeps a handful of screens and they must not
+   * push out the ones the user actually opened. They are saved by persist()
+   * when shown.
+   */
+  private void remember(Request request, JSONObject content)
+          throws JSONException {
+    String cache_status = content.getString(Settings.CACHE);
+    if (cache_status.equals("yes")) {
+      /* save to cache, already parsed; cache_ttl (seconds) is optional */
+      boolean persisted = request.kind != PREFETCH;
+      cache.put(request.url, content, content.optLong(Settings.CACHE_TTL, 0),
+                request.validators, persisted);
+      if (persisted) {
+        OfflineStore.save(request.url, content, request.validators);
+      }
+    }
+  }
+}
@@ -2,15 +2,35 @@ package com.vinhcom.livefootball;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.Vector;
 import javax.microedition.io.Connector;
 import javax.microedition.io.HttpConnection;
 import javax.wireless.messaging.MessageConnection;
 import javax.wireless.messaging.TextMessage;
+import org.json.me.JSONObject;
+import org.json.me.JSONTokener;
 
 
 public class Models {
 
+  /**
+   * Size of one network read. Buffers in the pool are all this size.
+   */
+  private static final int BLOCK_SIZE = 1024;
+  /**
+   * Number of idle read buffers kept between requests
+   */
+  private static final int MAX_POOLED_BUFFERS = 2;
+  private static final Vector buffer_pool = new Vector(MAX_POOLED_BUFFERS);
+  /**
+   * Size and duration of the last completed transfer
+   */
+  private static long last_bytes, last_millis;
+  /**
+   * Returned by urlopen_json() when the server answers 304 Not Modified
+   */
+  public static final JSONObject NOT_MODIFIED = new JSONObject();
+
   public static String replace(String text, String searchString,
                                String replacementString) {
     StringBuffer sBuffer = new StringBuffer();
@@ -23,28 +43,101 @@ public class Models {
     return sBuffer.toString();
   }
 
-  public static String urlopen(String url) {
-    HttpConnection cn = null;
-    InputStream str = null;
+  /**
+   * Take a BLOCK_SIZE read buffer from the pool, or allocate one if the pool
+   * is empty. Hand it back with release_buffer() when done.
+   */
+  static byte[] take_buffer() {
+    synchronized (buffer_pool) {
+      int size = buffer_pool.size();
+      if (size > 0) {
+        byte[] buffer = (byte[]) buffer_pool.elementAt(size - 1);
+        buffer_pool.removeElementAt(size - 1);
+        return buffer;
+      }
+    }
+    return new byte[BLOCK_SIZE];
+  }
+
+  static void release_buffer(byte[] buffer) {
+    if (buffer == null || buffer.length != BLOCK_SIZE) {
+      return;
+    }
+    synchronized (buffer_pool) {
+      if (buffer_pool.size() < MAX_POOLED_BUFFERS) {
+        buffer_pool.addElement(buffer);
+      }
+    }
+  }
 
-    StringBuffer sb = null;
+  /**
+   * Throughput of the last completed transfer in bytes per millisecond,
+   * or -1 if nothing was downloaded yet.
+   */
+  public static long last_throughput() {
+    if (last_bytes == 0) {
+      return -1;
+    }
+    return last_bytes / Math.max(1, last_millis);
+  }
+
+  /**
+   * Size in bytes of the last completed transfer
+   */
+  public static long last_transfer_bytes() {
+    return last_bytes;
+  }
+
+  private static void record_transfer(long bytes, long started) {
+    last_bytes = bytes;
+    last_millis = System.currentTimeMillis() - started;
+  }
+
+  /**
+   * Open url and parse the UTF-8 response body as a JSON object, decoding
+   * straight from the connection stream instead of building a String first.
+   * Returns null if the server does not answer 200 or the body is not JSON.
+   */
+  public static JSONObject urlopen_json(String url) {
+    return urlopen_json(url, null);
+  }
+
+  /**
+   * Same as urlopen_json(String), as a conditional GET when validators
+   * holds an ETag or Last-Modified value. Returns NOT_MODIFIED if the
+   * server answers 304. On 200 the validators are replaced with the ones
+   * the server sent.
+   */
+  public static JSONObject urlopen_json(String url, Validators validators) {
+    HttpConnection cn = null;
+    MeteredInputStream str = null;
+    byte[] buffer = null;
     try {
-      int code;
+      long started = System.currentTimeMillis();
       cn = (HttpConnection) Connector.open(url);
-      code = cn.getResponseCode();
+      if (validators != null) {
+        if (validators.etag != null) {
+          cn.setRequestProperty("If-None-Match", validators.etag);
+        }
+        if (validators.last_modified != null) {
+          cn.setRequestProperty("If-Modified-Since", validators.last_modified);
+        }
+      }
+      int code = cn.getResponseCode();
+      if (code == HttpConnection.HTTP_NOT_MODIFIED && validators != null &&
+          !validators.is_empty()) {
+        return NOT_MODIFIED;
+      }
       if (code == HttpConnection.HTTP_OK) {
-        str = cn.openInputStream();
-        sb = new StringBuffer();
-
-        InputStreamReader r = new InputStreamReader(str, "UTF-8");
-        int total = 0;
-        int read = 0;
-
-        while ((read = r.read()) >= 0) {
-          total++;
-          sb.append((char) read);
+        if (validators != null) {
+          validators.etag = cn.getHeaderField("ETag");
+          validators.last_modified = cn.getHeaderField("Last-Modified");
         }
-        return sb.toString();
+        str = new MeteredInputStream(cn.openInputStream());
+        buffer = take_buffer();
+        JSONObject json = new JSONObject(new JSONTokener(str, buffer));
+        record_transfer(str.count, started);
+        return json;
       }
       else {
         throw new Exception("Gặp lỗi trong quá trình kết nối");
@@ -54,6 +147,7 @@ public class Models {
       return null;
     }
     finally {
+      release_buffer(buffer);
       try {
         if (str != null) {
           str.close();
@@ -65,7 +159,39 @@ public class Models {
       catch (Exception e) {
       }
     }
-  }//end urlopen(String)
+  }//end urlopen_json(String, Validators)
+
+  /** Counts the bytes read through it, for throughput reporting */
+  private static class MeteredInputStream
+          extends InputStream {
+
+    private InputStream in;
+    private long count;
+
+    MeteredInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    public void close() throws IOException {
+      in.close();
+    }
+  }
 
   public static String get_parent(String url) {
     if ((url == null) || url.equals("") || url.equals("/")) {
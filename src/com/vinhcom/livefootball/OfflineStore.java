@@ -0,0 +1,356 @@
+package com.vinhcom.livefootball;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import javax.microedition.rms.RecordEnumeration;
+import javax.microedition.rms.RecordStore;
+import org.json.me.JSONObject;
+import org.json.me.JSONTokener;
+
+
+/**
+ * Keeps cacheable screens in the RMS between runs, so a cold start can show
+ * the last copy of a screen before the network answers.
+ *
+ * The first record is a small index holding, for every saved screen, its
+ * url, record id, ETag and Last-Modified validators and the time it was
+ * saved. The other records hold only the UTF-8 JSON text of a screen. Opening
+ * the store reads just the index; a screen's text is read when it is loaded.
+ */
+public class OfflineStore {
+
+  static final String RMS_NAME = "screens";
+  /**
+   * Record id of the index, the first record added to the store
+   */
+  private static final int INDEX_RECORD = 1;
+  /**
+   * Starts the index record; a store without it (an older layout) is dropped
+   */
+  private static final int INDEX_VERSION = 0x4C460002;
+  /**
+   * url -> Entry
+   */
+  private static Hashtable index;
+  /**
+   * A saved time changed in memory since the index was written
+   */
+  private static boolean touched;
+  /**
+   * Records not in the index (a save interrupted before the index was
+   * written) were looked for in this run
+   */
+  private static boolean orphans_checked;
+
+  private static class Entry {
+
+    int record_id;
+    long saved;
+    Validators validators;
+  }
+
+  /**
+   * Load the saved copy of url, or null if there is none.
+   */
+  public static synchronized JSONObject load(String url) {
+    Entry e = entry(url);
+    if (e == null) {
+      return null;
+    }
+    byte[] buffer = Models.take_buffer();
+    try {
+      RecordStore rms = RecordStore.openRecordStore(RMS_NAME, true);
+      byte[] record;
+      try {
+        record = rms.getRecord(e.record_id);
+      }
+      finally {
+        rms.closeRecordStore();
+      }
+      return new JSONObject(new JSONTokener(new ByteArrayInputStream(record),
+                                            buffer));
+    }
+    catch (Exception ex) {
+      ex.printStackTrace();
+      return null;
+    }
+    finally {
+      Models.release_buffer(buffer);
+    }
+  }
+
+  /**
+   * A copy of the validators saved with url, or null if it is not saved.
+   */
+  public static synchronized Validators validators(String url) {
+    Entry e = entry(url);
+    if (e == null) {
+      return null;
+    }
+    return new Validators(e.validators.etag, e.validators.last_modified);
+  }
+
+  /**
+   * Save or replace the copy of url. The oldest screen other than the index
+   * is dropped when more than Settings.OFFLINE_SCREENS would be kept.
+   */
+  public static synchronized void save(String url, JSONObject json,
+                                       Validators validators) {
+    if (index == null && !load_index()) {
+      return;
+    }
+    if (validators == null) {
+      validators = new Validators();
+    }
+    try {
+      Entry e = new Entry();
+      e.saved = System.currentTimeMillis();
+      e.validators = validators;
+
+      byte[] text = json.toString().getBytes("UTF-8");
+
+      RecordStore rms = RecordStore.openRecordStore(RMS_NAME, true);
+      try {
+        Entry old = (Entry) index.get(url);
+        if (old != null) {
+          rms.setRecord(old.record_id, text, 0, text.length);
+          e.record_id = old.record_id;
+        }
+        else {
+          if (!orphans_checked) {
+            drop_orphans(rms);
+          }
+          if (index.size() >= Settings.OFFLINE_SCREENS) {
+            drop_oldest(rms);
+          }
+          e.record_id = rms.addRecord(text, 0, text.length);
+        }
+        index.put(url, e);
+        write_index(rms);
+      }
+      finally {
+        rms.closeRecordStore();
+      }
+    }
+    catch (Exception ex) {
+      ex.printStackTrace(); // out of RMS space is not fatal
+    }
+  }
+
+  /**
+   * Mark the saved copy of url as confirmed fresh by the server (a 304).
+   * Only the index in memory is updated; the new time reaches the RMS on the
+   * next save() or flush().
+   */
+  public static synchronized void touch(String url) {
+    Entry e = entry(url);
+    if (e != null) {
+      e.saved = System.currentTimeMillis();
+      touched = true;
+    }
+  }
+
+  /**
+   * Write the times of screens touched since they were saved, so eviction
+   * order survives a restart. Called when the MIDlet is destroyed.
+   */
+  public static synchronized void flush() {
+    if (index == null || !touched) {
+      return;
+    }
+    try {
+      RecordStore rms = RecordStore.openRecordStore(RMS_NAME, true);
+      try {
+        write_index(rms);
+      }
+      finally {
+        rms.closeRecordStore();
+      }
+    }
+    catch (Exception ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Remove all saved screens.
+   */
+  public static synchronized void clear() {
+    try {
+      RecordStore.deleteRecordStore(RMS_NAME);
+    }
+    catch (Exception ex) {
+      // nothing saved yet
+    }
+    index = null;
+    touched = false;
+    orphans_checked = false;
+  }
+
+  private static Entry entry(String url) {
+    if (index == null && !load_index()) {
+      return null;
+    }
+    return (Entry) index.get(url);
+  }
+
+  /**
+   * Read the index record. A store without a readable index, such as one
+   * written in an older layout, is deleted and started over.
+   */
+  private static boolean load_index() {
+    try {
+      Hashtable loaded = read_index();
+      if (loaded == null) {
+        try {
+          RecordStore.deleteRecordStore(RMS_NAME);
+        }
+        catch (Exception ex) {
+          // nothing saved yet
+        }
+        loaded = new Hashtable();
+        RecordStore rms = RecordStore.openRecordStore(RMS_NAME, true);
+        try {
+          index = loaded;
+          write_index(rms);
+        }
+        finally {
+          rms.closeRecordStore();
+        }
+      }
+      index = loaded;
+      touched = false;
+      return true;
+    }
+    catch (Exception ex) {
+      ex.printStackTrace();
+      index = null;
+      return false;
+    }
+  }
+
+  /**
+   * The index saved in the RMS, or null if there is none
+   */
+  private static Hashtable read_index() {
+    byte[] buf;
+    try {
+      RecordStore rms = RecordStore.openRecordStore(RMS_NAME, false);
+      try {
+        buf = rms.getRecord(INDEX_RECORD);
+      }
+      finally {
+        rms.closeRecordStore();
+      }
+    }
+    catch (Exception ex) {
+      return null; // no store yet, or no index record
+    }
+    try {
+      DataInputStream dis = new DataInputStream(new ByteArrayInputStream(buf));
+      if (dis.readInt() != INDEX_VERSION) {
+        return null;
+      }
+      Hashtable loaded = new Hashtable();
+      for (int count = dis.readInt(); count > 0; count--) {
+        String url = dis.readUTF();
+        Entry e = new Entry();
+        e.record_id = dis.readInt();
+        String etag = dis.readUTF();
+        String last_modified = dis.readUTF();
+        e.validators = new Validators(etag.length() == 0 ? null : etag,
+                                      last_modified.length() == 0 ? null
+                                      : last_modified);
+        e.saved = dis.readLong();
+        loaded.put(url, e);
+      }
+      return loaded;
+    }
+    catch (IOException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Write the index in memory to the index record, adding it to an empty
+   * store
+   */
+  private static void write_index(RecordStore rms) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(
+            64 + index.size() * 96);
+    DataOutputStream dos = new DataOutputStream(baos);
+    dos.writeInt(INDEX_VERSION);
+    dos.writeInt(index.size());
+    for (Enumeration urls = index.keys(); urls.hasMoreElements();) {
+      String url = (String) urls.nextElement();
+      Entry e = (Entry) index.get(url);
+      dos.writeUTF(url);
+      dos.writeInt(e.record_id);
+      dos.writeUTF(e.validators.etag == null ? "" : e.validators.etag);
+      dos.writeUTF(e.validators.last_modified == null ? ""
+                   : e.validators.last_modified);
+      dos.writeLong(e.saved);
+    }
+    byte[] buf = baos.toByteArray();
+    if (rms.getNumRecords() == 0) {
+      rms.addRecord(buf, 0, buf.length); // gets INDEX_RECORD in a new store
+    }
+    else {
+      rms.setRecord(INDEX_RECORD, buf, 0, buf.length);
+    }
+    touched = false;
+  }
+
+  /**
+   * Delete the screen records the index does not know about. Only record ids
+   * are enumerated, no record is read.
+   */
+  private static void drop_orphans(RecordStore rms) throws Exception {
+    orphans_checked = true;
+    Hashtable known = new Hashtable();
+    for (Enumeration entries = index.elements(); entries.hasMoreElements();) {
+      Integer id = new Integer(((Entry) entries.nextElement()).record_id);
+      known.put(id, id);
+    }
+    RecordEnumeration ids = rms.enumerateRecords(null, null, false);
+    try {
+      while (ids.hasNextElement()) {
+        int id = ids.nextRecordId();
+        if (id != INDEX_RECORD && !known.containsKey(new Integer(id))) {
+          rms.deleteRecord(id);
+        }
+      }
+    }
+    finally {
+      ids.destroy();
+    }
+  }
+
+  /**
+   * Drop the least recently saved screen, never the index a cold start shows
+   */
+  private static void drop_oldest(RecordStore rms) throws Exception {
+    String oldest = null;
+    long oldest_saved = Long.MAX_VALUE;
+    for (Enumeration urls = index.keys(); urls.hasMoreElements();) {
+      String url = (String) urls.nextElement();
+      if (url.equals(Settings.INDEX_URL)) {
+        continue;
+      }
+      Entry e = (Entry) index.get(url);
+      if (e.saved < oldest_saved) {
+        oldest_saved = e.saved;
+        oldest = url;
+      }
+    }
+    if (oldest != null) {
+      Entry e = (Entry) index.remove(oldest);
+      rms.deleteRecord(e.record_id);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package com.vinhcom.livefootball;
+
+import com.sun.lwuit.events.SelectionListener;
+import java.util.Hashtable;
+import java.util.Timer;
+import java.util.TimerTask;
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+
+/**
+ * Downloads the screens behind the focused row of a list and its neighbours
+ * once the selection has been still for a moment, so SELECT can show them
+ * from the cache.
+ *
+ * Rows ahead in the direction the selection is moving are fetched first.
+ * Screens the server does not mark cacheable are not fetched again, and
+ * each list gets a byte budget of Settings.PREFETCH_BUDGET. Prefetches that
+ * are still queued or downloading count against the budget with the average
+ * size of the ones that completed, until their real size is known.
+ */
+public class Prefetcher
+        implements SelectionListener {
+
+  /**
+   * Remembered non-cacheable urls are forgotten after this many
+   */
+  private static final int MAX_SKIPPED = 64;
+  private final Loader loader;
+  private final ScreenCache cache;
+  private Timer timer;
+  private TimerTask pending;
+  private ListItem[] rows;
+  private int direction = 1;
+  private long spent;
+  private int fetched;
+  /**
+   * url -> Long bytes reserved for a prefetch that has not completed
+   */
+  private final Hashtable outstanding = new Hashtable();
+  private long reserved;
+  /**
+   * url -> Boolean.TRUE for screens that turned out not to be cacheable
+   */
+  private final Hashtable skipped = new Hashtable();
+
+  public Prefetcher(Loader loader, ScreenCache cache) {
+    this.loader = loader;
+    this.cache = cache;
+  }
+
+  /**
+   * A new list is on screen.
+   *
+   * @param rows the rows of the list
+   * @param selected the focused row
+   */
+  public synchronized void start(ListItem[] rows, int selected) {
+    this.rows = rows;
+    direction = 1;
+    spent = 0;
+    fetched = 0;
+    release_all();
+    schedule(selected);
+  }
+
+  /**
+   * The list on screen was refreshed in place. Direction and budget carry
+   * over; rows that changed or were added around the selection are fetched.
+   *
+   * @param rows the new rows of the list
+   * @param selected the focused row
+   */
+  public synchronized void update(ListItem[] rows, int selected) {
+    if (this.rows == null) {
+      return; // stopped
+    }
+    this.rows = rows;
+    schedule(selected);
+  }
+
+  /**
+   * Stop prefetching for the current list.
+   */
+  public synchronized void stop() {
+    rows = null;
+    if (pending != null) {
+      pending.cancel();
+      pending = null;
+    }
+    loader.cancel_prefetch();
+    release_all();
+  }
+
+  /**
+   * Stop for good and end the timer thread.
+   */
+  public synchronized void shutdown() {
+    stop();
+    if (timer != null) {
+      timer.cancel();
+      timer = null;
+    }
+  }
+
+  public synchronized void selectionChanged(int old_selected,
+                                            int new_selected) {
+    if (rows == null) {
+      return;
+    }
+    if (new_selected != old_selected) {
+      direction = new_selected > old_selected ? 1 : -1;
+    }
+    loader.cancel_prefetch(); // những dòng cũ không còn đáng tải
+    release_queued();
+    schedule(new_selected);
+  }
+
+  /**
+   * A prefetch finished (on the EDT)
+   */
+  public synchronized void prefetched(Loader.Request request,
+                                      JSONObject content) {
+    release(request.url);
+    spent += request.bytes;
+    if (request.bytes > 0) {
+      fetched++;
+    }
+    if (content == Models.NOT_MODIFIED) {
+      return;
+    }
+    if (!"yes".equals(content.optString(Settings.CACHE))) {
+      if (skipped.size() >= MAX_SKIPPED) {
+        skipped.clear();
+      }
+      skipped.put(request.url, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * A prefetch failed (on the EDT)
+   */
+  public synchronized void failed(Loader.Request request) {
+    release(request.url);
+  }
+
+  private void release(String url) {
+    Long bytes = (Long) outstanding.remove(url);
+    if (bytes != null) {
+      reserved -= bytes.longValue();
+    }
+  }
+
+  private void release_all() {
+    outstanding.clear();
+    reserved = 0;
+  }
+
+  /**
+   * Queued prefetches were dropped; only the one downloading is still owed
+   */
+  private void release_queued() {
+    String downloading = loader.prefetching();
+    Long bytes = downloading == null ? null
+                 : (Long) outstanding.get(downloading);
+    release_all();
+    if (bytes != null) {
+      outstanding.put(downloading, bytes);
+      reserved = bytes.longValue();
+    }
+  }
+
+  /**
+   * Expected size of a prefetch that has not completed
+   */
+  private long estimate() {
+    return fetched > 0 ? spent / fetched : Settings.PREFETCH_ESTIMATE;
+  }
+
+  /**
+   * Wait for the selection to settle before touching the network
+   */
+  private void schedule(final int selected) {
+    if (pending != null) {
+      pending.cancel();
+    }
+    if (timer == null) {
+      timer = new Timer();
+    }
+    pending = new TimerTask() {
+
+      public void run() {
+        enqueue(selected);
+      }
+    };
+    timer.schedule(pending, Settings.PREFETCH_DELAY);
+  }
+
+  private synchronized void enqueue(int selected) {
+    if (rows == null) {
+      return;
+    }
+    int[] order = {selected, selected + direction,
+                   selected + 2 * direction, selected - direction};
+    for (int i = 0; i < order.length; i++) {
+      if (spent + reserved >= Settings.PREFETCH_BUDGET) {
+        return;
+      }
+      if (order[i] < 0 || order[i] >= rows.length) {
+        continue;
+      }
+      try {
+        String url = rows[order[i]].get_href();
+        if (!cache.contains(url) && !skipped.containsKey(url) &&
+            !outstanding.containsKey(url) && loader.prefetch(url)) {
+          long bytes = estimate();
+          outstanding.put(url, new Long(bytes));
+          reserved += bytes;
+        }
+      }
+      catch (JSONException ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package com.vinhcom.livefootball;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import org.json.me.JSONArray;
+import org.json.me.JSONObject;
+
+
+/**
+ * Cache of parsed server screens keyed by url.
+ * Entries are evicted least-recently-used first once the estimated heap size
+ * of all cached screens goes over the byte budget, and each entry may expire
+ * after a time-to-live given by the server.
+ */
+public class ScreenCache {
+
+  /**
+   * Rough heap cost of an object header plus a Hashtable entry, in bytes
+   */
+  private static final int ENTRY_OVERHEAD = 32;
+  private final Hashtable entries = new Hashtable();
+  /**
+   * head = most recently used, tail = least recently used
+   */
+  private Entry head, tail;
+  private final long budget;
+  private long size;
+  private int hits, misses, evictions;
+
+  private static class Entry {
+
+    String url;
+    JSONObject json;
+    long bytes;
+    long expires; // 0 = never
+    Validators validators;
+    boolean persisted; // also saved in the OfflineStore
+    Entry prev, next;
+  }
+
+  /**
+   * @param budget maximum estimated size in bytes of all cached screens
+   */
+  public ScreenCache(long budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Return the cached screen for url and mark it as recently used, or null
+   * if it is not cached or has expired.
+   */
+  public synchronized JSONObject get(String url) {
+    Entry e = lookup(url);
+    if (e == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    unlink(e);
+    link_first(e);
+    return e.json;
+  }
+
+  /**
+   * True if a fresh copy of url is cached. Does not count as a hit or miss
+   * and does not change the eviction order.
+   */
+  public synchronized boolean contains(String url) {
+    return lookup(url) != null;
+  }
+
+  /**
+   * Cache a parsed screen.
+   *
+   * @param ttl seconds the screen stays valid, 0 or less to keep it until
+   * it is evicted
+   */
+  public synchronized void put(String url, JSONObject json, long ttl) {
+    put(url, json, ttl, null, false);
+  }
+
+  /**
+   * Cache a parsed screen together with the validators it was downloaded
+   * with.
+   *
+   * @param ttl seconds the screen stays valid, 0 or less to keep it until
+   * it is evicted
+   * @param persisted true if the screen is also saved in the OfflineStore
+   */
+  public synchronized void put(String url, JSONObject json, long ttl,
+                               Validators validators, boolean persisted) {
+    remove(url);
+    Entry e = new Entry();
+    e.url = url;
+    e.json = json;
+    e.validators = validators;
+    e.persisted = persisted;
+    e.bytes = estimate(url) + estimate(json);
+    e.expires = ttl > 0 ? System.currentTimeMillis() + ttl * 1000 : 0;
+    if (e.bytes > budget) {
+      return; // would evict everything else and still not fit
+    }
+    entries.put(url, e);
+    link_first(e);
+    size += e.bytes;
+    while (size > budget && tail != null) {
+      evictions++;
+      remove(tail.url);
+    }
+  }
+
+  /**
+   * A copy of the validators cached with url, or null if there are none.
+   */
+  public synchronized Validators validators(String url) {
+    Entry e = lookup(url);
+    if (e == null || e.validators == null) {
+      return null;
+    }
+    return new Validators(e.validators.etag, e.validators.last_modified);
+  }
+
+  /**
+   * Mark the cached copy of url as saved in the OfflineStore.
+   *
+   * @return false if it already was, or url is not cached
+   */
+  public synchronized boolean set_persisted(String url) {
+    Entry e = lookup(url);
+    if (e == null || e.persisted) {
+      return false;
+    }
+    e.persisted = true;
+    return true;
+  }
+
+  public synchronized void remove(String url) {
+    Entry e = (Entry) entries.remove(url);
+    if (e != null) {
+      unlink(e);
+      size -= e.bytes;
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    head = tail = null;
+    size = 0;
+  }
+
+  public synchronized int get_hits() {
+    return hits;
+  }
+
+  public synchronized int get_misses() {
+    return misses;
+  }
+
+  public synchronized int get_evictions() {
+    return evictions;
+  }
+
+  /**
+   * Estimated heap size in bytes of everything cached
+   */
+  public synchronized long get_size() {
+    return size;
+  }
+
+  public synchronized String toString() {
+    return "ScreenCache[" + entries.size() + " screens, " + size + "/" +
+           budget + " bytes, hits=" + hits + ", misses=" + misses +
+           ", evictions=" + evictions + "]";
+  }
+
+  private Entry lookup(String url) {
+    Entry e = (Entry) entries.get(url);
+    if (e != null && e.expires != 0 &&
+        System.currentTimeMillis() >= e.expires) {
+      remove(url);
+      return null;
+    }
+    return e;
+  }
+
+  private void link_first(Entry e) {
+    e.prev = null;
+    e.next = head;
+    if (head != null) {
+      head.prev = e;
+    }
+    head = e;
+    if (tail == null) {
+      tail = e;
+    }
+  }
+
+  private void unlink(Entry e) {
+    if (e.prev != null) {
+      e.prev.next = e.next;
+    }
+    else {
+      head = e.next;
+    }
+    if (e.next != null) {
+      e.next.prev = e.prev;
+    }
+    else {
+      tail = e.prev;
+    }
+    e.prev = e.next = null;
+  }
+
+  /**
+   * Estimate how many bytes of heap a parsed JSON value keeps alive.
+   * Strings count two bytes per char, containers count one entry overhead
+   * per member.
+   */
+  static long estimate(Object value) {
+    if (value instanceof String) {
+      return ENTRY_OVERHEAD + 2 * ((String) value).length();
+    }
+    if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      long bytes = ENTRY_OVERHEAD;
+      Enumeration keys = object.keys();
+      while (keys.hasMoreElements()) {
+        Object key = keys.nextElement();
+        bytes += estimate(key) + estimate(object.opt((String) key));
+      }
+      return bytes;
+    }
+    if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      long bytes = ENTRY_OVERHEAD;
+      for (int i = 0; i < array.length(); i++) {
+        bytes += 4 + estimate(array.opt(i));
+      }
+      return bytes;
+    }
+    return ENTRY_OVERHEAD; // numbers, booleans, NULL
+  }
+}
@@ -0,0 +1,105 @@
+package com.vinhcom.livefootball;
+
+import org.json.me.JSONArray;
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+
+/**
+ * Typed view of one server screen.
+ *
+ * Built once per response around the parsed JSONObject. Each field is
+ * looked up the first time it is asked for and kept, so rendering and
+ * refreshing never hash the same key twice, and fields a screen type does
+ * not use are never touched. Missing fields throw JSONException just like
+ * the JSONObject getters.
+ */
+public class ScreenModel {
+
+  private final JSONObject json;
+  private String type, title, info, content_url;
+  private int auto_refresh = -1;
+  private ListItem[] items;
+  private ButtonSpec left_button, right_button;
+
+  public ScreenModel(JSONObject json) {
+    this.json = json;
+  }
+
+  public JSONObject get_json() {
+    return json;
+  }
+
+  /**
+   * Settings.LIST, HTML or RICHTEXT
+   */
+  public String get_type() throws JSONException {
+    if (type == null) {
+      type = json.getString(Settings.TYPE);
+    }
+    return type;
+  }
+
+  public String get_title() throws JSONException {
+    if (title == null) {
+      title = json.getString(Settings.FORM_TITLE);
+    }
+    return title;
+  }
+
+  /**
+   * HTML body of a richtext screen
+   */
+  public String get_info() throws JSONException {
+    if (info == null) {
+      info = json.getString(Settings.INFO);
+    }
+    return info;
+  }
+
+  /**
+   * Page url of an html screen
+   */
+  public String get_content_url() throws JSONException {
+    if (content_url == null) {
+      content_url = json.getString(Settings.CONTENT_URL);
+    }
+    return content_url;
+  }
+
+  /**
+   * Milliseconds until the screen should be refreshed, 0 for never
+   */
+  public int get_auto_refresh() throws JSONException {
+    if (auto_refresh < 0) {
+      auto_refresh = Integer.parseInt(json.getString(Settings.AUTO_REFRESH));
+    }
+    return auto_refresh;
+  }
+
+  public ListItem[] get_items() throws JSONException {
+    if (items == null) {
+      JSONArray array = json.getJSONArray(Settings.ITEMS);
+      ListItem[] result = new ListItem[array.length()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = new ListItem(array.getJSONObject(i));
+      }
+      items = result;
+    }
+    return items;
+  }
+
+  public ButtonSpec get_left_button() throws JSONException {
+    if (left_button == null) {
+      left_button = new ButtonSpec(json.getJSONObject(Settings.LEFT_BUTTON));
+    }
+    return left_button;
+  }
+
+  public ButtonSpec get_right_button() throws JSONException {
+    if (right_button == null) {
+      right_button = new ButtonSpec(json.getJSONObject(Settings.RIGHT_BUTTON));
+    }
+    return right_button;
+  }
+}
@@ -30,6 +30,23 @@ public class Settings {
   public static final String ROOT_URL = "http://203.128.246.60";
 //  public static final String ROOT_URL = "http://localhost:4001";
   public static final String INFO_SEPERATE_CHARACTER = "|";
+  /**
+   * Screen cache budget (estimated heap bytes)
+   */
+  public static final long CACHE_BUDGET = 96 * 1024;
+  /**
+   * Number of screens kept in the RMS for offline start
+   */
+  public static final int OFFLINE_SCREENS = 8;
+  public static final String INDEX_URL = ROOT_URL + "/index.html";
+  /**
+   * Prefetch of the screens behind a list: wait this long (ms) after the
+   * selection moves, download at most this many bytes per list, and assume
+   * a screen is this big until one has been downloaded
+   */
+  public static final long PREFETCH_DELAY = 700;
+  public static final long PREFETCH_BUDGET = 24 * 1024;
+  public static final long PREFETCH_ESTIMATE = 4 * 1024;
   /**
    * JSON Tags
    */
@@ -45,4 +62,6 @@ public class Settings {
   public static final String BUTTON_TYPE = "type";
   public static final String BUTTON_NAME = "name";
   public static final String BUTTON_URL = "url";
+  public static final String CACHE = "cache";
+  public static final String CACHE_TTL = "cache_ttl";
 }
@@ -0,0 +1,28 @@
+package com.vinhcom.livefootball;
+
+
+/**
+ * HTTP cache validators of a screen: the ETag and Last-Modified headers the
+ * server sent with it, replayed as If-None-Match / If-Modified-Since.
+ */
+public class Validators {
+
+  public String etag;
+  public String last_modified;
+
+  public Validators() {
+  }
+
+  public Validators(String etag, String last_modified) {
+    this.etag = etag;
+    this.last_modified = last_modified;
+  }
+
+  /**
+   * True if the server sent neither header, so a conditional GET is not
+   * possible.
+   */
+  public boolean is_empty() {
+    return etag == null && last_modified == null;
+  }
+}
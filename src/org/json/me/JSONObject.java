@@ -189,7 +189,11 @@ public class JSONObject {
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                /*
+                 * Every item of a list repeats the same few keys; interning
+                 * them lets all objects share one copy of each name.
+                 */
+                key = x.nextValue().toString().intern();
             }
 
             /*
@@ -1,5 +1,8 @@
 package org.json.me;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 /*
 Copyright (c) 2002 JSON.org
  
@@ -28,6 +31,12 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * A JSONTokener can also pull its characters straight from a UTF-8 encoded
+ * <code>InputStream</code>. In that mode the bytes are decoded through a
+ * single reusable buffer, so the source text is never held in memory as a
+ * whole. Only one character of lookahead is kept, which is all the
+ * JSONObject and JSONArray parsers need.
  * @author JSON.org
  * @version 2
  */
@@ -40,11 +49,68 @@ public class JSONTokener {
     
     
     /**
-     * The source string being tokenized.
+     * The source string being tokenized, or null when reading from a stream.
      */
     private String mySource;
     
     
+    /**
+     * The UTF-8 source stream, or null when tokenizing a string.
+     */
+    private InputStream myStream;
+    
+    
+    /**
+     * The byte buffer the stream is read through.
+     */
+    private byte[] myBuffer;
+    
+    
+    /**
+     * The position of the next unread byte in the buffer.
+     */
+    private int myBufferPos;
+    
+    
+    /**
+     * The number of valid bytes in the buffer.
+     */
+    private int myBufferLength;
+    
+    
+    /**
+     * The low surrogate still owed after decoding a 4 byte UTF-8 sequence,
+     * or 0 if there is none.
+     */
+    private char myPendingChar;
+    
+    
+    /**
+     * The last character returned by next(), kept so that back() works
+     * in stream mode.
+     */
+    private char myLastChar;
+    
+    
+    /**
+     * True if back() was called and the next call to next() should return
+     * the last character again.
+     */
+    private boolean myUseLastChar;
+    
+    
+    /**
+     * True once the stream has been read to the end.
+     */
+    private boolean myEof;
+    
+    
+    /**
+     * The I/O error that ended the stream early, if any.
+     */
+    private IOException myError;
+    
+    
     /**
      * Construct a JSONTokener from a string.
      *
@@ -56,6 +122,37 @@ public class JSONTokener {
     }
     
     
+    /**
+     * Construct a JSONTokener that reads UTF-8 text from a stream.
+     * The stream is not closed by the tokener.
+     *
+     * @param in    A UTF-8 encoded source stream.
+     */
+    public JSONTokener(InputStream in) {
+        this(in, new byte[512]);
+    }
+    
+    
+    /**
+     * Construct a JSONTokener that reads UTF-8 text from a stream through
+     * the given buffer. This allows a caller to reuse one buffer for many
+     * documents. The stream is not closed by the tokener.
+     *
+     * @param in        A UTF-8 encoded source stream.
+     * @param buffer    The buffer to read the stream through. Its content
+     *                  is overwritten.
+     */
+    public JSONTokener(InputStream in, byte[] buffer) {
+        if (buffer == null || buffer.length < 4) {
+            buffer = new byte[512];
+        }
+        this.myIndex = 0;
+        this.myStream = in;
+        this.myBuffer = buffer;
+        skipByteOrderMark();
+    }
+    
+    
     /**
      * Back up one character. This provides a sort of lookahead capability,
      * so that you can test for a digit or letter before attempting to parse
@@ -64,6 +161,9 @@ public class JSONTokener {
     public void back() {
         if (this.myIndex > 0) {
             this.myIndex -= 1;
+            if (this.myStream != null) {
+                this.myUseLastChar = true;
+            }
         }
     }
     
@@ -95,6 +195,10 @@ public class JSONTokener {
      * @return true if not yet at the end of the source.
      */
     public boolean more() {
+        if (this.myStream != null) {
+            return this.myUseLastChar || this.myPendingChar != 0 ||
+                this.myBufferPos < this.myBufferLength || fill();
+        }
         return this.myIndex < this.mySource.length();
     }
     
@@ -105,6 +209,9 @@ public class JSONTokener {
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() {
+        if (this.myStream != null) {
+            return nextFromStream();
+        }
         if (more()) {
             char c = this.mySource.charAt(this.myIndex);
             this.myIndex += 1;
@@ -141,6 +248,17 @@ public class JSONTokener {
      *   n characters remaining in the source string.
      */
     public String next(int n) throws JSONException {
+        if (this.myStream != null) {
+            StringBuffer sb = new StringBuffer(n);
+            for (int k = 0; k < n; k += 1) {
+                char c = nextFromStream();
+                if (c == 0 && this.myEof) {
+                    throw syntaxError("Substring bounds error");
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
         int i = this.myIndex;
         int j = i + n;
         if (j >= this.mySource.length()) {
@@ -422,6 +540,17 @@ public class JSONTokener {
      */
     public char skipTo(char to) {
         char c;
+        if (this.myStream != null) {
+            /* A stream cannot be rewound; a miss leaves us at the end. */
+            do {
+                c = next();
+                if (c == 0) {
+                    return c;
+                }
+            } while (c != to);
+            back();
+            return c;
+        }
         int index = this.myIndex;
         do {
             c = next();
@@ -441,6 +570,28 @@ public class JSONTokener {
      * @param to A string to skip past.
      */
     public void skipPast(String to) {
+        if (this.myStream != null) {
+            int matched = 0;
+            while (matched < to.length()) {
+                char c = next();
+                if (c == 0) {
+                    return;
+                }
+                if (c == to.charAt(matched)) {
+                    matched += 1;
+                } else {
+                    /* Fall back to the longest prefix of to that still
+                       matches the characters we just consumed. */
+                    int k = matched;
+                    while (k > 0 && !(to.charAt(k) == c &&
+                            to.regionMatches(false, 0, to, matched - k, k))) {
+                        k -= 1;
+                    }
+                    matched = (to.charAt(k) == c) ? k + 1 : 0;
+                }
+            }
+            return;
+        }
         this.myIndex = this.mySource.indexOf(to, this.myIndex);
         if (this.myIndex < 0) {
             this.myIndex = this.mySource.length();
@@ -467,6 +618,168 @@ public class JSONTokener {
      * @return " at character [this.myIndex] of [this.mySource]"
      */
     public String toString() {
+        if (this.myStream != null) {
+            return " at character " + this.myIndex +
+                (this.myError == null ? "" : " (" + this.myError + ")");
+        }
         return " at character " + this.myIndex + " of " + this.mySource;
     }
+    
+    
+    /**
+     * Get the next character from the stream, decoding UTF-8 as it goes.
+     * Malformed sequences decode to U+FFFD. An I/O error ends the stream;
+     * it is reported by syntaxError().
+     *
+     * @return The next character, or 0 if past the end of the stream.
+     */
+    private char nextFromStream() {
+        if (this.myUseLastChar) {
+            this.myUseLastChar = false;
+            this.myIndex += 1;
+            return this.myLastChar;
+        }
+        char c;
+        if (this.myPendingChar != 0) {
+            c = this.myPendingChar;
+            this.myPendingChar = 0;
+        } else {
+            int b = readByte();
+            if (b < 0) {
+                this.myLastChar = 0;
+                return 0;
+            }
+            if (b < 0x80) {
+                c = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                c = decode(b & 0x1F, 1);
+            } else if ((b & 0xF0) == 0xE0) {
+                c = decode(b & 0x0F, 2);
+            } else if ((b & 0xF8) == 0xF0) {
+                int cp = decodeCodePoint(b & 0x07, 3);
+                if (cp < 0x10000 || cp > 0x10FFFF) {
+                    c = '\uFFFD';
+                } else {
+                    cp -= 0x10000;
+                    c = (char) (0xD800 + (cp >> 10));
+                    this.myPendingChar = (char) (0xDC00 + (cp & 0x3FF));
+                }
+            } else {
+                c = '\uFFFD';
+            }
+        }
+        this.myLastChar = c;
+        this.myIndex += 1;
+        return c;
+    }
+    
+    
+    /**
+     * Decode the continuation bytes of a 2 or 3 byte UTF-8 sequence.
+     */
+    private char decode(int lead, int count) {
+        int cp = decodeCodePoint(lead, count);
+        return cp < 0 ? '\uFFFD' : (char) cp;
+    }
+    
+    
+    /**
+     * Read count continuation bytes and combine them with the lead bits.
+     *
+     * @return The code point, or -1 if the sequence is malformed.
+     */
+    private int decodeCodePoint(int lead, int count) {
+        int cp = lead;
+        for (int i = 0; i < count; i += 1) {
+            if (this.myBufferPos >= this.myBufferLength && !fill()) {
+                return -1;
+            }
+            int b = this.myBuffer[this.myBufferPos] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                /* Leave the byte for the next character. */
+                return -1;
+            }
+            this.myBufferPos += 1;
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        return cp;
+    }
+    
+    
+    /**
+     * Read the next raw byte from the stream buffer.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     */
+    private int readByte() {
+        if (this.myBufferPos >= this.myBufferLength && !fill()) {
+            return -1;
+        }
+        return this.myBuffer[this.myBufferPos++] & 0xFF;
+    }
+    
+    
+    /**
+     * Refill the buffer from the stream.
+     *
+     * @return true if at least one byte is available.
+     */
+    private boolean fill() {
+        if (this.myEof) {
+            return false;
+        }
+        try {
+            int n;
+            do {
+                n = this.myStream.read(this.myBuffer, 0, this.myBuffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                this.myEof = true;
+                this.myBufferPos = 0;
+                this.myBufferLength = 0;
+                return false;
+            }
+            this.myBufferPos = 0;
+            this.myBufferLength = n;
+            return true;
+        } catch (IOException e) {
+            this.myError = e;
+            this.myEof = true;
+            this.myBufferPos = 0;
+            this.myBufferLength = 0;
+            return false;
+        }
+    }
+    
+    
+    /**
+     * Skip a UTF-8 byte order mark at the start of the stream, if present.
+     */
+    private void skipByteOrderMark() {
+        if (!fill()) {
+            return;
+        }
+        while (this.myBufferLength < 3) {
+            int n;
+            try {
+                n = this.myStream.read(this.myBuffer, this.myBufferLength,
+                    this.myBuffer.length - this.myBufferLength);
+            } catch (IOException e) {
+                this.myError = e;
+                this.myEof = true;
+                break;
+            }
+            if (n < 0) {
+                this.myEof = true;
+                break;
+            }
+            this.myBufferLength += n;
+        }
+        if (this.myBufferLength >= 3 &&
+                (this.myBuffer[0] & 0xFF) == 0xEF &&
+                (this.myBuffer[1] & 0xFF) == 0xBB &&
+                (this.myBuffer[2] & 0xFF) == 0xBF) {
+            this.myBufferPos = 3;
+        }
+    }
 }
\ No newline at end of file